@@ -0,0 +1,43 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.benchmarks;
+
+import org.apache.crunch.Emitter;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Hands everything emitted to JMH, so that it isn't optimized away.
+ * 
+ * @author brandon
+ * 
+ */
+public class BlackholeEmitter<T> implements Emitter<T> {
+    private final Blackhole blackhole;
+
+    public BlackholeEmitter(final Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void emit(final T emitted) {
+        blackhole.consume(emitted);
+    }
+
+    @Override
+    public void flush() {
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.benchmarks;
+
+import org.apache.crunch.DoFn;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+
+/**
+ * Task context for DoFns driven directly by a benchmark, so that counters
+ * and the configuration work as they would in a task.
+ * 
+ * @author brandon
+ * 
+ */
+public final class Contexts {
+
+    private Contexts() {
+    }
+
+    /**
+     * Give the DoFn a context with its own counters and initialize it.
+     * 
+     * @return Counters the DoFn increments.
+     */
+    public static Counters initialize(final DoFn<?, ?> fn) {
+        final Counters counters = new Counters();
+        fn.setContext(new MapContext<Object, Object, Object, Object>(new Configuration(), new TaskAttemptID(), null, null, null,
+                new CountersReporter(counters), null));
+        fn.initialize();
+        return counters;
+    }
+
+    private static class CountersReporter extends StatusReporter {
+        private final Counters counters;
+
+        CountersReporter(final Counters counters) {
+            this.counters = counters;
+        }
+
+        @Override
+        public Counter getCounter(final Enum<?> name) {
+            return counters.findCounter(name);
+        }
+
+        @Override
+        public Counter getCounter(final String group, final String name) {
+            return counters.findCounter(group, name);
+        }
+
+        @Override
+        public void progress() {
+        }
+
+        @Override
+        public float getProgress() {
+            return 0;
+        }
+
+        @Override
+        public void setStatus(final String status) {
+        }
+    }
+}
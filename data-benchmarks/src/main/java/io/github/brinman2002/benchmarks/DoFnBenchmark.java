@@ -0,0 +1,213 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.benchmarks;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+import io.github.brinman2002.dofn.BlockingDoFn;
+import io.github.brinman2002.dofn.internal.AttributeOutcomeProbabilityCalculatingDoFn;
+import io.github.brinman2002.dofn.internal.ObservationScoringDoFn;
+import io.github.brinman2002.dofn.internal.ProbabilityCalculatingDoFn;
+import io.github.brinman2002.dofn.internal.RegroupOutcomeAttributeCountDoFn;
+import io.github.brinman2002.filter.AttributeFilterFn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.crunch.Pair;
+import org.apache.crunch.types.avro.Avros;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-record process methods of the training and prediction DoFns, each
+ * driven directly over a block of seeded records. Scores are per record.
+ * 
+ * @author brandon
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DoFnBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    @Param({ "100", "10000" })
+    public int attributeCount;
+
+    @Param({ "10", "100" })
+    public int outcomeCount;
+
+    private List<Pair<Long, Attribute>> timestamped;
+    private List<Pair<Pair<Outcome, Attribute>, Long>> pairCounts;
+    private List<Pair<Outcome, Long>> outcomeCounts;
+    private List<Pair<Outcome, Pair<Pair<Attribute, Long>, Long>>> joinedCounts;
+    private List<Pair<Attribute, Pair<Outcome, Double>>> probabilities;
+    private List<Pair<Long, Iterable<Pair<Outcome, Pair<Double, Double>>>>> observations;
+    private AttributeFilterFn filter;
+    // Half of all attributes, as for an observation set too large to list.
+    private AttributeFilterFn largeFilter;
+    private AttributeFilterFn largeBloomFilter;
+    // DoFns that need a context are built and initialized once, as they
+    // would be for a task; building a configuration costs more than a pass.
+    private RegroupOutcomeAttributeCountDoFn<Outcome, Attribute> regroup;
+    private ProbabilityCalculatingDoFn<Outcome> probabilityCalculating;
+    private ObservationScoringDoFn<Long> observationScoring;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(Generators.SEED);
+        final List<Attribute> attributes = Generators.attributes(attributeCount, Generators.SEED);
+        final List<Outcome> outcomes = Generators.outcomes(outcomeCount);
+        final List<Attribute> attributeSample = Generators.sample(attributes, RECORDS, Generators.SEED);
+        final List<Outcome> outcomeSample = Generators.sample(outcomes, RECORDS, Generators.SEED + 1);
+
+        timestamped = new ArrayList<Pair<Long, Attribute>>(RECORDS);
+        pairCounts = new ArrayList<Pair<Pair<Outcome, Attribute>, Long>>(RECORDS);
+        outcomeCounts = new ArrayList<Pair<Outcome, Long>>(RECORDS);
+        joinedCounts = new ArrayList<Pair<Outcome, Pair<Pair<Attribute, Long>, Long>>>(RECORDS);
+        probabilities = new ArrayList<Pair<Attribute, Pair<Outcome, Double>>>(RECORDS);
+        for (int i = 0; i < RECORDS; ++i) {
+            final Attribute attribute = attributeSample.get(i);
+            final Outcome outcome = outcomeSample.get(i);
+            final long count = 1 + random.nextInt(100);
+            timestamped.add(Pair.of(random.nextLong() >>> 1, attribute));
+            pairCounts.add(Pair.of(Pair.of(outcome, attribute), count));
+            outcomeCounts.add(Pair.of(outcome, count));
+            joinedCounts.add(Pair.of(outcome, Pair.of(Pair.of(attribute, count), count + random.nextInt(100))));
+            probabilities.add(Pair.of(attribute, Pair.of(outcome, random.nextDouble())));
+        }
+        filter = AttributeFilterFn.by(Generators.sample(attributes, 20, Generators.SEED + 2));
+        Contexts.initialize(filter);
+        final List<Attribute> half = Generators.sample(attributes, attributeCount / 2, Generators.SEED + 3);
+        largeFilter = AttributeFilterFn.by(half);
+        Contexts.initialize(largeFilter);
+        largeBloomFilter = AttributeFilterFn.by(half).withBloomFilter(0.01);
+        Contexts.initialize(largeBloomFilter);
+        regroup = new RegroupOutcomeAttributeCountDoFn<Outcome, Attribute>(2);
+        Contexts.initialize(regroup);
+        probabilityCalculating = new ProbabilityCalculatingDoFn<Outcome>(RECORDS * 100L);
+        Contexts.initialize(probabilityCalculating);
+        observationScoring = new ObservationScoringDoFn<Long>(Avros.containers(Outcome.class), 10);
+        Contexts.initialize(observationScoring);
+
+        // Observations of twenty attributes, each seen with a few outcomes.
+        observations = new ArrayList<Pair<Long, Iterable<Pair<Outcome, Pair<Double, Double>>>>>();
+        for (long key = 0; key < RECORDS / 20; ++key) {
+            final List<Pair<Outcome, Pair<Double, Double>>> values = new ArrayList<Pair<Outcome, Pair<Double, Double>>>();
+            for (int i = 0; i < 20 * 4; ++i) {
+                values.add(Pair.of(outcomes.get(random.nextInt(outcomes.size())), Pair.of(Math.log(random.nextDouble()), Math.log(0.1))));
+            }
+            observations.add(Pair.<Long, Iterable<Pair<Outcome, Pair<Double, Double>>>> of(key, values));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void blocking(final Blackhole blackhole) {
+        final BlockingDoFn<Attribute> fn = new BlockingDoFn<Attribute>();
+        final BlackholeEmitter<Pair<Long, Attribute>> emitter = new BlackholeEmitter<Pair<Long, Attribute>>(blackhole);
+        for (final Pair<Long, Attribute> input : timestamped) {
+            fn.process(input, emitter);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void regroupOutcomeAttributeCount(final Blackhole blackhole) {
+        final RegroupOutcomeAttributeCountDoFn<Outcome, Attribute> fn = regroup;
+        final BlackholeEmitter<Pair<Outcome, Pair<Attribute, Long>>> emitter = new BlackholeEmitter<Pair<Outcome, Pair<Attribute, Long>>>(blackhole);
+        for (final Pair<Pair<Outcome, Attribute>, Long> input : pairCounts) {
+            fn.process(input, emitter);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void probabilityCalculating(final Blackhole blackhole) {
+        final ProbabilityCalculatingDoFn<Outcome> fn = probabilityCalculating;
+        final BlackholeEmitter<Pair<Outcome, Double>> emitter = new BlackholeEmitter<Pair<Outcome, Double>>(blackhole);
+        for (final Pair<Outcome, Long> input : outcomeCounts) {
+            fn.process(input, emitter);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void attributeOutcomeProbabilityCalculating(final Blackhole blackhole) {
+        final AttributeOutcomeProbabilityCalculatingDoFn<Outcome, Attribute> fn = new AttributeOutcomeProbabilityCalculatingDoFn<Outcome, Attribute>();
+        final BlackholeEmitter<Pair<Attribute, Pair<Outcome, Double>>> emitter = new BlackholeEmitter<Pair<Attribute, Pair<Outcome, Double>>>(
+                blackhole);
+        for (final Pair<Outcome, Pair<Pair<Attribute, Long>, Long>> input : joinedCounts) {
+            fn.process(input, emitter);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void attributeFilter(final Blackhole blackhole) {
+        for (final Pair<Attribute, Pair<Outcome, Double>> input : probabilities) {
+            blackhole.consume(filter.accept(input));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void largeAttributeFilter(final Blackhole blackhole) {
+        for (final Pair<Attribute, Pair<Outcome, Double>> input : probabilities) {
+            blackhole.consume(largeFilter.accept(input));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void largeAttributeFilterBloom(final Blackhole blackhole) {
+        for (final Pair<Attribute, Pair<Outcome, Double>> input : probabilities) {
+            blackhole.consume(largeBloomFilter.accept(input));
+        }
+    }
+
+    /**
+     * Scores are per observation of twenty attributes.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS / 20)
+    public void observationScoring(final Blackhole blackhole) {
+        final ObservationScoringDoFn<Long> fn = observationScoring;
+        final BlackholeEmitter<Pair<Long, Pair<Outcome, Double>>> emitter = new BlackholeEmitter<Pair<Long, Pair<Outcome, Double>>>(blackhole);
+        for (final Pair<Long, Iterable<Pair<Outcome, Pair<Double, Double>>>> input : observations) {
+            fn.process(input, emitter);
+        }
+    }
+}
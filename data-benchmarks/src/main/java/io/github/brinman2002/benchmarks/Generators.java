@@ -0,0 +1,136 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.benchmarks;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.AttributeNamespace;
+import io.github.brinman2002.data.model.Outcome;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.apache.crunch.types.avro.Avros;
+
+/**
+ * Seeded synthetic data for the benchmarks. The same arguments always give
+ * the same data, so results can be compared from one run to the next.
+ * 
+ * @author brandon
+ * 
+ */
+public final class Generators {
+
+    public static final long SEED = 20130917L;
+
+    private Generators() {
+    }
+
+    /**
+     * @return Distinct attributes, spread over the namespaces.
+     */
+    public static List<Attribute> attributes(final int count, final long seed) {
+        final Random random = new Random(seed);
+        final AttributeNamespace[] namespaces = AttributeNamespace.values();
+        final List<Attribute> attributes = new ArrayList<Attribute>(count);
+        for (int i = 0; i < count; ++i) {
+            attributes.add(Attribute.newBuilder().setNamespace(namespaces[random.nextInt(namespaces.length)]).setValue("attribute-" + i).build());
+        }
+        return attributes;
+    }
+
+    /**
+     * @return Distinct outcomes.
+     */
+    public static List<Outcome> outcomes(final int count) {
+        final List<Outcome> outcomes = new ArrayList<Outcome>(count);
+        for (int i = 0; i < count; ++i) {
+            outcomes.add(Outcome.newBuilder().setNamespace("benchmark").setValue("outcome-" + i).build());
+        }
+        return outcomes;
+    }
+
+    /**
+     * Training results in which every attribute has been seen with a few
+     * random outcomes, in memory.
+     * 
+     * @param attributes
+     * @param outcomes
+     * @param outcomesPerAttribute
+     *            Number of outcomes seen with each attribute.
+     * @param seed
+     * @return Results as returned by training.
+     */
+    public static Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trainingResults(final List<Attribute> attributes,
+            final List<Outcome> outcomes, final int outcomesPerAttribute, final long seed) {
+        final Random random = new Random(seed);
+        final List<Pair<Attribute, Pair<Outcome, Double>>> attributeOutcomes = new ArrayList<Pair<Attribute, Pair<Outcome, Double>>>();
+        for (final Attribute attribute : attributes) {
+            for (int i = 0; i < outcomesPerAttribute; ++i) {
+                attributeOutcomes.add(Pair.of(attribute, Pair.of(outcomes.get(random.nextInt(outcomes.size())), random.nextDouble())));
+            }
+        }
+        final Map<Outcome, Double> outcomeProbabilities = probabilities(outcomes, seed);
+        return Pair.of(
+                MemPipeline.typedTableOf(Avros.tableOf(Avros.containers(Attribute.class), Avros.pairs(Avros.containers(Outcome.class), Avros.doubles())),
+                        attributeOutcomes),
+                MemPipeline.typedTableOf(Avros.tableOf(Avros.containers(Outcome.class), Avros.doubles()), pairs(outcomeProbabilities)));
+    }
+
+    /**
+     * @return Random probabilities of the outcomes, summing to one.
+     */
+    public static Map<Outcome, Double> probabilities(final List<Outcome> outcomes, final long seed) {
+        final Random random = new Random(seed);
+        final double[] weights = new double[outcomes.size()];
+        double total = 0.0;
+        for (int i = 0; i < weights.length; ++i) {
+            weights[i] = random.nextDouble();
+            total += weights[i];
+        }
+        final Map<Outcome, Double> probabilities = new HashMap<Outcome, Double>();
+        for (int i = 0; i < weights.length; ++i) {
+            probabilities.put(outcomes.get(i), weights[i] / total);
+        }
+        return probabilities;
+    }
+
+    /**
+     * @return A random sample of the values, with replacement.
+     */
+    public static <T> List<T> sample(final List<T> values, final int count, final long seed) {
+        final Random random = new Random(seed);
+        final List<T> sample = new ArrayList<T>(count);
+        for (int i = 0; i < count; ++i) {
+            sample.add(values.get(random.nextInt(values.size())));
+        }
+        return sample;
+    }
+
+    private static <K, V> List<Pair<K, V>> pairs(final Map<K, V> map) {
+        final List<Pair<K, V>> pairs = new ArrayList<Pair<K, V>>(map.size());
+        for (final Map.Entry<K, V> entry : map.entrySet()) {
+            pairs.add(Pair.of(entry.getKey(), entry.getValue()));
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.benchmarks;
+
+import io.github.brinman2002.classifier.NaiveBayesModel;
+import io.github.brinman2002.classifier.PredictionWriter;
+import io.github.brinman2002.classifier.TopK;
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+import io.github.brinman2002.pipeline.NaiveBayesianClassifier;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Prediction of one observation of twenty attributes against in-memory
+ * training results, through the pipeline and through a
+ * {@link NaiveBayesModel}, selection of the best few outcomes, and formatting
+ * of the predictions as CSV.
+ * 
+ * @author brandon
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredictBenchmark {
+
+    private static final int OBSERVED = 20;
+    private static final int OUTCOMES_PER_ATTRIBUTE = 5;
+    private static final int TOP = 10;
+
+    @Param({ "100", "10000" })
+    public int attributeCount;
+
+    @Param({ "10", "1000" })
+    public int outcomeCount;
+
+    private Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trainingResults;
+    private NaiveBayesModel.Scorer scorer;
+    private List<Attribute> observed;
+    private Map<Outcome, Double> predictions;
+    private NaiveBayesModel model;
+    private final TopK topK = new TopK(TOP);
+    private final int[] indices = new int[TOP];
+
+    @Setup
+    public void setUp() throws IOException {
+        final List<Attribute> attributes = Generators.attributes(attributeCount, Generators.SEED);
+        final List<Outcome> outcomes = Generators.outcomes(outcomeCount);
+        trainingResults = Generators.trainingResults(attributes, outcomes, OUTCOMES_PER_ATTRIBUTE, Generators.SEED);
+        model = NaiveBayesModel.of(trainingResults);
+        scorer = model.newScorer();
+        observed = Generators.sample(attributes, OBSERVED, Generators.SEED + 1);
+        // Every outcome, as an observation with many attributes would score.
+        predictions = Generators.probabilities(outcomes, Generators.SEED + 2);
+    }
+
+    @Benchmark
+    public Map<Outcome, Double> predict() {
+        return NaiveBayesianClassifier.predict(trainingResults, observed);
+    }
+
+    @Benchmark
+    public double[] score() {
+        return scorer.score(observed);
+    }
+
+    @Benchmark
+    public List<String> toCsv() {
+        return NaiveBayesianClassifier.toCsv(predictions, true);
+    }
+
+    @Benchmark
+    public List<Pair<Outcome, Double>> topK() {
+        return NaiveBayesianClassifier.topK(predictions, TOP);
+    }
+
+    /**
+     * Score, select the best outcomes and write them, as a service answering
+     * one observation would; nothing is allocated but the rows' doubles.
+     */
+    @Benchmark
+    public void scoreTopKCsv(final Blackhole blackhole) throws IOException {
+        final double[] scores = scorer.score(observed);
+        final int count = topK.select(scores, indices);
+        final PredictionWriter writer = PredictionWriter.csv(new BlackholeWriter(blackhole), false);
+        writer.write(model, scores, indices, count);
+        writer.flush();
+    }
+
+    @Benchmark
+    public void writeCsv(final Blackhole blackhole) throws IOException {
+        final PredictionWriter writer = PredictionWriter.csv(new BlackholeWriter(blackhole), true);
+        writer.writeAll(predictions);
+        writer.flush();
+    }
+
+    /**
+     * Writer that consumes its characters, so that only the formatting is
+     * measured.
+     */
+    private static class BlackholeWriter extends Writer {
+        private final Blackhole blackhole;
+
+        BlackholeWriter(final Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(final int c) {
+            blackhole.consume(c);
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) {
+            blackhole.consume(str);
+        }
+
+        @Override
+        public Writer append(final CharSequence csq) {
+            blackhole.consume(csq);
+            return this;
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            blackhole.consume(cbuf);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.benchmarks;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+import io.github.brinman2002.pipeline.NaiveBayesianClassifier;
+import io.github.brinman2002.pipeline.StageSummary;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.crunch.PCollection;
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.Pipeline;
+import org.apache.crunch.PipelineResult;
+import org.apache.crunch.PipelineResult.StageResult;
+import org.apache.crunch.fn.IdentityFn;
+import org.apache.crunch.impl.mr.MRPipeline;
+import org.apache.crunch.io.From;
+import org.apache.crunch.io.To;
+import org.apache.crunch.types.avro.AvroType;
+import org.apache.crunch.types.avro.Avros;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * End to end scale test of training and prediction on the local Hadoop
+ * runner. Synthetic attributes and outcomes are generated to files, then
+ * trained on, then a set of observations is predicted against the training
+ * results; each phase is its own pipeline run. For each phase the wall time
+ * and peak heap are reported, and for each of its MapReduce jobs the records
+ * and bytes in and out.
+ * <p>
+ * Arguments are name=value pairs; see {@link #DEFAULTS} for the names. For
+ * example:
+ * 
+ * <pre>
+ * java -cp benchmarks.jar io.github.brinman2002.benchmarks.ScaleTest events=1000000 attributes=100000 skew=1.1
+ * </pre>
+ * 
+ * @author brandon
+ * 
+ */
+public class ScaleTest {
+
+    private static final Map<String, String> DEFAULTS = new HashMap<String, String>();
+
+    static {
+        // Number of events to train on, and to predict.
+        DEFAULTS.put("events", "100000");
+        DEFAULTS.put("observations", "10000");
+        // Number of generator tasks the events are split across.
+        DEFAULTS.put("shards", "4");
+        DEFAULTS.put("days", "30");
+        // Distinct attributes and outcomes.
+        DEFAULTS.put("attributes", "10000");
+        DEFAULTS.put("outcomes", "100");
+        DEFAULTS.put("attributesPerEvent", "5");
+        // Zipfian exponent of attributes and outcomes; 0 is uniform.
+        DEFAULTS.put("skew", "1.0");
+        // Relative share of each attribute namespace, comma separated.
+        DEFAULTS.put("namespaces", "0.6,0.2,0.2");
+        DEFAULTS.put("seed", "20130917");
+        // Working directory; a temporary directory if empty.
+        DEFAULTS.put("dir", "");
+    }
+
+    private static final AvroType<Attribute> ATTRIBUTE_TYPE = Avros.containers(Attribute.class);
+    private static final AvroType<Outcome> OUTCOME_TYPE = Avros.containers(Outcome.class);
+
+    public static void main(final String[] args) throws IOException {
+        final Map<String, String> arguments = new HashMap<String, String>(DEFAULTS);
+        for (final String arg : args) {
+            final int equals = arg.indexOf('=');
+            if (equals < 0 || !DEFAULTS.containsKey(arg.substring(0, equals))) {
+                System.err.println("Unknown argument " + arg + "; arguments are name=value, with names and defaults " + DEFAULTS);
+                System.exit(1);
+            }
+            arguments.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        new ScaleTest(arguments, System.out).run();
+    }
+
+    private final Map<String, String> arguments;
+    private final PrintStream out;
+
+    public ScaleTest(final Map<String, String> arguments, final PrintStream out) {
+        this.arguments = arguments;
+        this.out = out;
+    }
+
+    public void run() throws IOException {
+        final int shards = Integer.parseInt(arguments.get("shards"));
+        final long events = Long.parseLong(arguments.get("events"));
+        final long observations = Long.parseLong(arguments.get("observations"));
+        final String[] weights = arguments.get("namespaces").split(",");
+        final double[] namespaceWeights = new double[weights.length];
+        for (int i = 0; i < weights.length; ++i) {
+            namespaceWeights[i] = Double.parseDouble(weights[i]);
+        }
+        final int days = Integer.parseInt(arguments.get("days"));
+        final int attributes = Integer.parseInt(arguments.get("attributes"));
+        final int outcomes = Integer.parseInt(arguments.get("outcomes"));
+        final int attributesPerEvent = Integer.parseInt(arguments.get("attributesPerEvent"));
+        final double skew = Double.parseDouble(arguments.get("skew"));
+        final long seed = Long.parseLong(arguments.get("seed"));
+        final SyntheticEvents training = new SyntheticEvents((events + shards - 1) / shards, days, attributes, outcomes, attributesPerEvent,
+                skew, namespaceWeights, seed);
+        // Observations come from the same distribution with another seed.
+        final SyntheticEvents observed = new SyntheticEvents((observations + shards - 1) / shards, days, attributes, outcomes,
+                attributesPerEvent, skew, namespaceWeights, seed + 1);
+
+        final File dir = arguments.get("dir").isEmpty() ? Files.createTempDirectory("scale-test").toFile() : new File(arguments.get("dir"));
+        final File shardFile = new File(dir, "shards.txt");
+        dir.mkdirs();
+        final Writer writer = new FileWriter(shardFile);
+        try {
+            for (int shard = 0; shard < shards; ++shard) {
+                writer.write(shard + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        out.println("Scale test " + new TreeMap<String, String>(arguments) + " in " + dir);
+
+        final Pipeline pipeline = new MRPipeline(ScaleTest.class, new Configuration());
+        final String input = new File(dir, "input").getPath();
+        final String model = new File(dir, "model").getPath();
+        final String predictions = new File(dir, "predictions").getPath();
+
+        // Generate
+        long start = begin();
+        final PCollection<String> shardLines = pipeline.readTextFile(shardFile.getPath());
+        pipeline.write(shardLines.parallelDo(new SyntheticEvents.AttributesDoFn(training), Avros.tableOf(Avros.longs(), ATTRIBUTE_TYPE)),
+                To.avroFile(input + "/attributes"));
+        pipeline.write(shardLines.parallelDo(new SyntheticEvents.OutcomesDoFn(training), Avros.tableOf(Avros.longs(), OUTCOME_TYPE)),
+                To.avroFile(input + "/outcomes"));
+        pipeline.write(shardLines.parallelDo(new SyntheticEvents.ObservationsDoFn(observed), Avros.tableOf(Avros.longs(), ATTRIBUTE_TYPE)),
+                To.avroFile(input + "/observations"));
+        report("generate", start, pipeline);
+
+        // Train. Training runs part of the pipeline itself to count the
+        // outcomes, so the phase is timed from before it is planned; those
+        // jobs aren't in the result, and show only in the time.
+        start = begin();
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> results = NaiveBayesianClassifier.train(
+                read(pipeline, input + "/attributes", Avros.longs(), ATTRIBUTE_TYPE), read(pipeline, input + "/outcomes", Avros.longs(), OUTCOME_TYPE));
+        pipeline.write(results.first(), To.avroFile(model + "/attributeOutcomes"));
+        pipeline.write(results.second(), To.avroFile(model + "/outcomes"));
+        report("train", start, pipeline);
+
+        // Predict, from the written model so that training isn't repeated.
+        start = begin();
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> written = Pair.of(
+                read(pipeline, model + "/attributeOutcomes", ATTRIBUTE_TYPE, Avros.pairs(OUTCOME_TYPE, Avros.doubles())),
+                read(pipeline, model + "/outcomes", OUTCOME_TYPE, Avros.doubles()));
+        pipeline.write(NaiveBayesianClassifier.predictAll(read(pipeline, input + "/observations", Avros.longs(), ATTRIBUTE_TYPE), written, 10),
+                To.avroFile(predictions));
+        report("predict", start, pipeline);
+
+        pipeline.done();
+    }
+
+    private static <K, V> PTable<K, V> read(final Pipeline pipeline, final String path, final AvroType<K> keyType, final AvroType<V> valueType) {
+        // Tables are written with the Avro pair schema, so are read back as a
+        // table type rather than as a collection of pairs.
+        return pipeline.read(From.avroFile(path, Avros.tableOf(keyType, valueType))).parallelDo(IdentityFn.<Pair<K, V>> getInstance(),
+                Avros.tableOf(keyType, valueType));
+    }
+
+    /**
+     * Start a phase.
+     * 
+     * @return Start time of the phase.
+     */
+    private static long begin() {
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Run the pipeline and report on the phase. Local file system counters
+     * are totals for the whole JVM rather than for the job, so only the
+     * shuffle bytes are reported.
+     */
+    private void report(final String phase, final long start, final Pipeline pipeline) {
+        final PipelineResult result = pipeline.run();
+        final long elapsed = System.currentTimeMillis() - start;
+        if (!result.succeeded()) {
+            throw new IllegalStateException(phase + " failed");
+        }
+
+        // Each pool peaks at a different time, so this is an upper bound.
+        long peakHeap = 0;
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        out.println();
+        out.println(String.format("%s: %,d ms, peak heap %,d MB, %d jobs", phase, elapsed, peakHeap >> 20, result.getStageResults().size()));
+        out.println(String.format("  %14s %14s %14s %14s  %s", "map in", "map out", "shuffle bytes", "reduce in", "job"));
+        for (final StageResult stage : result.getStageResults()) {
+            // Job names are prefixed with the name of this class.
+            final String name = stage.getStageName();
+            out.println(String.format("  %,14d %,14d %,14d %,14d  %s", task(stage, "MAP_INPUT_RECORDS"), task(stage, "MAP_OUTPUT_RECORDS"),
+                    task(stage, "MAP_OUTPUT_BYTES"), task(stage, "REDUCE_INPUT_RECORDS"), name.substring(name.indexOf(':') + 1).trim()));
+        }
+        out.println();
+        out.println(StageSummary.of(result));
+    }
+
+    private static long task(final StageResult stage, final String counter) {
+        return stage.getCounterValue("org.apache.hadoop.mapred.Task$Counter", counter);
+    }
+}
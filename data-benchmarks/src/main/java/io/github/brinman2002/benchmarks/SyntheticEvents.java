@@ -0,0 +1,245 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.benchmarks;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.AttributeNamespace;
+import io.github.brinman2002.data.model.Outcome;
+import io.github.brinman2002.dofn.BlockingDoFn;
+
+import java.io.Serializable;
+import java.util.Random;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.Pair;
+
+/**
+ * Seeded generator of events, each an outcome and a few attributes at a
+ * timestamp, for scale tests. Events are generated in shards so that the
+ * work can be spread over tasks; the events of a shard depend only on the
+ * parameters and the shard number, so the attribute and outcome tables of
+ * the same events can be generated separately.
+ * 
+ * @author brandon
+ * 
+ */
+public class SyntheticEvents implements Serializable {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -4725612304580733286L;
+
+    // Spreads the attribute ranks over the namespaces.
+    private static final double GOLDEN_RATIO = 0.6180339887498949;
+
+    private final long eventsPerShard;
+    private final int days;
+    private final int attributeCardinality;
+    private final int outcomeCardinality;
+    private final int attributesPerEvent;
+    private final double skew;
+    private final double[] namespaceWeights;
+    private final long seed;
+
+    /**
+     * @param eventsPerShard
+     * @param days
+     *            Number of days the timestamps are spread over.
+     * @param attributeCardinality
+     *            Number of distinct attributes.
+     * @param outcomeCardinality
+     *            Number of distinct outcomes.
+     * @param attributesPerEvent
+     * @param skew
+     *            Zipfian exponent of both the attributes and the outcomes.
+     * @param namespaceWeights
+     *            Relative share of the attributes in each namespace, in the
+     *            order of {@link AttributeNamespace#values()}.
+     * @param seed
+     */
+    public SyntheticEvents(final long eventsPerShard, final int days, final int attributeCardinality, final int outcomeCardinality,
+            final int attributesPerEvent, final double skew, final double[] namespaceWeights, final long seed) {
+        if (namespaceWeights.length != AttributeNamespace.values().length) {
+            throw new IllegalArgumentException("One weight is needed for each namespace");
+        }
+        this.eventsPerShard = eventsPerShard;
+        this.days = days;
+        this.attributeCardinality = attributeCardinality;
+        this.outcomeCardinality = outcomeCardinality;
+        this.attributesPerEvent = attributesPerEvent;
+        this.skew = skew;
+        this.namespaceWeights = namespaceWeights.clone();
+        this.seed = seed;
+    }
+
+    /**
+     * Receives the events of a shard.
+     */
+    public interface Sink {
+        void event(long id, long timestamp, Outcome outcome, Attribute[] attributes);
+    }
+
+    /**
+     * Generates the events of shards. Not thread safe.
+     */
+    public Generator generator() {
+        return new Generator();
+    }
+
+    public class Generator {
+        private final Zipf attributes = new Zipf(attributeCardinality, skew);
+        private final Zipf outcomes = new Zipf(outcomeCardinality, skew);
+        private final AttributeNamespace[] namespaces = AttributeNamespace.values();
+        private final double[] cumulativeWeights = new double[namespaceWeights.length];
+
+        private Generator() {
+            double total = 0.0;
+            for (int i = 0; i < namespaceWeights.length; ++i) {
+                total += namespaceWeights[i];
+                cumulativeWeights[i] = total;
+            }
+            for (int i = 0; i < cumulativeWeights.length; ++i) {
+                cumulativeWeights[i] /= total;
+            }
+        }
+
+        public void generate(final int shard, final Sink sink) {
+            final Random random = new Random(seed * 31 + shard);
+            final Attribute[] eventAttributes = new Attribute[attributesPerEvent];
+            for (long i = 0; i < eventsPerShard; ++i) {
+                final long timestamp = (long) (random.nextDouble() * days * BlockingDoFn.ONE_DAY);
+                final Outcome outcome = Outcome.newBuilder().setNamespace("scale").setValue("outcome-" + outcomes.next(random)).build();
+                for (int j = 0; j < attributesPerEvent; ++j) {
+                    eventAttributes[j] = attribute(attributes.next(random));
+                }
+                sink.event(shard * eventsPerShard + i, timestamp, outcome, eventAttributes);
+            }
+        }
+
+        private Attribute attribute(final int rank) {
+            final double position = (rank * GOLDEN_RATIO) % 1.0;
+            int namespace = 0;
+            while (namespace < cumulativeWeights.length - 1 && position >= cumulativeWeights[namespace]) {
+                ++namespace;
+            }
+            return Attribute.newBuilder().setNamespace(namespaces[namespace]).setValue("attribute-" + rank).build();
+        }
+    }
+
+    /**
+     * Emits the attributes of the events of each shard, keyed by timestamp.
+     */
+    public static class AttributesDoFn extends DoFn<String, Pair<Long, Attribute>> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 2046474580305311845L;
+        private final SyntheticEvents events;
+        private transient Generator generator;
+
+        public AttributesDoFn(final SyntheticEvents events) {
+            this.events = events;
+        }
+
+        @Override
+        public void initialize() {
+            generator = events.generator();
+        }
+
+        @Override
+        public void process(final String shard, final Emitter<Pair<Long, Attribute>> emitter) {
+            generator.generate(Integer.parseInt(shard.trim()), new Sink() {
+                @Override
+                public void event(final long id, final long timestamp, final Outcome outcome, final Attribute[] attributes) {
+                    for (final Attribute attribute : attributes) {
+                        emitter.emit(Pair.of(timestamp, attribute));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Emits the outcomes of the events of each shard, keyed by timestamp.
+     */
+    public static class OutcomesDoFn extends DoFn<String, Pair<Long, Outcome>> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = -3470373867432990571L;
+        private final SyntheticEvents events;
+        private transient Generator generator;
+
+        public OutcomesDoFn(final SyntheticEvents events) {
+            this.events = events;
+        }
+
+        @Override
+        public void initialize() {
+            generator = events.generator();
+        }
+
+        @Override
+        public void process(final String shard, final Emitter<Pair<Long, Outcome>> emitter) {
+            generator.generate(Integer.parseInt(shard.trim()), new Sink() {
+                @Override
+                public void event(final long id, final long timestamp, final Outcome outcome, final Attribute[] attributes) {
+                    emitter.emit(Pair.of(timestamp, outcome));
+                }
+            });
+        }
+    }
+
+    /**
+     * Emits the attributes of the events of each shard as observations to
+     * predict, keyed by the id of the event.
+     */
+    public static class ObservationsDoFn extends DoFn<String, Pair<Long, Attribute>> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 4370924542311979418L;
+        private final SyntheticEvents events;
+        private transient Generator generator;
+
+        public ObservationsDoFn(final SyntheticEvents events) {
+            this.events = events;
+        }
+
+        @Override
+        public void initialize() {
+            generator = events.generator();
+        }
+
+        @Override
+        public void process(final String shard, final Emitter<Pair<Long, Attribute>> emitter) {
+            generator.generate(Integer.parseInt(shard.trim()), new Sink() {
+                @Override
+                public void event(final long id, final long timestamp, final Outcome outcome, final Attribute[] attributes) {
+                    for (final Attribute attribute : attributes) {
+                        emitter.emit(Pair.of(id, attribute));
+                    }
+                }
+            });
+        }
+    }
+}
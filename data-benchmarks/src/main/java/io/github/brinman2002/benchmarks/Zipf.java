@@ -0,0 +1,57 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipfian distribution over ranks 0 to n - 1, where rank r is drawn in
+ * proportion to 1 / (r + 1)^exponent. An exponent of zero is uniform; real
+ * keyword and author data is usually around one.
+ * 
+ * @author brandon
+ * 
+ */
+public class Zipf {
+
+    private final double[] cumulative;
+
+    public Zipf(final int n, final double exponent) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be positive, was " + n);
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("exponent must not be negative, was " + exponent);
+        }
+        cumulative = new double[n];
+        double total = 0.0;
+        for (int r = 0; r < n; ++r) {
+            total += 1.0 / Math.pow(r + 1, exponent);
+            cumulative[r] = total;
+        }
+        for (int r = 0; r < n; ++r) {
+            cumulative[r] /= total;
+        }
+    }
+
+    public int next(final Random random) {
+        final int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        // Rounding may leave the last entry just short of one.
+        return Math.min(i < 0 ? -i - 1 : i, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.learning;
+
+import io.github.brinman2002.dofn.learning.Cost.LinearRegressionCostAndGradientDoFn;
+import io.github.brinman2002.dofn.learning.Cost.VectorCostAndGradientDoFn;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.crunch.Emitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost and gradient of a block of rows, held boxed as for
+ * {@link Cost#INPUT_TYPE}, as {@link DenseVector}s and, for rows that are
+ * mostly zero, as {@link SparseVector}s. Each invocation covers every row of
+ * the block, as one task would.
+ * 
+ * @author brandon
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CostBenchmark {
+
+    private static final int ROWS = 1000;
+
+    @Param({ "10", "100", "1000" })
+    public int width;
+
+    private List<Collection<Double>> boxedRows;
+    private List<Double> boxedThetas;
+    private DenseVector[] rows;
+    private DenseVector thetas;
+    private SparseVector[] sparseRows;
+    private DenseVector[] sparseAsDenseRows;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        boxedRows = new ArrayList<Collection<Double>>(ROWS);
+        rows = new DenseVector[ROWS];
+        for (int i = 0; i < ROWS; ++i) {
+            final double[] row = new double[width];
+            for (int j = 0; j < width; ++j) {
+                row[j] = random.nextGaussian();
+            }
+            rows[i] = new DenseVector(row);
+            boxedRows.add(rows[i].toList());
+        }
+        // Text features; about 1% of the features of each row are non-zero.
+        sparseRows = new SparseVector[ROWS];
+        sparseAsDenseRows = new DenseVector[ROWS];
+        for (int i = 0; i < ROWS; ++i) {
+            final double[] row = new double[width];
+            row[0] = random.nextGaussian();
+            for (int j = 1; j < width; ++j) {
+                row[j] = random.nextDouble() < 0.01 ? 1.0 : 0.0;
+            }
+            sparseRows[i] = SparseVector.of(row);
+            sparseAsDenseRows[i] = new DenseVector(row);
+        }
+        final double[] theta = new double[width];
+        for (int j = 0; j < width; ++j) {
+            theta[j] = random.nextGaussian();
+        }
+        thetas = new DenseVector(theta);
+        boxedThetas = thetas.toList();
+    }
+
+    @Benchmark
+    public double boxedCost() {
+        double sum = 0.0;
+        for (final Collection<Double> row : boxedRows) {
+            final double cost = Cost.mr_computeCost(row, boxedThetas);
+            sum += cost * cost;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double vectorCost() {
+        final double[] theta = thetas.getValues();
+        double sum = 0.0;
+        for (final DenseVector row : rows) {
+            final double cost = Cost.mr_computeCost(row, theta);
+            sum += cost * cost;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Object boxedCostAndGradient() {
+        final LinearRegressionCostAndGradientDoFn fn = new LinearRegressionCostAndGradientDoFn(boxedThetas);
+        final LastEmitter<Collection<Double>> emitter = new LastEmitter<Collection<Double>>();
+        fn.initialize();
+        for (final Collection<Double> row : boxedRows) {
+            fn.process(row, emitter);
+        }
+        fn.cleanup(emitter);
+        return emitter.last;
+    }
+
+    @Benchmark
+    public Object vectorCostAndGradient() {
+        return costAndGradient(rows);
+    }
+
+    @Benchmark
+    public Object sparseCostAndGradient() {
+        return costAndGradient(sparseRows);
+    }
+
+    @Benchmark
+    public Object sparseAsDenseCostAndGradient() {
+        return costAndGradient(sparseAsDenseRows);
+    }
+
+    private <V extends FeatureVector> Object costAndGradient(final V[] block) {
+        final VectorCostAndGradientDoFn<V> fn = new VectorCostAndGradientDoFn<V>(thetas);
+        final LastEmitter<SparseVector> emitter = new LastEmitter<SparseVector>();
+        fn.initialize();
+        for (final V row : block) {
+            fn.process(row, emitter);
+        }
+        fn.cleanup(emitter);
+        return emitter.last;
+    }
+
+    /**
+     * Keeps the last value emitted, so that it can be handed back to JMH.
+     */
+    static class LastEmitter<T> implements Emitter<T> {
+        T last;
+
+        @Override
+        public void emit(final T emitted) {
+            last = emitted;
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.learning;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sigmoid of a batch of margins: one at a time, in place, and in place by
+ * the approximation. The in place modes copy the margins into the batch
+ * first, as the scalar loop does while it goes.
+ * 
+ * @author brandon
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SigmoidBenchmark {
+
+    @Param({ "1024" })
+    public int size;
+
+    private double[] margins;
+    private double[] batch;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        margins = new double[size];
+        for (int i = 0; i < size; ++i) {
+            // Mostly where the sigmoid is curved, with some tails.
+            margins[i] = random.nextGaussian() * 4.0;
+        }
+        batch = new double[size];
+    }
+
+    @Benchmark
+    public double[] scalar() {
+        for (int i = 0; i < size; ++i) {
+            batch[i] = Sigmoid.calculate(margins[i]);
+        }
+        return batch;
+    }
+
+    @Benchmark
+    public double[] batch() {
+        System.arraycopy(margins, 0, batch, 0, size);
+        Sigmoid.calculate(batch);
+        return batch;
+    }
+
+    @Benchmark
+    public double[] approximate() {
+        System.arraycopy(margins, 0, batch, 0, size);
+        Sigmoid.approximate(batch);
+        return batch;
+    }
+}
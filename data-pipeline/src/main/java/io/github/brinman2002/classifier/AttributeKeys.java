@@ -0,0 +1,128 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.brinman2002.classifier;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.AttributeNamespace;
+
+import java.io.UnsupportedEncodingException;
+
+import org.apache.avro.util.Utf8;
+import org.apache.crunch.MapFn;
+import org.apache.crunch.Pair;
+
+/**
+ * Encoding of attributes as sortable keys for the model file. A key is the
+ * ordinal of the namespace as a single byte, followed by the UTF-8 bytes of
+ * the value. Keys sort by unsigned byte order, which is the order that Avro
+ * and Hadoop sort the equivalent strings in.
+ * 
+ * @author brandon
+ * 
+ */
+final class AttributeKeys {
+
+    private AttributeKeys() {
+    }
+
+    /**
+     * Encode the attribute as a string whose UTF-8 bytes are the key.
+     */
+    static String encode(final Attribute attribute) {
+        return ((char) attribute.getNamespace().ordinal()) + attribute.getValue().toString();
+    }
+
+    static Attribute decode(final byte[] key) {
+        try {
+            return Attribute.newBuilder().setNamespace(AttributeNamespace.values()[key[0]])
+                    .setValue(new String(key, 1, key.length - 1, "UTF-8")).build();
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compare the attribute with the key stored between start (inclusive) and
+     * end (exclusive) of the buffer, without allocating.
+     * 
+     * @return Negative, zero or positive as the attribute sorts before, equal
+     *         to or after the key.
+     */
+    static int compare(final Attribute attribute, final SegmentedBuffer buffer, final long start, final long end) {
+        final int namespace = attribute.getNamespace().ordinal() - (buffer.get(start) & 0xff);
+        if (namespace != 0) {
+            return namespace;
+        }
+        long position = start + 1;
+        final CharSequence value = attribute.getValue();
+        if (value instanceof Utf8) {
+            // Already encoded; compare the bytes directly.
+            final Utf8 utf8 = (Utf8) value;
+            final byte[] bytes = utf8.getBytes();
+            for (int i = 0; i < utf8.getByteLength(); ++i) {
+                if (position == end) {
+                    return 1;
+                }
+                final int cmp = (bytes[i] & 0xff) - (buffer.get(position++) & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return position == end ? 0 : -1;
+        }
+
+        final int length = value.length();
+        for (int i = 0; i < length; ++i) {
+            int codePoint = value.charAt(i);
+            if (Character.isHighSurrogate((char) codePoint) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                codePoint = Character.toCodePoint((char) codePoint, value.charAt(++i));
+            }
+            // Encode the code point to UTF-8 one byte at a time.
+            final int byteCount = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            for (int b = 0; b < byteCount; ++b) {
+                final int encoded;
+                if (byteCount == 1) {
+                    encoded = codePoint;
+                } else if (b == 0) {
+                    encoded = (0xf00 >> byteCount) & 0xff | (codePoint >>> (6 * (byteCount - 1)));
+                } else {
+                    encoded = 0x80 | ((codePoint >>> (6 * (byteCount - 1 - b))) & 0x3f);
+                }
+                if (position == end) {
+                    return 1;
+                }
+                final int cmp = encoded - (buffer.get(position++) & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+        }
+        return position == end ? 0 : -1;
+    }
+
+    /**
+     * Key each attribute/outcome probability by its encoded attribute.
+     */
+    static class EncodeFn<V> extends MapFn<Pair<Attribute, V>, Pair<String, V>> {
+
+        private static final long serialVersionUID = -2299937460950384633L;
+
+        @Override
+        public Pair<String, V> map(final Pair<Attribute, V> input) {
+            return Pair.of(encode(input.first()), input.second());
+        }
+    }
+}
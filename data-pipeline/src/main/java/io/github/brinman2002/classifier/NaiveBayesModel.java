@@ -0,0 +1,281 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.brinman2002.classifier;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+
+/**
+ * In-process Naive Bayesian classifier over a trained model. Unlike
+ * {@link io.github.brinman2002.pipeline.NaiveBayesianClassifier#predict(PTable, PTable, Collection)}
+ * , which runs a pipeline for every prediction, the model is built once and
+ * each prediction is a handful of lookups.
+ * 
+ * <p>
+ * 
+ * The model itself is immutable and may be shared between threads. Scoring is
+ * done through a {@link Scorer}, which holds the accumulators for one
+ * prediction at a time so that scoring doesn't allocate once it has warmed up;
+ * each thread should have its own.
+ * 
+ * @author brandon
+ * 
+ */
+public class NaiveBayesModel {
+
+    private final NaiveBayesModelFile file;
+    private final double[] logOutcomeProbabilities;
+
+    public NaiveBayesModel(final NaiveBayesModelFile file) {
+        this.file = file;
+        logOutcomeProbabilities = new double[file.getOutcomeCount()];
+        for (int i = 0; i < logOutcomeProbabilities.length; ++i) {
+            logOutcomeProbabilities[i] = Math.log(file.getOutcomeProbability(i));
+        }
+    }
+
+    /**
+     * Build a model from training results. The results are written to a
+     * temporary model file which is then memory mapped, so the attributes are
+     * not brought onto the heap. Calling this method will run the pipeline.
+     * 
+     * @param trainingResults
+     *            Output of training.
+     * @return Model.
+     * @throws IOException
+     */
+    public static NaiveBayesModel of(final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trainingResults)
+            throws IOException {
+        final File file = File.createTempFile("naive-bayes", ".model");
+        try {
+            NaiveBayesModelFile.write(trainingResults, file);
+            return new NaiveBayesModel(NaiveBayesModelFile.open(file));
+        } finally {
+            // The mapping remains valid after the file is deleted, at least
+            // where the platform allows deleting it.
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    public int getOutcomeCount() {
+        return logOutcomeProbabilities.length;
+    }
+
+    /**
+     * @param outcomeIndex
+     *            Index of a score returned by {@link Scorer#score(Collection)}.
+     * @return Outcome.
+     */
+    public Outcome getOutcome(final int outcomeIndex) {
+        return file.getOutcome(outcomeIndex);
+    }
+
+    public Scorer newScorer() {
+        return new Scorer();
+    }
+
+    /**
+     * Convenience method with the same output as
+     * {@link io.github.brinman2002.pipeline.NaiveBayesianClassifier#predict(PTable, PTable, Collection)}
+     * ; only outcomes that were seen with at least one of the attributes are
+     * included. This allocates, so callers making many predictions should use
+     * a {@link Scorer} directly.
+     * 
+     * @param observedAttributes
+     * @return Predicted classification.
+     */
+    public Map<Outcome, Double> predict(final Collection<Attribute> observedAttributes) {
+        final double[] scores = newScorer().score(observedAttributes);
+        final Map<Outcome, Double> out = new TreeMap<Outcome, Double>();
+        for (int i = 0; i < scores.length; ++i) {
+            if (scores[i] != Double.NEGATIVE_INFINITY) {
+                out.put(getOutcome(i), Math.exp(scores[i]));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Predict the k most probable outcomes, as {@link #predict(Collection)}
+     * but without building a map of every outcome. This allocates, so callers
+     * making many predictions should use a {@link Scorer} with a
+     * {@link TopK} directly.
+     * 
+     * @param observedAttributes
+     * @param k
+     *            Maximum number of outcomes. If not positive, no outcomes
+     *            are returned.
+     * @return Up to k outcomes and their probabilities, most probable first.
+     */
+    public List<Pair<Outcome, Double>> topK(final Collection<Attribute> observedAttributes, final int k) {
+        if (k <= 0 || getOutcomeCount() == 0) {
+            return Collections.emptyList();
+        }
+        final TopK topK = new TopK(Math.min(k, getOutcomeCount()));
+        final int[] indices = new int[topK.getK()];
+        final double[] scores = newScorer().score(observedAttributes);
+        final int count = topK.select(scores, indices);
+        final List<Pair<Outcome, Double>> out = new ArrayList<Pair<Outcome, Double>>(count);
+        for (int i = 0; i < count; ++i) {
+            out.add(Pair.of(getOutcome(indices[i]), Math.exp(scores[indices[i]])));
+        }
+        return out;
+    }
+
+    /**
+     * Scores observations against the model. Not thread safe.
+     */
+    public class Scorer {
+        private final double[] scores = new double[getOutcomeCount()];
+        private final boolean[] matched = new boolean[getOutcomeCount()];
+        // Open addressed set of the attribute indexes seen in the current
+        // observation. A slot is only in use while its stamp matches the
+        // current one, so the set is cleared by moving on to the next stamp.
+        private int[] seenIndexes = new int[32];
+        private int[] seenStamps = new int[32];
+        private int seenCount;
+        private int stamp;
+
+        private Scorer() {
+        }
+
+        /**
+         * Score a set of observed attributes. The score of an outcome is the
+         * log of its probability plus the logs of the probabilities of each of
+         * the observed attributes given the outcome; attributes that were never
+         * seen with the outcome are skipped. Outcomes that weren't seen with
+         * any of the attributes score negative infinity. Duplicate attributes
+         * are only counted once.
+         * 
+         * @param observedAttributes
+         * @return Log score of each outcome, indexed as
+         *         {@link NaiveBayesModel#getOutcome(int)}. The array is reused
+         *         by the next call.
+         */
+        public double[] score(final Collection<Attribute> observedAttributes) {
+            Arrays.fill(scores, 0.0);
+            Arrays.fill(matched, false);
+            seenCount = 0;
+            if (++stamp == 0) {
+                Arrays.fill(seenStamps, 0);
+                stamp = 1;
+            }
+
+            if (observedAttributes instanceof List && observedAttributes instanceof RandomAccess) {
+                final List<Attribute> list = (List<Attribute>) observedAttributes;
+                for (int i = 0; i < list.size(); ++i) {
+                    add(list.get(i));
+                }
+            } else {
+                for (final Attribute attribute : observedAttributes) {
+                    add(attribute);
+                }
+            }
+
+            for (int i = 0; i < scores.length; ++i) {
+                scores[i] = matched[i] ? scores[i] + logOutcomeProbabilities[i] : Double.NEGATIVE_INFINITY;
+            }
+            return scores;
+        }
+
+        /**
+         * @return Index of the highest scoring outcome from the last call to
+         *         {@link #score(Collection)}, or -1 if no outcome was seen
+         *         with any of the attributes.
+         */
+        public int best() {
+            int best = -1;
+            for (int i = 0; i < scores.length; ++i) {
+                if (matched[i] && (best == -1 || scores[i] > scores[best])) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        private void add(final Attribute attribute) {
+            final int attributeIndex = file.indexOf(attribute);
+            if (attributeIndex < 0 || !markSeen(attributeIndex)) {
+                return;
+            }
+
+            final long end = file.getRowEnd(attributeIndex);
+            for (long entry = file.getRowStart(attributeIndex); entry < end; ++entry) {
+                final int outcomeIndex = file.getEntryOutcome(entry);
+                scores[outcomeIndex] += file.getEntryLogProbability(entry);
+                matched[outcomeIndex] = true;
+            }
+        }
+
+        /**
+         * @return Whether the attribute index wasn't already seen in the
+         *         current observation.
+         */
+        private boolean markSeen(final int attributeIndex) {
+            if (seenCount * 2 >= seenIndexes.length) {
+                final int[] indexes = seenIndexes;
+                final int[] stamps = seenStamps;
+                seenIndexes = new int[indexes.length * 2];
+                seenStamps = new int[stamps.length * 2];
+                for (int i = 0; i < indexes.length; ++i) {
+                    if (stamps[i] == stamp) {
+                        final int slot = slot(indexes[i]);
+                        seenStamps[slot] = stamp;
+                        seenIndexes[slot] = indexes[i];
+                    }
+                }
+            }
+            final int slot = slot(attributeIndex);
+            if (seenStamps[slot] == stamp) {
+                return false;
+            }
+            seenStamps[slot] = stamp;
+            seenIndexes[slot] = attributeIndex;
+            ++seenCount;
+            return true;
+        }
+
+        /**
+         * @return The slot holding the attribute index, or the empty slot it
+         *         belongs in.
+         */
+        private int slot(final int attributeIndex) {
+            final int mask = seenIndexes.length - 1;
+            final int hash = attributeIndex * 0x9e3779b9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (seenStamps[slot] == stamp && seenIndexes[slot] != attributeIndex) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,487 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.brinman2002.classifier;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.types.PType;
+import org.apache.crunch.types.avro.Avros;
+
+/**
+ * Compact binary form of the training data output by
+ * {@link io.github.brinman2002.pipeline.NaiveBayesianClassifier#train(PTable, PTable)}
+ * . The file is memory mapped when opened, so a model with millions of
+ * attributes is never brought onto the heap; only the (small) set of outcomes
+ * is decoded.
+ * 
+ * <p>
+ * 
+ * The file consists of a header, the outcomes with their probabilities, one
+ * sparse row per attribute holding the outcomes it was seen with and the log
+ * of its probability given each of them, the offsets of the attribute keys and
+ * finally the attribute keys themselves, sorted so that attributes can be
+ * found by binary search. Most attributes are only seen with a few outcomes,
+ * so only the pairs that were seen together are stored.
+ * 
+ * <p>
+ * 
+ * Row entries are numbered from zero across all of the rows. The entries of a
+ * row are sorted by outcome index, and are stored as two sections: the
+ * outcome index of each entry as an int, followed by its log probability as a
+ * double.
+ * 
+ * @author brandon
+ * 
+ */
+public class NaiveBayesModelFile {
+
+    static final int MAGIC = 0x4e424d46;
+    static final int VERSION = 2;
+
+    // magic, version, outcome count, attribute count and the offsets of the
+    // six sections.
+    private static final int HEADER_LENGTH = 4 * 4 + 6 * 8;
+
+    private final SegmentedBuffer buffer;
+    private final Outcome[] outcomes;
+    private final double[] outcomeProbabilities;
+    private final int attributeCount;
+    private final long rowOffsetsOffset;
+    private final long entryOutcomesOffset;
+    private final long entryProbabilitiesOffset;
+    private final long keyOffsetsOffset;
+    private final long keysOffset;
+
+    private NaiveBayesModelFile(final SegmentedBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.length() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a model file");
+        }
+        final int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported model file version " + version);
+        }
+        final int outcomeCount = buffer.getInt(8);
+        attributeCount = buffer.getInt(12);
+        final long outcomesOffset = buffer.getLong(16);
+        rowOffsetsOffset = buffer.getLong(24);
+        entryOutcomesOffset = buffer.getLong(32);
+        entryProbabilitiesOffset = buffer.getLong(40);
+        keyOffsetsOffset = buffer.getLong(48);
+        keysOffset = buffer.getLong(56);
+
+        // Outcomes are few, so they are decoded onto the heap.
+        final byte[] outcomeBytes = new byte[(int) (rowOffsetsOffset - outcomesOffset)];
+        for (int i = 0; i < outcomeBytes.length; ++i) {
+            outcomeBytes[i] = buffer.get(outcomesOffset + i);
+        }
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(outcomeBytes));
+        outcomes = new Outcome[outcomeCount];
+        outcomeProbabilities = new double[outcomeCount];
+        for (int i = 0; i < outcomeCount; ++i) {
+            outcomeProbabilities[i] = in.readDouble();
+            final Outcome.Builder builder = Outcome.newBuilder().setNamespace(in.readUTF()).setValue(in.readUTF());
+            if (in.readBoolean()) {
+                builder.setQualifier(in.readUTF());
+            }
+            outcomes[i] = builder.build();
+        }
+    }
+
+    /**
+     * Memory map a model file.
+     * 
+     * @param file
+     *            File written by {@link #write(Pair, File)}.
+     * @return Model.
+     * @throws IOException
+     */
+    public static NaiveBayesModelFile open(final File file) throws IOException {
+        return new NaiveBayesModelFile(SegmentedBuffer.map(file));
+    }
+
+    /**
+     * Read a model from a buffer holding the contents of a model file.
+     * 
+     * @param buffer
+     * @return Model.
+     * @throws IOException
+     */
+    public static NaiveBayesModelFile wrap(final ByteBuffer buffer) throws IOException {
+        return new NaiveBayesModelFile(SegmentedBuffer.wrap(buffer));
+    }
+
+    public int getOutcomeCount() {
+        return outcomes.length;
+    }
+
+    public Outcome getOutcome(final int outcomeIndex) {
+        return outcomes[outcomeIndex];
+    }
+
+    /**
+     * @return Probability of the outcome, independent of attributes.
+     */
+    public double getOutcomeProbability(final int outcomeIndex) {
+        return outcomeProbabilities[outcomeIndex];
+    }
+
+    public int getAttributeCount() {
+        return attributeCount;
+    }
+
+    /**
+     * Decode the attribute at an index. This allocates, so it is intended for
+     * inspecting the model rather than scoring with it.
+     */
+    public Attribute getAttribute(final int attributeIndex) {
+        final long start = keyOffset(attributeIndex);
+        final byte[] key = new byte[(int) (keyOffset(attributeIndex + 1) - start)];
+        for (int i = 0; i < key.length; ++i) {
+            key[i] = buffer.get(keysOffset + start + i);
+        }
+        return AttributeKeys.decode(key);
+    }
+
+    /**
+     * Find an attribute in the model.
+     * 
+     * @param attribute
+     * @return Index of the attribute, or -1 if it isn't in the model.
+     */
+    public int indexOf(final Attribute attribute) {
+        int low = 0;
+        int high = attributeCount - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int cmp = AttributeKeys.compare(attribute, buffer, keysOffset + keyOffset(middle), keysOffset + keyOffset(middle + 1));
+            if (cmp > 0) {
+                low = middle + 1;
+            } else if (cmp < 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Number of the first entry in the row of the attribute.
+     */
+    public long getRowStart(final int attributeIndex) {
+        return buffer.getLong(rowOffsetsOffset + ((long) attributeIndex) * 8);
+    }
+
+    /**
+     * @return Number of the entry following the last one in the row of the
+     *         attribute.
+     */
+    public long getRowEnd(final int attributeIndex) {
+        return getRowStart(attributeIndex + 1);
+    }
+
+    /**
+     * @return Index of the outcome of a row entry.
+     */
+    public int getEntryOutcome(final long entry) {
+        return buffer.getInt(entryOutcomesOffset + entry * 4);
+    }
+
+    /**
+     * @return Log probability of the attribute given the outcome of a row
+     *         entry.
+     */
+    public double getEntryLogProbability(final long entry) {
+        return buffer.getDouble(entryProbabilitiesOffset + entry * 8);
+    }
+
+    /**
+     * @return Log probability of the attribute given the outcome, or NaN if
+     *         the two were never seen together.
+     */
+    public double getLogProbability(final int attributeIndex, final int outcomeIndex) {
+        long low = getRowStart(attributeIndex);
+        long high = getRowEnd(attributeIndex) - 1;
+        while (low <= high) {
+            final long middle = (low + high) >>> 1;
+            final int outcome = getEntryOutcome(middle);
+            if (outcome < outcomeIndex) {
+                low = middle + 1;
+            } else if (outcome > outcomeIndex) {
+                high = middle - 1;
+            } else {
+                return getEntryLogProbability(middle);
+            }
+        }
+        return Double.NaN;
+    }
+
+    private long keyOffset(final int attributeIndex) {
+        return buffer.getLong(keyOffsetsOffset + ((long) attributeIndex) * 8);
+    }
+
+    /**
+     * Write training results to a model file. The attribute/outcome
+     * probabilities are gathered into one row per attribute by the pipeline,
+     * then sorted by their keys and streamed into the file; the rows and the
+     * outcomes are held in memory while writing.
+     * 
+     * <p>
+     * 
+     * Calling this method will run the pipeline.
+     * 
+     * @param trainingResults
+     *            Output of training.
+     * @param file
+     *            File to write. Temporary files are written alongside it.
+     * @throws IOException
+     */
+    public static void write(final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trainingResults, final File file)
+            throws IOException {
+
+        final List<Pair<Outcome, Double>> outcomeProbabilities = new ArrayList<Pair<Outcome, Double>>();
+        for (final Pair<Outcome, Double> pair : trainingResults.second().materialize()) {
+            outcomeProbabilities.add(pair);
+        }
+        Collections.sort(outcomeProbabilities);
+        final Map<Outcome, Integer> outcomeIndexes = new HashMap<Outcome, Integer>();
+        final ByteArrayOutputStream outcomeBytes = new ByteArrayOutputStream();
+        final DataOutputStream outcomeOut = new DataOutputStream(outcomeBytes);
+        for (final Pair<Outcome, Double> pair : outcomeProbabilities) {
+            final Outcome outcome = pair.first();
+            outcomeIndexes.put(outcome, outcomeIndexes.size());
+            outcomeOut.writeDouble(pair.second());
+            outcomeOut.writeUTF(outcome.getNamespace().toString());
+            outcomeOut.writeUTF(outcome.getValue().toString());
+            outcomeOut.writeBoolean(outcome.getQualifier() != null);
+            if (outcome.getQualifier() != null) {
+                outcomeOut.writeUTF(outcome.getQualifier().toString());
+            }
+        }
+        outcomeOut.close();
+        // Keep the doubles that follow aligned.
+        while (outcomeBytes.size() % 8 != 0) {
+            outcomeBytes.write(0);
+        }
+
+        // A grouped table can't be read back from a MapReduce pipeline, so
+        // each group is collected into a row in the same reduce.
+        final PType<Pair<Outcome, Double>> entryType = Avros.pairs(Avros.containers(Outcome.class), Avros.doubles());
+        final PTable<String, Collection<Pair<Outcome, Double>>> grouped = trainingResults.first()
+                .parallelDo(new AttributeKeys.EncodeFn<Pair<Outcome, Double>>(), Avros.tableOf(Avros.strings(), entryType)).groupByKey()
+                .parallelDo(new RowFn<String, Pair<Outcome, Double>>(entryType), Avros.tableOf(Avros.strings(), Avros.collections(entryType)));
+
+        // The shuffle orders the keys as strings, which is not the UTF-8 byte
+        // order of the file once characters outside the basic multilingual
+        // plane appear, so the rows are sorted here.
+        final List<Pair<byte[], Collection<Pair<Outcome, Double>>>> rows = new ArrayList<Pair<byte[], Collection<Pair<Outcome, Double>>>>();
+        for (final Pair<String, Collection<Pair<Outcome, Double>>> pairs : grouped.materialize()) {
+            rows.add(Pair.of(pairs.first().getBytes("UTF-8"), pairs.second()));
+        }
+        Collections.sort(rows, new Comparator<Pair<byte[], Collection<Pair<Outcome, Double>>>>() {
+            @Override
+            public int compare(final Pair<byte[], Collection<Pair<Outcome, Double>>> o1, final Pair<byte[], Collection<Pair<Outcome, Double>>> o2) {
+                return NaiveBayesModelFile.compare(o1.first(), o2.first());
+            }
+        });
+
+        final File rowOffsetsFile = new File(file.getPath() + ".rows.tmp");
+        final File entryOutcomesFile = new File(file.getPath() + ".outcomes.tmp");
+        final File entryProbabilitiesFile = new File(file.getPath() + ".probabilities.tmp");
+        final File keyOffsetsFile = new File(file.getPath() + ".offsets.tmp");
+        final File keysFile = new File(file.getPath() + ".keys.tmp");
+        try {
+            final DataOutputStream rowOffsets = create(rowOffsetsFile);
+            final DataOutputStream entryOutcomes = create(entryOutcomesFile);
+            final DataOutputStream entryProbabilities = create(entryProbabilitiesFile);
+            final DataOutputStream keyOffsets = create(keyOffsetsFile);
+            final DataOutputStream keys = create(keysFile);
+            int attributeCount = 0;
+            long entryCount = 0;
+            try {
+                final double[] row = new double[outcomeIndexes.size()];
+                Arrays.fill(row, Double.NaN);
+                byte[] previous = null;
+                long keyOffset = 0;
+                for (final Pair<byte[], Collection<Pair<Outcome, Double>>> pairs : rows) {
+                    final byte[] key = pairs.first();
+                    if (previous != null && compare(previous, key) == 0) {
+                        throw new IllegalStateException("Duplicate attribute " + AttributeKeys.decode(key));
+                    }
+                    for (final Pair<Outcome, Double> pair : pairs.second()) {
+                        final Integer outcomeIndex = outcomeIndexes.get(pair.first());
+                        if (outcomeIndex == null) {
+                            throw new IllegalStateException("Unknown outcome " + pair.first());
+                        }
+                        row[outcomeIndex] = pair.second();
+                    }
+                    rowOffsets.writeLong(entryCount);
+                    // Walking the dense scratch row writes the entries in
+                    // outcome order and leaves it empty for the next row.
+                    for (int i = 0; i < row.length; ++i) {
+                        if (!Double.isNaN(row[i])) {
+                            entryOutcomes.writeInt(i);
+                            entryProbabilities.writeDouble(Math.log(row[i]));
+                            row[i] = Double.NaN;
+                            ++entryCount;
+                        }
+                    }
+                    keyOffsets.writeLong(keyOffset);
+                    keys.write(key);
+                    keyOffset += key.length;
+                    previous = key;
+                    ++attributeCount;
+                }
+                // Trailing offsets, so the length of the last row and key are
+                // known.
+                rowOffsets.writeLong(entryCount);
+                keyOffsets.writeLong(keyOffset);
+                // Keep the doubles that follow aligned.
+                if (entryCount % 2 != 0) {
+                    entryOutcomes.writeInt(0);
+                }
+            } finally {
+                rowOffsets.close();
+                entryOutcomes.close();
+                entryProbabilities.close();
+                keyOffsets.close();
+                keys.close();
+            }
+
+            final long outcomesOffset = HEADER_LENGTH;
+            final long rowOffsetsOffset = outcomesOffset + outcomeBytes.size();
+            final long entryOutcomesOffset = rowOffsetsOffset + rowOffsetsFile.length();
+            final long entryProbabilitiesOffset = entryOutcomesOffset + entryOutcomesFile.length();
+            final long keyOffsetsOffset = entryProbabilitiesOffset + entryProbabilitiesFile.length();
+            final long keysOffset = keyOffsetsOffset + keyOffsetsFile.length();
+
+            final FileOutputStream fileOut = new FileOutputStream(file);
+            try {
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(outcomeIndexes.size());
+                out.writeInt(attributeCount);
+                out.writeLong(outcomesOffset);
+                out.writeLong(rowOffsetsOffset);
+                out.writeLong(entryOutcomesOffset);
+                out.writeLong(entryProbabilitiesOffset);
+                out.writeLong(keyOffsetsOffset);
+                out.writeLong(keysOffset);
+                outcomeBytes.writeTo(out);
+                out.flush();
+                final FileChannel channel = fileOut.getChannel();
+                append(channel, rowOffsetsFile);
+                append(channel, entryOutcomesFile);
+                append(channel, entryProbabilitiesFile);
+                append(channel, keyOffsetsFile);
+                append(channel, keysFile);
+            } finally {
+                fileOut.close();
+            }
+        } finally {
+            rowOffsetsFile.delete();
+            entryOutcomesFile.delete();
+            entryProbabilitiesFile.delete();
+            keyOffsetsFile.delete();
+            keysFile.delete();
+        }
+    }
+
+    /**
+     * Collect the values of each group, detaching them from the grouped
+     * values as they are buffered.
+     */
+    static class RowFn<K, V> extends DoFn<Pair<K, Iterable<V>>, Pair<K, Collection<V>>> {
+
+        private static final long serialVersionUID = 4312019634285712850L;
+
+        private final PType<V> type;
+
+        RowFn(final PType<V> type) {
+            this.type = type;
+        }
+
+        @Override
+        public void initialize() {
+            type.initialize(getConfiguration());
+        }
+
+        @Override
+        public void process(final Pair<K, Iterable<V>> input, final Emitter<Pair<K, Collection<V>>> emitter) {
+            final List<V> values = new ArrayList<V>();
+            for (final V value : input.second()) {
+                values.add(type.getDetachedValue(value));
+            }
+            emitter.emit(Pair.of(input.first(), (Collection<V>) values));
+        }
+    }
+
+    private static DataOutputStream create(final File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+
+    private static void append(final FileChannel channel, final File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel source = in.getChannel();
+            long position = 0;
+            final long size = source.size();
+            while (position < size) {
+                position += source.transferTo(position, size - position, channel);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static int compare(final byte[] left, final byte[] right) {
+        final int length = Math.min(left.length, right.length);
+        for (int i = 0; i < length; ++i) {
+            final int cmp = (left[i] & 0xff) - (right[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return left.length - right.length;
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.classifier;
+
+import io.github.brinman2002.data.model.Outcome;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.crunch.Pair;
+
+/**
+ * Writes predicted outcomes and their probabilities straight to a stream, as
+ * CSV or as an Avro data file, one prediction at a time. Nothing is buffered
+ * beyond the stream itself, and the CSV writer writes each field as it goes
+ * rather than formatting a string for each row. Predictions are written in
+ * the order given; see {@link TopK} and {@link NaiveBayesModel#topK(Collection, int)}
+ * to write only the most probable few, best first.
+ * <p>
+ * Closing the writer closes the underlying stream.
+ * 
+ * @author brandon
+ * 
+ */
+public abstract class PredictionWriter implements Closeable {
+
+    /**
+     * Header row of the CSV output.
+     */
+    public static final String CSV_HEADER = "OUTCOME_NAMESPACE,OUTCOME,OUTCOME_QUALIFIER,PROBABILITY";
+
+    /**
+     * Schema of each record of the Avro output.
+     */
+    public static final Schema AVRO_SCHEMA = Schema.createRecord("Prediction", "Predicted outcome and its probability.",
+            "io.github.brinman2002.data.model", false);
+
+    static {
+        AVRO_SCHEMA.setFields(Arrays.asList(new Schema.Field("outcome", Outcome.SCHEMA$, null, null), new Schema.Field("probability", Schema
+                .create(Schema.Type.DOUBLE), null, null)));
+    }
+
+    /**
+     * @param out
+     *            Destination of the rows, which should be buffered.
+     * @param header
+     *            Whether to write {@link #CSV_HEADER} first.
+     * @return Writer.
+     * @throws IOException
+     */
+    public static PredictionWriter csv(final Writer out, final boolean header) throws IOException {
+        return new CsvPredictionWriter(out, header);
+    }
+
+    /**
+     * @param out
+     *            Destination of the Avro data file.
+     * @return Writer.
+     * @throws IOException
+     */
+    public static PredictionWriter avro(final OutputStream out) throws IOException {
+        return new AvroPredictionWriter(out);
+    }
+
+    public abstract void write(Outcome outcome, double probability) throws IOException;
+
+    public void write(final Pair<Outcome, Double> prediction) throws IOException {
+        write(prediction.first(), prediction.second());
+    }
+
+    /**
+     * Write each prediction, in iteration order.
+     */
+    public void writeAll(final Collection<Pair<Outcome, Double>> predictions) throws IOException {
+        for (final Pair<Outcome, Double> prediction : predictions) {
+            write(prediction.first(), prediction.second());
+        }
+    }
+
+    /**
+     * Write each prediction of a map, as returned by
+     * {@link io.github.brinman2002.pipeline.NaiveBayesianClassifier#predict(Pair, Collection)}
+     * , in iteration order.
+     */
+    public void writeAll(final Map<Outcome, Double> predictions) throws IOException {
+        for (final Map.Entry<Outcome, Double> prediction : predictions.entrySet()) {
+            write(prediction.getKey(), prediction.getValue());
+        }
+    }
+
+    /**
+     * Write the selected outcomes of a prediction made with a
+     * {@link NaiveBayesModel.Scorer} and a {@link TopK}, converting the log
+     * scores back to probabilities.
+     * 
+     * @param model
+     *            Model the scores came from.
+     * @param scores
+     *            Log scores returned by the scorer.
+     * @param indices
+     *            Indices selected by the {@link TopK}.
+     * @param count
+     *            Number of indices selected.
+     */
+    public void write(final NaiveBayesModel model, final double[] scores, final int[] indices, final int count) throws IOException {
+        for (int i = 0; i < count; ++i) {
+            write(model.getOutcome(indices[i]), Math.exp(scores[indices[i]]));
+        }
+    }
+
+    public abstract void flush() throws IOException;
+
+    private static class CsvPredictionWriter extends PredictionWriter {
+        private final Writer out;
+
+        CsvPredictionWriter(final Writer out, final boolean header) throws IOException {
+            this.out = out;
+            if (header) {
+                out.write(CSV_HEADER);
+                out.write('\n');
+            }
+        }
+
+        @Override
+        public void write(final Outcome outcome, final double probability) throws IOException {
+            // Fields are written as toCsv always has, without quoting; a null
+            // qualifier is written as "null".
+            write(outcome.getNamespace());
+            out.write(',');
+            write(outcome.getValue());
+            out.write(',');
+            write(outcome.getQualifier());
+            out.write(',');
+            out.write(Double.toString(probability));
+            out.write('\n');
+        }
+
+        private void write(final CharSequence field) throws IOException {
+            if (field == null) {
+                out.write("null");
+            } else {
+                out.append(field);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static class AvroPredictionWriter extends PredictionWriter {
+        private final DataFileWriter<GenericRecord> out;
+        // Reused for each prediction.
+        private final GenericRecord record = new GenericData.Record(AVRO_SCHEMA);
+
+        AvroPredictionWriter(final OutputStream out) throws IOException {
+            // The specific writer writes the outcomes as they are, with no
+            // copy into generic records.
+            this.out = new DataFileWriter<GenericRecord>(new SpecificDatumWriter<GenericRecord>(AVRO_SCHEMA)).create(AVRO_SCHEMA, out);
+        }
+
+        @Override
+        public void write(final Outcome outcome, final double probability) throws IOException {
+            record.put(0, outcome);
+            record.put(1, probability);
+            out.append(record);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.brinman2002.classifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Read-only view of a file (or buffer) addressed by long offsets. A single
+ * {@link java.nio.MappedByteBuffer} can't exceed 2GB, so larger files are
+ * mapped as a series of segments. Longs and doubles must be 8 byte aligned
+ * within the file so that they never straddle two segments.
+ * 
+ * @author brandon
+ * 
+ */
+class SegmentedBuffer {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final ByteBuffer[] segments;
+    private final long length;
+
+    private SegmentedBuffer(final ByteBuffer[] segments, final long length) {
+        this.segments = segments;
+        this.length = length;
+    }
+
+    /**
+     * Map the whole file read only. The file doesn't need to remain open once
+     * it has been mapped.
+     */
+    static SegmentedBuffer map(final File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            final long length = channel.size();
+            final ByteBuffer[] segments = new ByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; ++i) {
+                final long position = ((long) i) << SEGMENT_SHIFT;
+                segments[i] = channel.map(MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+            }
+            return new SegmentedBuffer(segments, length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Wrap an existing buffer, from its position to its limit.
+     */
+    static SegmentedBuffer wrap(final ByteBuffer buffer) {
+        return new SegmentedBuffer(new ByteBuffer[] { buffer.slice() }, buffer.remaining());
+    }
+
+    long length() {
+        return length;
+    }
+
+    byte get(final long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    int getInt(final long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & SEGMENT_MASK));
+    }
+
+    long getLong(final long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    double getDouble(final long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getDouble((int) (position & SEGMENT_MASK));
+    }
+}
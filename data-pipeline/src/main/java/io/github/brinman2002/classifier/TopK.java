@@ -0,0 +1,132 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.classifier;
+
+/**
+ * Selects the indices of the k highest of an array of scores with a bounded
+ * heap of primitive indices, in O(n log k) time and without allocating once
+ * built; a full sort of thousands of outcomes to keep the best few is
+ * avoided. Ties go to the lower index, so the selection is deterministic.
+ * Scores of negative infinity (outcomes not seen with any attribute) and NaN
+ * are never selected.
+ * <p>
+ * Not thread safe; the heap is reused by each selection.
+ * 
+ * @author brandon
+ * 
+ */
+public class TopK {
+
+    private final int[] heap;
+    private double[] scores;
+
+    /**
+     * @param k
+     *            Maximum number of indices to select.
+     */
+    public TopK(final int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive, was " + k);
+        }
+        heap = new int[k];
+    }
+
+    public int getK() {
+        return heap.length;
+    }
+
+    /**
+     * Select the best scores.
+     * 
+     * @param scores
+     *            Scores, for instance as returned by
+     *            {@link NaiveBayesModel.Scorer#score(java.util.Collection)}.
+     * @param indices
+     *            Array of at least k elements to receive the indices of the
+     *            best scores, best first.
+     * @return Number of indices selected; fewer than k if fewer scores were
+     *         finite.
+     */
+    public int select(final double[] scores, final int[] indices) {
+        this.scores = scores;
+        final int k = heap.length;
+        int size = 0;
+        // The root of the heap is the worst of the best k so far.
+        for (int i = 0; i < scores.length; ++i) {
+            final double score = scores[i];
+            if (score == Double.NEGATIVE_INFINITY || Double.isNaN(score)) {
+                continue;
+            }
+            if (size < k) {
+                heap[size] = i;
+                siftUp(size++);
+            } else if (better(i, heap[0])) {
+                heap[0] = i;
+                siftDown(0, size);
+            }
+        }
+
+        // Pop the worst off the heap into the back of the output, so the
+        // output ends up best first.
+        for (int end = size - 1; end >= 0; --end) {
+            indices[end] = heap[0];
+            heap[0] = heap[end];
+            siftDown(0, end);
+        }
+        this.scores = null;
+        return size;
+    }
+
+    /**
+     * @return Whether the score at index a ranks above the score at index b.
+     */
+    private boolean better(final int a, final int b) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private void siftUp(int child) {
+        final int index = heap[child];
+        while (child > 0) {
+            final int parent = (child - 1) >>> 1;
+            if (!better(heap[parent], index)) {
+                break;
+            }
+            heap[child] = heap[parent];
+            child = parent;
+        }
+        heap[child] = index;
+    }
+
+    private void siftDown(int parent, final int size) {
+        final int index = heap[parent];
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && better(heap[child], heap[child + 1])) {
+                ++child;
+            }
+            if (!better(index, heap[child])) {
+                break;
+            }
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        heap[parent] = index;
+    }
+}
@@ -16,6 +16,8 @@
 
 package io.github.brinman2002.dofn;
 
+import io.github.brinman2002.dofn.internal.StageMetrics;
+
 import org.apache.crunch.DoFn;
 import org.apache.crunch.Emitter;
 import org.apache.crunch.Pair;
@@ -27,8 +29,10 @@ import org.apache.crunch.Pair;
  * but the data should be grouped by a (much) larger interval.
  * 
  * <p>
- * The current implementation of this function supports a single day as the
- * block.
+ * The block is a single day unless another interval is given. Blocks start at
+ * the offset (zero, the Epoch, by default) plus a whole number of intervals,
+ * and each key is rounded down to the start of its block. To block the same
+ * data by several intervals in one pass, see {@link MultiBlockingDoFn}.
  * 
  * @author brandon
  * 
@@ -41,14 +45,68 @@ public class BlockingDoFn<T> extends DoFn<Pair<Long, T>, Pair<Long, T>> {
      */
     private static final long serialVersionUID = 7364278592499656252L;
 
-    // Millis in one day. As we're not sending people to Mars, we aren't
+    // Millis in common blocks. As we're not sending people to Mars, we aren't
     // accounting for leap seconds or any other things that complicate reality.
-    private static final long ONE_DAY = 1000 * 60 * 60 * 24;
+    public static final long ONE_HOUR = 1000L * 60 * 60;
+    public static final long ONE_DAY = ONE_HOUR * 24;
+    public static final long ONE_WEEK = ONE_DAY * 7;
+
+    private final long interval;
+    private final long offset;
+    private final StageMetrics metrics = new StageMetrics(BlockingDoFn.class.getSimpleName());
+
+    public BlockingDoFn() {
+        this(ONE_DAY);
+    }
+
+    /**
+     * @param interval
+     *            Length of a block.
+     */
+    public BlockingDoFn(final long interval) {
+        this(interval, 0);
+    }
+
+    /**
+     * @param interval
+     *            Length of a block.
+     * @param offset
+     *            Start of any one block, for instance to start days at a time
+     *            zone's midnight or weeks on a Monday.
+     */
+    public BlockingDoFn(final long interval, final long offset) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be positive, was " + interval);
+        }
+        this.interval = interval;
+        this.offset = offset;
+    }
 
     @Override
     public void process(final Pair<Long, T> input, final Emitter<Pair<Long, T>> emitter) {
-        final long dateTimeBlocked = (input.first().longValue() / ONE_DAY) * ONE_DAY;
-        emitter.emit(Pair.of(dateTimeBlocked, input.second()));
+        final long start = metrics.begin();
+        emitter.emit(Pair.of(block(input.first(), interval, offset), input.second()));
+        metrics.emitted();
+        metrics.end(start);
+    }
+
+    @Override
+    public void cleanup(final Emitter<Pair<Long, T>> emitter) {
+        metrics.publish(getContext());
+    }
+
+    /**
+     * Round the key down to the start of its block.
+     */
+    static long block(final long key, final long interval, final long offset) {
+        final long shifted = key - offset;
+        // Round towards negative infinity, so keys before the offset still
+        // fall in the block that contains them.
+        long blocks = shifted / interval;
+        if (shifted % interval < 0) {
+            --blocks;
+        }
+        return blocks * interval + offset;
     }
 
 }
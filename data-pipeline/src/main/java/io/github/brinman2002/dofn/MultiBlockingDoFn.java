@@ -0,0 +1,79 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn;
+
+import java.util.Arrays;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.Pair;
+
+/**
+ * Block together objects by several intervals at once, as
+ * {@link BlockingDoFn} does by one. Each object is emitted once per interval,
+ * keyed by the interval and the block, so the blocks of different intervals
+ * never group together and the data only needs to be read once to train a
+ * model at each granularity. {@link SelectGranularityDoFn} takes the blocks of
+ * one interval back out.
+ * 
+ * @author brandon
+ * 
+ * @param <T>
+ */
+public class MultiBlockingDoFn<T> extends DoFn<Pair<Long, T>, Pair<Pair<Long, Long>, T>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -1950208497385262931L;
+
+    private final long offset;
+    private final long[] intervals;
+
+    /**
+     * @param offset
+     *            Start of any one block, as for
+     *            {@link BlockingDoFn#BlockingDoFn(long, long)}.
+     * @param intervals
+     *            Lengths of the blocks. Each must be positive, and appear only
+     *            once, or its blocks would be emitted, and counted, twice.
+     */
+    public MultiBlockingDoFn(final long offset, final long... intervals) {
+        if (intervals.length == 0) {
+            throw new IllegalArgumentException("At least one interval is required");
+        }
+        final long[] sorted = intervals.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; ++i) {
+            if (sorted[i] < 1) {
+                throw new IllegalArgumentException("intervals must be positive, was " + sorted[i]);
+            }
+            if (i > 0 && sorted[i] == sorted[i - 1]) {
+                throw new IllegalArgumentException("intervals must be distinct, " + sorted[i] + " was given more than once");
+            }
+        }
+        this.offset = offset;
+        this.intervals = intervals.clone();
+    }
+
+    @Override
+    public void process(final Pair<Long, T> input, final Emitter<Pair<Pair<Long, Long>, T>> emitter) {
+        for (final long interval : intervals) {
+            emitter.emit(Pair.of(Pair.of(interval, BlockingDoFn.block(input.first(), interval, offset)), input.second()));
+        }
+    }
+}
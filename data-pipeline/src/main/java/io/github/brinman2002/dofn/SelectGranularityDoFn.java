@@ -0,0 +1,57 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.Pair;
+
+/**
+ * Select the blocks of one interval from the output of
+ * {@link MultiBlockingDoFn}, keyed by the block alone so that they can be
+ * trained on as if they had been blocked by {@link BlockingDoFn}. Selecting
+ * each interval in turn from the same blocked table still reads the input only
+ * once, as the selections run in the same tasks as the blocking.
+ * 
+ * @author brandon
+ * 
+ * @param <T>
+ */
+public class SelectGranularityDoFn<T> extends DoFn<Pair<Pair<Long, Long>, T>, Pair<Long, T>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 3165503744530474185L;
+
+    private final long interval;
+
+    /**
+     * @param interval
+     *            Interval to select, as passed to {@link MultiBlockingDoFn}.
+     */
+    public SelectGranularityDoFn(final long interval) {
+        this.interval = interval;
+    }
+
+    @Override
+    public void process(final Pair<Pair<Long, Long>, T> input, final Emitter<Pair<Long, T>> emitter) {
+        if (input.first().first() == interval) {
+            emitter.emit(Pair.of(input.first().second(), input.second()));
+        }
+    }
+}
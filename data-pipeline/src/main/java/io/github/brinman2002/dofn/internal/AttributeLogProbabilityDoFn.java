@@ -0,0 +1,50 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+
+import org.apache.crunch.MapFn;
+import org.apache.crunch.Pair;
+
+/**
+ * Key the probability of an attribute given an outcome, joined with the
+ * probability of the outcome, back by the attribute. Both probabilities are
+ * converted to logs here, once per attribute/outcome pairing, rather than once
+ * per observation of the attribute.
+ * 
+ * @author brandon
+ * 
+ */
+public class AttributeLogProbabilityDoFn extends
+        MapFn<Pair<Outcome, Pair<Pair<Attribute, Double>, Double>>, Pair<Attribute, Pair<Outcome, Pair<Double, Double>>>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -7342905716412281097L;
+
+    @Override
+    public Pair<Attribute, Pair<Outcome, Pair<Double, Double>>> map(final Pair<Outcome, Pair<Pair<Attribute, Double>, Double>> input) {
+        final Outcome outcome = input.first();
+        final Attribute attribute = input.second().first().first();
+        final double attributeProbability = input.second().first().second();
+        final double outcomeProbability = input.second().second();
+        return Pair.of(attribute, Pair.of(outcome, Pair.of(Math.log(attributeProbability), Math.log(outcomeProbability))));
+    }
+}
@@ -16,9 +16,6 @@
 
 package io.github.brinman2002.dofn.internal;
 
-import io.github.brinman2002.data.model.Attribute;
-import io.github.brinman2002.data.model.Outcome;
-
 import org.apache.crunch.DoFn;
 import org.apache.crunch.Emitter;
 import org.apache.crunch.Pair;
@@ -37,22 +34,35 @@ import org.apache.crunch.Pair;
  * 
  * @author brandon
  * 
+ * @param <O>
+ *            Type of the outcomes.
+ * @param <A>
+ *            Type of the attributes.
  */
-public class AttributeOutcomeProbabilityCalculatingDoFn extends
-        DoFn<Pair<Outcome, Pair<Pair<Attribute, Long>, Long>>, Pair<Attribute, Pair<Outcome, Double>>> {
+public class AttributeOutcomeProbabilityCalculatingDoFn<O, A> extends DoFn<Pair<O, Pair<Pair<A, Long>, Long>>, Pair<A, Pair<O, Double>>> {
 
     /**
      * 
      */
     private static final long serialVersionUID = -469857876381729475L;
 
+    private final StageMetrics metrics = new StageMetrics(AttributeOutcomeProbabilityCalculatingDoFn.class.getSimpleName());
+
     @Override
-    public void process(final Pair<Outcome, Pair<Pair<Attribute, Long>, Long>> input, final Emitter<Pair<Attribute, Pair<Outcome, Double>>> emitter) {
-        final Outcome outcome = input.first();
-        final Attribute attribute = input.second().first().first();
+    public void process(final Pair<O, Pair<Pair<A, Long>, Long>> input, final Emitter<Pair<A, Pair<O, Double>>> emitter) {
+        final long start = metrics.begin();
+        final O outcome = input.first();
+        final A attribute = input.second().first().first();
         final long outcomeCount = input.second().second();
         final long attributeCount = input.second().first().second();
 
         emitter.emit(Pair.of(attribute, Pair.of(outcome, (attributeCount * 1.0) / outcomeCount)));
+        metrics.emitted();
+        metrics.end(start);
+    }
+
+    @Override
+    public void cleanup(final Emitter<Pair<A, Pair<O, Double>>> emitter) {
+        metrics.publish(getContext());
     }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.Pair;
+
+/**
+ * Process a single block of cogrouped outcomes and attributes. The attributes
+ * of the block are made distinct, and every outcome of the block is paired
+ * with each of them with a count of one.
+ * 
+ * @author brandon
+ * 
+ * @param <K>
+ *            Type of the block key.
+ * @param <O>
+ *            Type of the outcomes.
+ * @param <A>
+ *            Type of the attributes.
+ */
+public class BlockOutcomeAttributeDoFn<K, O, A> extends DoFn<Pair<K, Pair<Collection<O>, Collection<A>>>, Pair<Pair<O, A>, Long>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -2954937017655328816L;
+
+    private static final Long ONE = 1L;
+
+    private final StageMetrics metrics = new StageMetrics(BlockOutcomeAttributeDoFn.class.getSimpleName());
+
+    @Override
+    public void process(final Pair<K, Pair<Collection<O>, Collection<A>>> input, final Emitter<Pair<Pair<O, A>, Long>> emitter) {
+        final long start = metrics.begin();
+        final Collection<O> outcomes = input.second().first();
+        if (outcomes.isEmpty()) {
+            // Attributes without an outcome don't contribute to anything.
+            metrics.end(start);
+            return;
+        }
+        // Multiple occurrences of the same attribute in a block should not
+        // adversely weight the attribute.
+        final Set<A> attributes = new HashSet<A>(input.second().second());
+
+        for (final O outcome : outcomes) {
+            for (final A attribute : attributes) {
+                emitter.emit(Pair.of(Pair.of(outcome, attribute), ONE));
+                metrics.emitted();
+            }
+        }
+        metrics.end(start);
+    }
+
+    @Override
+    public void cleanup(final Emitter<Pair<Pair<O, A>, Long>> emitter) {
+        metrics.publish(getContext());
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2013 Brandon Inman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.Pair;
+
+/**
+ * Assign dense integer ids to distinct values that have been grouped by
+ * partition. Each value comes with the first id of its partition, the number
+ * of values in the partitions before it, so the partitions can be numbered in
+ * parallel and the ids still run from zero without gaps.
+ * 
+ * @author brandon
+ * 
+ * @param <T>
+ */
+public class DenseIdDoFn<T> extends DoFn<Pair<Integer, Iterable<Pair<T, Long>>>, Pair<T, Integer>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -3127464526813201544L;
+
+    @Override
+    public void process(final Pair<Integer, Iterable<Pair<T, Long>>> input, final Emitter<Pair<T, Integer>> emitter) {
+        long id = -1;
+        for (final Pair<T, Long> value : input.second()) {
+            if (id < 0) {
+                id = value.second();
+            }
+            if (id > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct values to assign integer ids to");
+            }
+            emitter.emit(Pair.of(value.first(), (int) id++));
+        }
+    }
+}
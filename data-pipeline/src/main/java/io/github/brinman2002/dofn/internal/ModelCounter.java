@@ -0,0 +1,35 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+/**
+ * Counters of what went into, or was left out of, training and prediction.
+ * 
+ * @author brandon
+ * 
+ */
+public enum ModelCounter {
+    /**
+     * Distinct outcomes whose probability was calculated.
+     */
+    DISTINCT_OUTCOMES,
+    /**
+     * Attribute/outcome probabilities dropped in prediction for attributes
+     * that were not observed.
+     */
+    ATTRIBUTES_FILTERED_OUT
+}
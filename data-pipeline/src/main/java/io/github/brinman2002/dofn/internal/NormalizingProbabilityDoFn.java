@@ -0,0 +1,95 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.Pair;
+import org.apache.crunch.types.PType;
+
+/**
+ * Calculate the probability of each object from a group holding all of the
+ * objects and their counts. This serves the same purpose as
+ * {@link ProbabilityCalculatingDoFn} without needing the total number of events
+ * to be known (and therefore computed by a separate job) before the pipeline
+ * runs. All of the objects are held in memory, so this is only suitable for
+ * small sets, such as the outcomes of a classifier.
+ * 
+ * @author brandon
+ * 
+ * @param <K>
+ *            Key that all of the objects were grouped under.
+ * @param <T>
+ */
+public class NormalizingProbabilityDoFn<K, T> extends DoFn<Pair<K, Iterable<Pair<T, Long>>>, Pair<T, Double>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -1823474318807580466L;
+
+    private final PType<T> type;
+    private final StageMetrics metrics = new StageMetrics(NormalizingProbabilityDoFn.class.getSimpleName());
+    private transient long distinctObjects;
+
+    /**
+     * @param type
+     *            Type of the objects, used to detach them from the grouped
+     *            values as they are buffered.
+     */
+    public NormalizingProbabilityDoFn(final PType<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public void initialize() {
+        type.initialize(getConfiguration());
+    }
+
+    @Override
+    public void process(final Pair<K, Iterable<Pair<T, Long>>> input, final Emitter<Pair<T, Double>> emitter) {
+        final long start = metrics.begin();
+        final List<T> objects = new ArrayList<T>();
+        final List<Long> counts = new ArrayList<Long>();
+        long totalEvents = 0;
+        for (final Pair<T, Long> pair : input.second()) {
+            objects.add(type.getDetachedValue(pair.first()));
+            counts.add(pair.second());
+            totalEvents += pair.second();
+        }
+        // Implicit conversion from long to double
+        final double total = totalEvents;
+        for (int i = 0; i < objects.size(); ++i) {
+            emitter.emit(Pair.of(objects.get(i), counts.get(i) / total));
+            metrics.emitted();
+        }
+        distinctObjects += objects.size();
+        metrics.end(start);
+    }
+
+    @Override
+    public void cleanup(final Emitter<Pair<T, Double>> emitter) {
+        // Only outcomes are normalized this way, so each object is one
+        // distinct outcome. Counters are costly to look up, so this is only
+        // counted once per task.
+        increment(ModelCounter.DISTINCT_OUTCOMES, distinctObjects);
+        metrics.publish(getContext());
+    }
+}
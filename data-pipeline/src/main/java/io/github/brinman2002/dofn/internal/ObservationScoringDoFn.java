@@ -0,0 +1,109 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import io.github.brinman2002.data.model.Outcome;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.Pair;
+import org.apache.crunch.types.PType;
+
+/**
+ * Score one observation from all of the log probabilities of its attributes.
+ * Each value holds an outcome, the log probability of one of the observed
+ * attributes given that outcome, and the log probability of the outcome. The
+ * score of an outcome is the sum of its attribute log probabilities plus its
+ * own log probability; outcomes are emitted best first, with the score
+ * converted back to a probability.
+ * 
+ * @author brandon
+ * 
+ * @param <K>
+ *            Key of the observation.
+ */
+public class ObservationScoringDoFn<K> extends DoFn<Pair<K, Iterable<Pair<Outcome, Pair<Double, Double>>>>, Pair<K, Pair<Outcome, Double>>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 6297043391549250417L;
+
+    private final PType<Outcome> outcomeType;
+    private final int limit;
+    private final StageMetrics metrics = new StageMetrics(ObservationScoringDoFn.class.getSimpleName());
+
+    /**
+     * @param outcomeType
+     *            Type of the outcomes, used to detach them from the grouped
+     *            values as they are buffered.
+     * @param limit
+     *            Maximum number of outcomes to emit for each observation.
+     */
+    public ObservationScoringDoFn(final PType<Outcome> outcomeType, final int limit) {
+        this.outcomeType = outcomeType;
+        this.limit = limit;
+    }
+
+    @Override
+    public void initialize() {
+        outcomeType.initialize(getConfiguration());
+    }
+
+    @Override
+    public void process(final Pair<K, Iterable<Pair<Outcome, Pair<Double, Double>>>> input, final Emitter<Pair<K, Pair<Outcome, Double>>> emitter) {
+        final long start = metrics.begin();
+        // The number of outcomes is assumed to be small.
+        final Map<Outcome, double[]> scores = new HashMap<Outcome, double[]>();
+        for (final Pair<Outcome, Pair<Double, Double>> value : input.second()) {
+            final double[] score = scores.get(value.first());
+            if (score == null) {
+                scores.put(outcomeType.getDetachedValue(value.first()), new double[] { value.second().first() + value.second().second() });
+            } else {
+                score[0] += value.second().first();
+            }
+        }
+
+        final List<Map.Entry<Outcome, double[]>> ranked = new ArrayList<Map.Entry<Outcome, double[]>>(scores.entrySet());
+        Collections.sort(ranked, new Comparator<Map.Entry<Outcome, double[]>>() {
+            @Override
+            public int compare(final Map.Entry<Outcome, double[]> o1, final Map.Entry<Outcome, double[]> o2) {
+                final int cmp = Double.compare(o2.getValue()[0], o1.getValue()[0]);
+                return cmp != 0 ? cmp : o1.getKey().compareTo(o2.getKey());
+            }
+        });
+
+        for (int i = 0; i < ranked.size() && i < limit; ++i) {
+            final Map.Entry<Outcome, double[]> entry = ranked.get(i);
+            emitter.emit(Pair.of(input.first(), Pair.of(entry.getKey(), Math.exp(entry.getValue()[0]))));
+            metrics.emitted();
+        }
+        metrics.end(start);
+    }
+
+    @Override
+    public void cleanup(final Emitter<Pair<K, Pair<Outcome, Double>>> emitter) {
+        metrics.publish(getContext());
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2013 Brandon Inman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.Pair;
+
+/**
+ * Turn the number of values in each partition into the first id of each
+ * partition. A partition's size is emitted to every later partition, to be
+ * summed there, along with a zero for the partition itself so that the first
+ * partition has an offset too.
+ * 
+ * @author brandon
+ * 
+ */
+public class PartitionOffsetDoFn extends DoFn<Pair<Integer, Long>, Pair<Integer, Long>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 6140523975513498826L;
+
+    private final int partitions;
+
+    /**
+     * @param partitions
+     *            Number of partitions the values were split into.
+     */
+    public PartitionOffsetDoFn(final int partitions) {
+        this.partitions = partitions;
+    }
+
+    @Override
+    public void process(final Pair<Integer, Long> input, final Emitter<Pair<Integer, Long>> emitter) {
+        emitter.emit(Pair.of(input.first(), 0L));
+        for (int partition = input.first() + 1; partition < partitions; ++partition) {
+            emitter.emit(Pair.of(partition, input.second()));
+        }
+    }
+}
@@ -38,6 +38,7 @@ public class ProbabilityCalculatingDoFn<T> extends DoFn<Pair<T, Long>, Pair<T, D
     private static final long serialVersionUID = 1L;
 
     private final double totalEvents;
+    private final StageMetrics metrics = new StageMetrics(ProbabilityCalculatingDoFn.class.getSimpleName());
 
     public ProbabilityCalculatingDoFn(final long totalEvents) {
         // Implicit conversion from long to double
@@ -46,6 +47,17 @@ public class ProbabilityCalculatingDoFn<T> extends DoFn<Pair<T, Long>, Pair<T, D
 
     @Override
     public void process(final Pair<T, Long> input, final Emitter<Pair<T, Double>> emitter) {
+        final long start = metrics.begin();
         emitter.emit(Pair.of(input.first(), input.second() / totalEvents));
+        metrics.emitted();
+        metrics.end(start);
+    }
+
+    @Override
+    public void cleanup(final Emitter<Pair<T, Double>> emitter) {
+        // Each input is the count of one distinct event. Counters are costly
+        // to look up, so this is only counted once per task.
+        increment(ModelCounter.DISTINCT_OUTCOMES, metrics.getInputRecords());
+        metrics.publish(getContext());
     }
 }
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+/**
+ * Counters kept while pruning attribute/outcome pairs during training.
+ * 
+ * @author brandon
+ * 
+ */
+public enum PruningCounter {
+    /**
+     * Distinct attribute/outcome pairs counted, before any pruning.
+     */
+    PAIRS_COUNTED,
+    /**
+     * Pairs dropped for being seen fewer than the minimum number of times.
+     */
+    PAIRS_BELOW_MINIMUM_COUNT,
+    /**
+     * Pairs dropped for not being among the most probable outcomes of their
+     * attribute.
+     */
+    PAIRS_OVER_OUTCOME_LIMIT
+}
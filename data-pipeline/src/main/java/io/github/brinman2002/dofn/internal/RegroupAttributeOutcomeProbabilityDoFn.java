@@ -0,0 +1,55 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+
+import org.apache.crunch.Emitter;
+import org.apache.crunch.MapFn;
+import org.apache.crunch.Pair;
+
+/**
+ * Regroup the attribute/outcome probabilities by the outcome, so that they can
+ * be joined with the probability of the outcome itself.
+ * 
+ * @author brandon
+ * 
+ */
+public class RegroupAttributeOutcomeProbabilityDoFn extends MapFn<Pair<Attribute, Pair<Outcome, Double>>, Pair<Outcome, Pair<Attribute, Double>>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 3915283611298012664L;
+
+    private final StageMetrics metrics = new StageMetrics(RegroupAttributeOutcomeProbabilityDoFn.class.getSimpleName());
+
+    @Override
+    public Pair<Outcome, Pair<Attribute, Double>> map(final Pair<Attribute, Pair<Outcome, Double>> input) {
+        final long start = metrics.begin();
+        final Pair<Outcome, Pair<Attribute, Double>> output = Pair.of(input.second().first(), Pair.of(input.first(), input.second().second()));
+        metrics.emitted();
+        metrics.end(start);
+        return output;
+    }
+
+    @Override
+    public void cleanup(final Emitter<Pair<Outcome, Pair<Attribute, Double>>> emitter) {
+        metrics.publish(getContext());
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+
+import org.apache.crunch.MapFn;
+import org.apache.crunch.Pair;
+
+/**
+ * Regroup observed attributes, joined with their log probabilities, by the key
+ * of the observation.
+ * 
+ * @author brandon
+ * 
+ * @param <K>
+ *            Key of the observation.
+ */
+public class RegroupObservationDoFn<K> extends
+        MapFn<Pair<Attribute, Pair<Pair<Outcome, Pair<Double, Double>>, K>>, Pair<K, Pair<Outcome, Pair<Double, Double>>>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -4750327713370563316L;
+
+    @Override
+    public Pair<K, Pair<Outcome, Pair<Double, Double>>> map(final Pair<Attribute, Pair<Pair<Outcome, Pair<Double, Double>>, K>> input) {
+        return Pair.of(input.second().second(), input.second().first());
+    }
+}
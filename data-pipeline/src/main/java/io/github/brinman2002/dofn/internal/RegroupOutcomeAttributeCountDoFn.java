@@ -16,33 +16,68 @@
 
 package io.github.brinman2002.dofn.internal;
 
-import io.github.brinman2002.data.model.Attribute;
-import io.github.brinman2002.data.model.Outcome;
-
 import org.apache.crunch.DoFn;
 import org.apache.crunch.Emitter;
 import org.apache.crunch.Pair;
 
 /**
  * Regroup the count of outcome/attribute pairs into a pair of outcome and
- * attribute/counts.
+ * attribute/counts. Pairs seen fewer than the minimum number of times are
+ * dropped.
  * 
  * @author brandon
  * 
+ * @param <O>
+ *            Type of the outcomes.
+ * @param <A>
+ *            Type of the attributes.
  */
-public class RegroupOutcomeAttributeCountDoFn extends DoFn<Pair<Pair<Outcome, Attribute>, Long>, Pair<Outcome, Pair<Attribute, Long>>> {
+public class RegroupOutcomeAttributeCountDoFn<O, A> extends DoFn<Pair<Pair<O, A>, Long>, Pair<O, Pair<A, Long>>> {
 
     /**
      * 
      */
     private static final long serialVersionUID = 5322550060946429293L;
 
+    private final long minimumCount;
+    private final StageMetrics metrics = new StageMetrics(RegroupOutcomeAttributeCountDoFn.class.getSimpleName());
+    private transient long belowMinimum;
+
+    public RegroupOutcomeAttributeCountDoFn() {
+        this(1);
+    }
+
+    /**
+     * @param minimumCount
+     *            Minimum number of times a pair must have been seen to be
+     *            kept.
+     */
+    public RegroupOutcomeAttributeCountDoFn(final long minimumCount) {
+        this.minimumCount = minimumCount;
+    }
+
     @Override
-    public void process(final Pair<Pair<Outcome, Attribute>, Long> input, final Emitter<Pair<Outcome, Pair<Attribute, Long>>> emitter) {
-        final Pair<Outcome, Attribute> pair = input.first();
-        final Outcome outcome = pair.first();
-        final Attribute attribute = pair.second();
+    public void process(final Pair<Pair<O, A>, Long> input, final Emitter<Pair<O, Pair<A, Long>>> emitter) {
+        final long start = metrics.begin();
+        final Pair<O, A> pair = input.first();
+        final O outcome = pair.first();
+        final A attribute = pair.second();
         final Long count = input.second();
-        emitter.emit(Pair.of(outcome, Pair.of(attribute, count)));
+        if (count < minimumCount) {
+            belowMinimum++;
+        } else {
+            emitter.emit(Pair.of(outcome, Pair.of(attribute, count)));
+            metrics.emitted();
+        }
+        metrics.end(start);
+    }
+
+    @Override
+    public void cleanup(final Emitter<Pair<O, Pair<A, Long>>> emitter) {
+        // Counters are costly to look up, so they are only added once per
+        // task. Every input is one distinct pair.
+        increment(PruningCounter.PAIRS_COUNTED, metrics.getInputRecords());
+        increment(PruningCounter.PAIRS_BELOW_MINIMUM_COUNT, belowMinimum);
+        metrics.publish(getContext());
     }
 }
\ No newline at end of file
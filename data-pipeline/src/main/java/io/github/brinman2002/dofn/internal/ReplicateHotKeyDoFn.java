@@ -0,0 +1,69 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import java.util.Set;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.Pair;
+
+/**
+ * Salt the keys of the smaller side of a join or cogroup to match
+ * {@link SplitHotKeyDoFn}. Values of hot keys are copied to every shard, so
+ * that each shard of the larger side still meets all of them; every other key
+ * is left on shard zero.
+ * 
+ * @author brandon
+ * 
+ * @param <V>
+ *            Type of the values.
+ */
+public class ReplicateHotKeyDoFn<V> extends DoFn<Pair<Long, V>, Pair<Pair<Long, Integer>, V>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -5710263369420946619L;
+
+    private static final Integer NO_SHARD = 0;
+
+    private final Set<Long> hotKeys;
+    private final int shards;
+
+    /**
+     * @param hotKeys
+     *            Keys to replicate; must be serializable.
+     * @param shards
+     *            Number of shards each hot key was split across.
+     */
+    public ReplicateHotKeyDoFn(final Set<Long> hotKeys, final int shards) {
+        this.hotKeys = hotKeys;
+        this.shards = shards;
+    }
+
+    @Override
+    public void process(final Pair<Long, V> input, final Emitter<Pair<Pair<Long, Integer>, V>> emitter) {
+        if (!hotKeys.contains(input.first())) {
+            emitter.emit(Pair.of(Pair.of(input.first(), NO_SHARD), input.second()));
+            return;
+        }
+        for (int shard = 0; shard < shards; ++shard) {
+            emitter.emit(Pair.of(Pair.of(input.first(), shard), input.second()));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import java.util.Set;
+
+import org.apache.crunch.MapFn;
+import org.apache.crunch.Pair;
+
+/**
+ * Salt the keys of the larger side of a join or cogroup with a shard number.
+ * Values of hot keys are spread over the shards by their hash code, so equal
+ * values always land on the same shard, which must hold in every task (as it
+ * does for Avro records and boxed primitives). Every other key is left on
+ * shard zero.
+ * 
+ * @author brandon
+ * 
+ * @param <V>
+ *            Type of the values.
+ */
+public class SplitHotKeyDoFn<V> extends MapFn<Pair<Long, V>, Pair<Pair<Long, Integer>, V>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 4436807153302671826L;
+
+    private static final Integer NO_SHARD = 0;
+
+    private final Set<Long> hotKeys;
+    private final int shards;
+
+    /**
+     * @param hotKeys
+     *            Keys to split; must be serializable.
+     * @param shards
+     *            Number of shards to split each hot key across.
+     */
+    public SplitHotKeyDoFn(final Set<Long> hotKeys, final int shards) {
+        this.hotKeys = hotKeys;
+        this.shards = shards;
+    }
+
+    @Override
+    public Pair<Pair<Long, Integer>, V> map(final Pair<Long, V> input) {
+        if (!hotKeys.contains(input.first())) {
+            return Pair.of(Pair.of(input.first(), NO_SHARD), input.second());
+        }
+        final int shard = (input.second().hashCode() & Integer.MAX_VALUE) % shards;
+        return Pair.of(Pair.of(input.first(), shard), input.second());
+    }
+}
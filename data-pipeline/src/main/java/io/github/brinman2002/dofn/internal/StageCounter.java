@@ -0,0 +1,43 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+/**
+ * Counters kept by {@link StageMetrics} for each instrumented stage. Each
+ * stage has its own counter group, named by {@link StageMetrics#group()}.
+ * 
+ * @author brandon
+ * 
+ */
+public enum StageCounter {
+    /**
+     * Records processed.
+     */
+    INPUT_RECORDS,
+    /**
+     * Records emitted, including any emitted on cleanup.
+     */
+    OUTPUT_RECORDS,
+    /**
+     * Records whose processing was timed.
+     */
+    TIMED_RECORDS,
+    /**
+     * Nanoseconds spent processing the timed records.
+     */
+    TIMED_NANOS
+}
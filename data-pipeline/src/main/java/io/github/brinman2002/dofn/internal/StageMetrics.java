@@ -0,0 +1,162 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import java.io.Serializable;
+
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+/**
+ * Records and processing time of one stage of a pipeline, kept by the DoFn of
+ * the stage and published as {@link StageCounter}s when it is cleaned up.
+ * Counts are kept in fields rather than counters so that each record costs a
+ * few additions; only one record in {@link #SAMPLE_INTERVAL} is timed, as
+ * reading the clock costs more than most of the DoFns being timed.
+ * <p>
+ * A DoFn wraps its processing of each record in {@link #begin()} and
+ * {@link #end(long)}, calls {@link #emitted()} for each record it emits, and
+ * calls {@link #publish(TaskInputOutputContext)} with its context from
+ * cleanup:
+ * 
+ * <pre>
+ * public void process(final S input, final Emitter&lt;T&gt; emitter) {
+ *     final long start = metrics.begin();
+ *     emitter.emit(...);
+ *     metrics.emitted();
+ *     metrics.end(start);
+ * }
+ * 
+ * public void cleanup(final Emitter&lt;T&gt; emitter) {
+ *     metrics.publish(getContext());
+ * }
+ * </pre>
+ * 
+ * @author brandon
+ * 
+ */
+public class StageMetrics implements Serializable {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -2205981427531566340L;
+
+    /**
+     * Prefix of the counter group of each stage.
+     */
+    public static final String GROUP_PREFIX = "io.github.brinman2002.stage.";
+
+    /**
+     * One record in this many is timed; a power of two.
+     */
+    public static final int SAMPLE_INTERVAL = 64;
+
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private final String stage;
+    private transient long inputRecords;
+    private transient long outputRecords;
+    private transient long timedRecords;
+    private transient long timedNanos;
+
+    /**
+     * @param stage
+     *            Name of the stage, usually the simple name of the DoFn.
+     */
+    public StageMetrics(final String stage) {
+        this.stage = stage;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * @return Name of the counter group of the stage.
+     */
+    public String group() {
+        return GROUP_PREFIX + stage;
+    }
+
+    /**
+     * Count a record coming in. The last record of each interval is timed
+     * rather than the first, so that the first record of a task, which pays
+     * for loading and warming up the classes, doesn't skew the estimate; a
+     * task that sees fewer records than the interval isn't timed at all.
+     * 
+     * @return Time to pass to {@link #end(long)}.
+     */
+    public long begin() {
+        if ((++inputRecords & (SAMPLE_INTERVAL - 1)) == 0) {
+            return System.nanoTime();
+        }
+        return NOT_TIMED;
+    }
+
+    /**
+     * Finish processing a record.
+     * 
+     * @param start
+     *            Value returned by {@link #begin()} for the record.
+     */
+    public void end(final long start) {
+        if (start != NOT_TIMED) {
+            timedNanos += System.nanoTime() - start;
+            ++timedRecords;
+        }
+    }
+
+    /**
+     * Count a record going out.
+     */
+    public void emitted() {
+        ++outputRecords;
+    }
+
+    /**
+     * @return Records processed since the counts were last published.
+     */
+    public long getInputRecords() {
+        return inputRecords;
+    }
+
+    /**
+     * @return Records emitted since the counts were last published.
+     */
+    public long getOutputRecords() {
+        return outputRecords;
+    }
+
+    /**
+     * Add the counts so far to the counters of the context and start over.
+     * Without a context, as when a DoFn is called directly, the counts are
+     * dropped.
+     */
+    public void publish(final TaskInputOutputContext<?, ?, ?, ?> context) {
+        if (context != null) {
+            final String group = group();
+            context.getCounter(group, StageCounter.INPUT_RECORDS.name()).increment(inputRecords);
+            context.getCounter(group, StageCounter.OUTPUT_RECORDS.name()).increment(outputRecords);
+            context.getCounter(group, StageCounter.TIMED_RECORDS.name()).increment(timedRecords);
+            context.getCounter(group, StageCounter.TIMED_NANOS.name()).increment(timedNanos);
+        }
+        inputRecords = 0;
+        outputRecords = 0;
+        timedRecords = 0;
+        timedNanos = 0;
+    }
+}
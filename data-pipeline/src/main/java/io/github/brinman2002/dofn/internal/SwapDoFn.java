@@ -0,0 +1,43 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import org.apache.crunch.MapFn;
+import org.apache.crunch.Pair;
+
+/**
+ * Swap the key and value of each pair, for instance to key observed
+ * attributes by the attribute rather than the observation so that they can be
+ * joined with the training results.
+ * 
+ * @author brandon
+ * 
+ * @param <K>
+ * @param <V>
+ */
+public class SwapDoFn<K, V> extends MapFn<Pair<K, V>, Pair<V, K>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 1189442687357603526L;
+
+    @Override
+    public Pair<V, K> map(final Pair<K, V> input) {
+        return Pair.of(input.second(), input.first());
+    }
+}
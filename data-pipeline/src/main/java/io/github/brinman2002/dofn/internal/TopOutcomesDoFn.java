@@ -0,0 +1,115 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.internal;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.Pair;
+import org.apache.crunch.types.PType;
+
+/**
+ * Keep only the most probable outcomes of each attribute. At most the limit
+ * number of outcomes are held in memory at once.
+ * 
+ * @author brandon
+ * 
+ */
+public class TopOutcomesDoFn extends DoFn<Pair<Attribute, Iterable<Pair<Outcome, Double>>>, Pair<Attribute, Pair<Outcome, Double>>> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 4290147521769806452L;
+
+    private final PType<Outcome> outcomeType;
+    private final int limit;
+    private final StageMetrics metrics = new StageMetrics(TopOutcomesDoFn.class.getSimpleName());
+    private transient long overLimit;
+
+    /**
+     * @param outcomeType
+     *            Type of the outcomes, used to detach them from the grouped
+     *            values as they are buffered.
+     * @param limit
+     *            Maximum number of outcomes to keep for each attribute.
+     */
+    public TopOutcomesDoFn(final PType<Outcome> outcomeType, final int limit) {
+        this.outcomeType = outcomeType;
+        this.limit = limit;
+    }
+
+    @Override
+    public void initialize() {
+        outcomeType.initialize(getConfiguration());
+    }
+
+    @Override
+    public void process(final Pair<Attribute, Iterable<Pair<Outcome, Double>>> input, final Emitter<Pair<Attribute, Pair<Outcome, Double>>> emitter) {
+        final long start = metrics.begin();
+        // The head of the queue is the least probable outcome kept so far.
+        final PriorityQueue<Pair<Outcome, Double>> top = new PriorityQueue<Pair<Outcome, Double>>(limit + 1, ByProbability.INSTANCE);
+        for (final Pair<Outcome, Double> pair : input.second()) {
+            if (top.size() < limit) {
+                top.add(Pair.of(outcomeType.getDetachedValue(pair.first()), pair.second()));
+            } else {
+                overLimit++;
+                if (ByProbability.INSTANCE.compare(pair, top.peek()) > 0) {
+                    top.poll();
+                    top.add(Pair.of(outcomeType.getDetachedValue(pair.first()), pair.second()));
+                }
+            }
+        }
+
+        final List<Pair<Outcome, Double>> kept = new ArrayList<Pair<Outcome, Double>>(top);
+        Collections.sort(kept, Collections.reverseOrder(ByProbability.INSTANCE));
+        for (final Pair<Outcome, Double> pair : kept) {
+            emitter.emit(Pair.of(input.first(), pair));
+            metrics.emitted();
+        }
+        metrics.end(start);
+    }
+
+    @Override
+    public void cleanup(final Emitter<Pair<Attribute, Pair<Outcome, Double>>> emitter) {
+        // Counters are costly to look up, so this is only added once per task.
+        increment(PruningCounter.PAIRS_OVER_OUTCOME_LIMIT, overLimit);
+        metrics.publish(getContext());
+    }
+
+    /**
+     * Orders by probability, then by outcome in reverse so that ties are
+     * broken in favour of the outcome that sorts first.
+     */
+    private static final class ByProbability implements Comparator<Pair<Outcome, Double>> {
+        private static final ByProbability INSTANCE = new ByProbability();
+
+        @Override
+        public int compare(final Pair<Outcome, Double> o1, final Pair<Outcome, Double> o2) {
+            final int cmp = o1.second().compareTo(o2.second());
+            return cmp != 0 ? cmp : o2.first().compareTo(o1.first());
+        }
+    }
+}
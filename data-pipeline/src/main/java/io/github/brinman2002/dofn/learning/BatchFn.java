@@ -0,0 +1,84 @@
+/**
+ * Copyright 2013 Brandon Inman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import org.apache.crunch.FilterFn;
+
+/**
+ * Keep the rows of one of several seeded batches. Every row lands in exactly
+ * one batch, chosen by its hash code mixed with the seed, so a single pass
+ * over the data with one of these per batch splits it into disjoint batches
+ * of about equal size; equal rows always land together, which must hold in
+ * every task (as it does for lists of boxed primitives).
+ * 
+ * @author brandon
+ * 
+ * @param <T>
+ *            Type of the rows.
+ */
+public class BatchFn<T> extends FilterFn<T> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -2202367364434613416L;
+
+    private final long seed;
+    private final int batch;
+    private final int batches;
+
+    /**
+     * @param seed
+     *            Seed of the assignment.
+     * @param batch
+     *            Batch to keep, from zero.
+     * @param batches
+     *            Number of batches.
+     */
+    public BatchFn(final long seed, final int batch, final int batches) {
+        if (batches < 1) {
+            throw new IllegalArgumentException("batches must be positive, was " + batches);
+        }
+        if (batch < 0 || batch >= batches) {
+            throw new IllegalArgumentException("batch must be in [0, " + batches + "), was " + batch);
+        }
+        this.seed = seed;
+        this.batch = batch;
+        this.batches = batches;
+    }
+
+    @Override
+    public boolean accept(final T input) {
+        return batchOf(input.hashCode(), seed, batches) == batch;
+    }
+
+    /**
+     * @return Batch of a row with the hash code, from zero.
+     */
+    static int batchOf(final int hashCode, final long seed, final int batches) {
+        // Finalizer of MurmurHash3, so that rows with nearby hash codes are
+        // spread over the batches.
+        long h = hashCode ^ seed;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) ((h & Long.MAX_VALUE) % batches);
+    }
+}
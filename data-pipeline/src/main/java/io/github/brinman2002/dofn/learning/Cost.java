@@ -1,25 +1,33 @@
 package io.github.brinman2002.dofn.learning;
 
+import io.github.brinman2002.dofn.internal.StageMetrics;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.crunch.DoFn;
 import org.apache.crunch.Emitter;
-import org.apache.crunch.MapFn;
 import org.apache.crunch.PCollection;
 import org.apache.crunch.PTable;
 import org.apache.crunch.Pair;
-import org.apache.crunch.fn.Aggregators;
+import org.apache.crunch.Pipeline;
 import org.apache.crunch.lib.Aggregate;
+import org.apache.crunch.lib.Sample;
 import org.apache.crunch.types.writable.WritableType;
 import org.apache.crunch.types.writable.Writables;
 
 public class Cost {
 
+    private static final Log LOG = LogFactory.getLog(Cost.class);
+
     public final static WritableType<Collection<Double>, ?> INPUT_TYPE = Writables.collections(Writables.doubles());
 
     /**
@@ -40,18 +48,32 @@ public class Cost {
      * @return Value of the cost function.
      */
     public static double of(final PCollection<Collection<Double>> dataSet, final List<Double> thetas, final Double lambda) {
-        final PCollection<Double> costs = dataSet.parallelDo(new LinearRegressionCostDoFn(thetas), Writables.doubles());
+        return of(dataSet, thetas, lambda, Aggregate.length(dataSet).getValue());
+    }
 
-        // Sum outputs.
-        final double cost = costs.by(new MapFn<Double, Integer>() {
-            private static final long serialVersionUID = 4499559488463200632L;
+    /**
+     * Compute the cost as {@link #of(PCollection, List, Double)}, with the
+     * number of rows already known.
+     * 
+     * @param dataSet
+     * @param thetas
+     * @param lambda
+     * @param m
+     *            Number of rows in the data set.
+     * @return Value of the cost function.
+     */
+    public static double of(final PCollection<Collection<Double>> dataSet, final List<Double> thetas, final Double lambda, final long m) {
+        // Each task emits the sum of its own costs, so only the partial sums
+        // are left to be added up.
+        double cost = 0.0;
+        for (final Double partialCost : dataSet.parallelDo(new LinearRegressionCostDoFn(thetas), Writables.doubles()).materialize()) {
+            cost += partialCost;
+        }
 
-            @Override
-            public Integer map(final Double input) {
-                return 1;
-            }
-        }, Writables.ints()).groupByKey().combineValues(Aggregators.SUM_DOUBLES()).values().materialize().iterator().next();
+        return (cost + regularizationTerm(DenseVector.of(thetas).getValues(), lambda)) / (2.0 * m);
+    }
 
+    static double regularizationTerm(final double[] thetas, final Double lambda) {
         double regularizationTerm = 0.0;
 
         if (lambda != null && lambda > 0.0) {
@@ -60,49 +82,256 @@ public class Cost {
             }
             regularizationTerm *= lambda;
         }
-
-        final long m = Aggregate.length(dataSet).getValue();
-        return (cost + regularizationTerm) / (2.0 * m);
+        return regularizationTerm;
     }
 
+    /**
+     * Sums the squared costs of the rows each task sees, emitting the sum
+     * once the task is done.
+     */
     public static class LinearRegressionCostDoFn extends DoFn<Collection<Double>, Double> {
         /**
          * 
          */
         private static final long serialVersionUID = 5868051388626537350L;
         private final List<Double> thetas;
+        private final StageMetrics metrics = new StageMetrics(LinearRegressionCostDoFn.class.getSimpleName());
+        private transient double sum;
+        private transient boolean seen;
 
         public LinearRegressionCostDoFn(final List<Double> thetas) {
             this.thetas = thetas;
         }
 
+        @Override
+        public void initialize() {
+            sum = 0.0;
+            seen = false;
+        }
+
         @Override
         public void process(final Collection<Double> input, final Emitter<Double> emitter) {
+            final long start = metrics.begin();
             // Cost is the value of h(x) minus the expected
             final double cost = mr_computeCost(input, thetas);
             // Squared
-            emitter.emit(cost * cost);
+            sum += cost * cost;
+            seen = true;
+            metrics.end(start);
+        }
+
+        @Override
+        public void cleanup(final Emitter<Double> emitter) {
+            if (seen) {
+                emitter.emit(sum);
+                metrics.emitted();
+            }
+            metrics.publish(getContext());
         }
     }
 
     public static Map<Integer, Double> gradient(final PCollection<Collection<Double>> dataSet, final List<Double> thetas, final Double lambda) {
+        return gradient(dataSet, thetas, lambda, Aggregate.length(dataSet).getValue());
+    }
+
+    /**
+     * Compute the gradient as {@link #gradient(PCollection, List, Double)},
+     * with the number of rows already known.
+     * 
+     * @param dataSet
+     * @param thetas
+     * @param lambda
+     * @param m
+     *            Number of rows in the data set.
+     * @return Gradient, by index of theta.
+     */
+    public static Map<Integer, Double> gradient(final PCollection<Collection<Double>> dataSet, final List<Double> thetas, final Double lambda,
+            final long m) {
 
         final PTable<Integer, Double> gradients = dataSet.parallelDo(new LinearRegressionGradientDoFn(thetas),
                 Writables.tableOf(Writables.ints(), Writables.doubles()));
-        final Map<Integer, Double> map = gradients.groupByKey().combineValues(Aggregators.SUM_DOUBLES()).asMap().getValue();
-        final double m = Aggregate.length(dataSet).getValue();
-        final Map<Integer, Double> out = new HashMap<Integer, Double>(map.size());
-        for (final Map.Entry<Integer, Double> entry : map.entrySet()) {
-            final int index = entry.getKey();
-            double gradient = entry.getValue() / m;
+        // Each task emits its partial sum of each term, so there are only
+        // (tasks x thetas) of them to add up.
+        final double[] sums = new double[thetas.size()];
+        for (final Pair<Integer, Double> partial : gradients.materialize()) {
+            sums[partial.first()] += partial.second();
+        }
+        return toMap(scaleGradient(sums, 0, DenseVector.of(thetas).getValues(), lambda, m));
+    }
+
+    private static double[] scaleGradient(final double[] sums, final int offset, final double[] thetas, final Double lambda, final double m) {
+        final double[] out = new double[thetas.length];
+        for (int index = 0; index < thetas.length; ++index) {
+            double gradient = sums[offset + index] / m;
             if (lambda != null && lambda > 0) {
-                gradient -= (lambda * thetas.get(index)) / m;
+                gradient += (lambda * thetas[index]) / m;
             }
-            out.put(index, gradient);
+            out[index] = gradient;
+        }
+        return out;
+    }
+
+    private static Map<Integer, Double> toMap(final double[] gradient) {
+        final Map<Integer, Double> out = new HashMap<Integer, Double>(gradient.length);
+        for (int index = 0; index < gradient.length; ++index) {
+            out.put(index, gradient[index]);
         }
         return out;
     }
 
+    /**
+     * Compute the cost, the gradient and the number of rows in a single pass
+     * over the data set; computing them separately with
+     * {@link #of(PCollection, List, Double)} and
+     * {@link #gradient(PCollection, List, Double)} takes four passes.
+     * 
+     * @param dataSet
+     *            PCollection of collections of doubles, as for
+     *            {@link #of(PCollection, List, Double)}.
+     * @param thetas
+     *            List of doubles representing the thetas, starting with the
+     *            intercept term theta0.
+     * @param lambda
+     *            Regularization term weighting. May be null, which will be
+     *            treated as zero.
+     * @return Cost and gradient at the thetas.
+     */
+    public static Step step(final PCollection<Collection<Double>> dataSet, final List<Double> thetas, final Double lambda) {
+        final double[] sums = sumCostAndGradient(dataSet, thetas);
+        return step(sums, DenseVector.of(thetas).getValues(), lambda, (long) sums[COUNT_INDEX]);
+    }
+
+    /**
+     * Compute the cost and gradient as
+     * {@link #step(PCollection, List, Double)}, with the number of rows
+     * already known, such as from an earlier step over the same data set.
+     * 
+     * @param dataSet
+     * @param thetas
+     * @param lambda
+     * @param m
+     *            Number of rows in the data set.
+     * @return Cost and gradient at the thetas.
+     */
+    public static Step step(final PCollection<Collection<Double>> dataSet, final List<Double> thetas, final Double lambda, final long m) {
+        return step(sumCostAndGradient(dataSet, thetas), DenseVector.of(thetas).getValues(), lambda, m);
+    }
+
+    /**
+     * Sum the partial vectors of every task. There is one per task, so they
+     * are added up here rather than shuffled to a reducer.
+     */
+    private static double[] sumCostAndGradient(final PCollection<Collection<Double>> dataSet, final List<Double> thetas) {
+        final double[] sums = new double[GRADIENT_INDEX + thetas.size()];
+        for (final Collection<Double> partial : dataSet.parallelDo(new LinearRegressionCostAndGradientDoFn(thetas), INPUT_TYPE).materialize()) {
+            int i = 0;
+            for (final Double value : partial) {
+                sums[i++] += value;
+            }
+        }
+        return sums;
+    }
+
+    static Step step(final double[] sums, final double[] thetas, final Double lambda, final long m) {
+        final double cost = (sums[COST_INDEX] + regularizationTerm(thetas, lambda)) / (2.0 * m);
+        return new Step(cost, scaleGradient(sums, GRADIENT_INDEX, thetas, lambda, m), m);
+    }
+
+    /**
+     * Cost and gradient at one set of thetas, as computed by
+     * {@link Cost#step(PCollection, List, Double)}.
+     */
+    public static class Step {
+        private final double cost;
+        private final double[] gradient;
+        private final long m;
+
+        public Step(final double cost, final double[] gradient, final long m) {
+            this.cost = cost;
+            this.gradient = gradient;
+            this.m = m;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+
+        /**
+         * @return Gradient, by index of theta.
+         */
+        public Map<Integer, Double> getGradient() {
+            return toMap(gradient);
+        }
+
+        public DenseVector getGradientVector() {
+            return new DenseVector(gradient);
+        }
+
+        /**
+         * @return Number of rows in the data set.
+         */
+        public long getM() {
+            return m;
+        }
+    }
+
+    // Layout of the partial sums emitted by the cost and gradient DoFns.
+    static final int COST_INDEX = 0;
+    static final int COUNT_INDEX = 1;
+    static final int GRADIENT_INDEX = 2;
+
+    /**
+     * Sums the squared costs, the row count and the terms of the gradient of
+     * the rows each task sees into a single vector, emitted once the task is
+     * done. The vector holds the cost at {@link Cost#COST_INDEX}, the count
+     * at {@link Cost#COUNT_INDEX} and the gradient, by index of theta, from
+     * {@link Cost#GRADIENT_INDEX}.
+     */
+    public static class LinearRegressionCostAndGradientDoFn extends DoFn<Collection<Double>, Collection<Double>> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = -4383117795424616302L;
+
+        private final List<Double> thetas;
+        private final StageMetrics metrics = new StageMetrics(LinearRegressionCostAndGradientDoFn.class.getSimpleName());
+        private transient double[] sums;
+
+        public LinearRegressionCostAndGradientDoFn(final List<Double> thetas) {
+            this.thetas = thetas;
+        }
+
+        @Override
+        public void initialize() {
+            sums = new double[GRADIENT_INDEX + thetas.size()];
+        }
+
+        @Override
+        public void process(final Collection<Double> input, final Emitter<Collection<Double>> emitter) {
+            final long start = metrics.begin();
+            final double cost = mr_computeCost(input, thetas);
+            sums[COST_INDEX] += cost * cost;
+            sums[COUNT_INDEX] += 1;
+            addGradient(input, cost, sums, GRADIENT_INDEX);
+            metrics.end(start);
+        }
+
+        @Override
+        public void cleanup(final Emitter<Collection<Double>> emitter) {
+            if (sums[COUNT_INDEX] > 0) {
+                emitter.emit(toList(sums));
+                metrics.emitted();
+            }
+            metrics.publish(getContext());
+        }
+    }
+
+    /**
+     * Sums the terms of the gradient of the rows each task sees, emitting the
+     * sum of each term, keyed by the index of its theta, once the task is
+     * done.
+     */
     public static class LinearRegressionGradientDoFn extends DoFn<Collection<Double>, Pair<Integer, Double>> {
 
         /**
@@ -110,27 +339,65 @@ public class Cost {
          */
         private static final long serialVersionUID = 6060577946461174201L;
         private final List<Double> thetas;
+        private final StageMetrics metrics = new StageMetrics(LinearRegressionGradientDoFn.class.getSimpleName());
+        private transient double[] sums;
+        private transient boolean seen;
 
         public LinearRegressionGradientDoFn(final List<Double> thetas) {
             this.thetas = thetas;
         }
 
         @Override
-        public void process(final Collection<Double> input, final Emitter<Pair<Integer, Double>> emitter) {
-            final double cost = mr_computeCost(input, thetas);
-            final Iterator<Double> x = input.iterator();
+        public void initialize() {
+            sums = new double[thetas.size()];
+            seen = false;
+        }
 
-            // Throw out the y value.
-            x.next();
+        @Override
+        public void process(final Collection<Double> input, final Emitter<Pair<Integer, Double>> emitter) {
+            final long start = metrics.begin();
+            addGradient(input, mr_computeCost(input, thetas), sums, 0);
+            seen = true;
+            metrics.end(start);
+        }
 
-            // This represents the 1.0 bias term
-            emitter.emit(Pair.of(0, cost));
-            int i = 1;
-            while (x.hasNext()) {
-                emitter.emit(Pair.of(i, cost * x.next()));
-                ++i;
+        @Override
+        public void cleanup(final Emitter<Pair<Integer, Double>> emitter) {
+            if (seen) {
+                for (int i = 0; i < sums.length; ++i) {
+                    emitter.emit(Pair.of(i, sums[i]));
+                    metrics.emitted();
+                }
             }
+            metrics.publish(getContext());
+        }
+    }
+
+    /**
+     * Add the terms of the gradient of one row to the sums, starting at the
+     * offset.
+     */
+    static void addGradient(final Collection<Double> input, final double cost, final double[] sums, final int offset) {
+        final Iterator<Double> x = input.iterator();
+
+        // Throw out the y value.
+        x.next();
+
+        // This represents the 1.0 bias term
+        sums[offset] += cost;
+        int i = offset + 1;
+        while (x.hasNext()) {
+            sums[i] += cost * x.next();
+            ++i;
+        }
+    }
+
+    private static List<Double> toList(final double[] values) {
+        final List<Double> list = new ArrayList<Double>(values.length);
+        for (final double value : values) {
+            list.add(value);
         }
+        return list;
     }
 
     static double mr_computeCost(final Collection<Double> inputCollection, final List<Double> thetaCollection) {
@@ -153,23 +420,535 @@ public class Cost {
         return cost;
     }
 
-    public static List<Double> gradientDescent(final List<Double> initialThetas, final PCollection<Collection<Double>> inputs, double alpha,
+    public static List<Double> gradientDescent(final List<Double> initialThetas, final PCollection<Collection<Double>> inputs, final double alpha,
             final double lambda) {
-        final List<Double> thetas = new ArrayList<Double>(initialThetas);
+        return new DenseVector(gradientDescent(DenseVector.of(initialThetas).getValues(), new BoxedObjective(inputs, lambda), alpha))
+                .toList();
+    }
+
+    /**
+     * Gradient descent over the data set, as
+     * {@link #gradientDescent(List, PCollection, double, double)}.
+     * 
+     * @param initialThetas
+     *            Thetas to start from, starting with the intercept term.
+     * @param inputs
+     *            Dense or sparse rows, laid out as for {@link #INPUT_TYPE}.
+     * @param alpha
+     *            Learning rate.
+     * @param lambda
+     *            Regularization term weighting.
+     * @return Thetas.
+     */
+    public static <V extends FeatureVector> DenseVector gradientDescent(final DenseVector initialThetas, final PCollection<V> inputs, final double alpha,
+            final double lambda) {
+        return new DenseVector(gradientDescent(initialThetas.getValues(), new VectorObjective<V>(inputs, lambda), alpha));
+    }
+
+    static double[] gradientDescent(final double[] initialThetas, final Objective objective, double alpha) {
+        final double[] thetas = initialThetas.clone();
+        // Each pass computes the cost of the thetas from the last update along
+        // with the gradient at them for the next, so an iteration is a single
+        // pass. The number of rows is taken from the first.
+        Step step = objective.step(thetas);
+        final long m = step.getM();
         double oldCost = Double.MAX_VALUE;
         int iter = 0;
+        final long start = System.currentTimeMillis();
         while (oldCost > 0.01) {
-            final Map<Integer, Double> gradients = Cost.gradient(inputs, thetas, lambda);
-            for (int j = 0; j < thetas.size(); ++j) {
-                thetas.set(j, thetas.get(j) - (alpha * gradients.get(j)));
+            final double[] gradients = step.gradient;
+            for (int j = 0; j < thetas.length; ++j) {
+                thetas[j] -= alpha * gradients[j];
             }
-            final double newCost = Cost.of(inputs, thetas, lambda);
+            step = objective.step(thetas, m);
+            final double newCost = step.getCost();
             if (newCost > oldCost) {
                 alpha *= 0.9;
             }
             oldCost = newCost;
-            System.out.println(++iter + " " + newCost + "  " + gradients + "  " + thetas);
+            ++iter;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(iter + " " + newCost + "  " + Arrays.toString(gradients) + "  " + Arrays.toString(thetas));
+            }
+        }
+        // The cost DoFns count their records and time in StageSummary.
+        if (LOG.isInfoEnabled()) {
+            final long elapsed = System.currentTimeMillis() - start;
+            LOG.info(iter + " steps over " + m + " rows in " + elapsed + " ms, " + (iter == 0 ? 0 : elapsed / iter) + " ms per step");
+        }
+        return thetas;
+    }
+
+    /**
+     * Gradient descent over batches of the data set. Before the first step the
+     * rows are split, in one pass, into seeded batches of about the batch size
+     * (or fewer, larger batches that are sampled down at each step, see
+     * {@link DescentOptions#maximumBatches(int)}), and each step moves the
+     * thetas along the gradient of the next batch at the rate given by the
+     * schedule, so it only reads that batch. The cost over all of the rows is
+     * only computed at the checkpoints, which are full passes, as are the
+     * count and the split. With small batches the steps are noisier but much
+     * cheaper. If the batch fraction is one every step reads the whole data
+     * set.
+     * 
+     * @param initialThetas
+     *            Thetas to start from, starting with the intercept term.
+     * @param inputs
+     *            PCollection of collections of doubles, as for
+     *            {@link #of(PCollection, List, Double)}.
+     * @param alpha
+     *            Base learning rate.
+     * @param lambda
+     *            Regularization term weighting.
+     * @param options
+     *            Batching, schedule and stopping options.
+     * @return Thetas.
+     */
+    public static List<Double> miniBatchGradientDescent(final List<Double> initialThetas, final PCollection<Collection<Double>> inputs,
+            final double alpha, final double lambda, final DescentOptions options) {
+        return new DenseVector(miniBatchGradientDescent(DenseVector.of(initialThetas).getValues(), new BoxedObjective(inputs, lambda), alpha,
+                options)).toList();
+    }
+
+    /**
+     * Gradient descent over batches of the data set, as
+     * {@link #miniBatchGradientDescent(List, PCollection, double, double, DescentOptions)}
+     * .
+     * 
+     * @param initialThetas
+     *            Thetas to start from, starting with the intercept term.
+     * @param inputs
+     *            Dense or sparse rows, laid out as for {@link #INPUT_TYPE}.
+     * @param alpha
+     *            Base learning rate.
+     * @param lambda
+     *            Regularization term weighting.
+     * @param options
+     *            Batching, schedule and stopping options.
+     * @return Thetas.
+     */
+    public static <V extends FeatureVector> DenseVector miniBatchGradientDescent(final DenseVector initialThetas, final PCollection<V> inputs,
+            final double alpha, final double lambda, final DescentOptions options) {
+        return new DenseVector(miniBatchGradientDescent(initialThetas.getValues(), new VectorObjective<V>(inputs, lambda), alpha, options));
+    }
+
+    /**
+     * Minimize the cost with L-BFGS, a quasi-Newton method. Rather than take
+     * fixed steps along the gradient, each iteration allows for the curvature
+     * seen over the last few steps and searches for the length of the step,
+     * so it typically converges in tens of passes where gradient descent
+     * takes thousands, and there's no learning rate to tune. Each pass
+     * computes the cost and gradient together, as
+     * {@link #step(PCollection, List, Double)}.
+     * 
+     * @param initialThetas
+     *            Thetas to start from, starting with the intercept term.
+     * @param inputs
+     *            PCollection of collections of doubles, as for
+     *            {@link #of(PCollection, List, Double)}.
+     * @param lambda
+     *            Regularization term weighting.
+     * @param options
+     *            Convergence options.
+     * @return Thetas.
+     */
+    public static List<Double> lbfgs(final List<Double> initialThetas, final PCollection<Collection<Double>> inputs, final double lambda,
+            final LbfgsOptions options) {
+        return new DenseVector(Lbfgs.minimize(DenseVector.of(initialThetas).getValues(), new BoxedObjective(inputs, lambda), options)).toList();
+    }
+
+    /**
+     * Minimize the cost with L-BFGS, as
+     * {@link #lbfgs(List, PCollection, double, LbfgsOptions)}.
+     * 
+     * @param initialThetas
+     *            Thetas to start from, starting with the intercept term.
+     * @param inputs
+     *            Dense or sparse rows, laid out as for {@link #INPUT_TYPE}.
+     * @param lambda
+     *            Regularization term weighting.
+     * @param options
+     *            Convergence options.
+     * @return Thetas.
+     */
+    public static <V extends FeatureVector> DenseVector lbfgs(final DenseVector initialThetas, final PCollection<V> inputs, final double lambda,
+            final LbfgsOptions options) {
+        return new DenseVector(Lbfgs.minimize(initialThetas.getValues(), new VectorObjective<V>(inputs, lambda), options));
+    }
+
+    static double[] miniBatchGradientDescent(final double[] initialThetas, final Objective objective, double alpha,
+            final DescentOptions options) {
+        final double[] thetas = initialThetas.clone();
+        final long m = objective.length();
+        final double batchFraction = options.getBatchFraction(m);
+        final int count = options.getBatchCount(batchFraction);
+        final List<Objective> batches = count > 1 ? objective.batches(options.getSeed(), count) : Collections.singletonList(objective);
+        // Batches that are larger than the batch size are sampled down.
+        final double sampleFraction = batchFraction * count;
+        double oldCost = Double.MAX_VALUE;
+        for (int step = 0; step < options.getMaximumSteps(); ++step) {
+            // Each step has its own seed, so the samples differ from pass to
+            // pass over the batches but are the same from run to run.
+            final Objective batch = batches.get(step % count);
+            final Step batchStep = (sampleFraction < 1.0 ? batch.sample(options.getSeed() + step, sampleFraction) : batch).step(thetas);
+            if (batchStep.getM() > 0) {
+                final double rate = options.getSchedule().rate(alpha, step);
+                for (int j = 0; j < thetas.length; ++j) {
+                    thetas[j] -= rate * batchStep.gradient[j];
+                }
+            }
+
+            if ((step + 1) % options.getCheckpointInterval() == 0) {
+                final double newCost = objective.cost(thetas, m);
+                if (newCost > oldCost) {
+                    alpha *= 0.9;
+                }
+                oldCost = newCost;
+                if (newCost <= options.getTargetCost()) {
+                    break;
+                }
+            }
         }
         return thetas;
     }
+
+    /**
+     * Compute the squared mean cost of the data set relative to the values of
+     * theta, as {@link #of(PCollection, List, Double)}, without boxing.
+     * 
+     * @param dataSet
+     *            Dense or sparse rows, laid out as for {@link #INPUT_TYPE}.
+     * @param thetas
+     *            Thetas, starting with the intercept term theta0.
+     * @param lambda
+     *            Regularization term weighting. May be null, which will be
+     *            treated as zero.
+     * @return Value of the cost function.
+     */
+    public static <V extends FeatureVector> double of(final PCollection<V> dataSet, final DenseVector thetas, final Double lambda) {
+        return of(dataSet, thetas, lambda, Aggregate.length(dataSet).getValue());
+    }
+
+    /**
+     * Compute the cost as {@link #of(PCollection, DenseVector, Double)}, with
+     * the number of rows already known.
+     * 
+     * @param dataSet
+     * @param thetas
+     * @param lambda
+     * @param m
+     *            Number of rows in the data set.
+     * @return Value of the cost function.
+     */
+    public static <V extends FeatureVector> double of(final PCollection<V> dataSet, final DenseVector thetas, final Double lambda, final long m) {
+        double cost = 0.0;
+        for (final Double partialCost : dataSet.parallelDo(new VectorCostDoFn<V>(thetas), dataSet.getTypeFamily().doubles()).materialize()) {
+            cost += partialCost;
+        }
+        return (cost + regularizationTerm(thetas.getValues(), lambda)) / (2.0 * m);
+    }
+
+    /**
+     * Compute the gradient as {@link #gradient(PCollection, List, Double)},
+     * without boxing. The rows are counted in the same pass.
+     * 
+     * @param dataSet
+     *            Dense or sparse rows, laid out as for {@link #INPUT_TYPE}.
+     * @param thetas
+     *            Thetas, starting with the intercept term theta0.
+     * @param lambda
+     *            Regularization term weighting. May be null, which will be
+     *            treated as zero.
+     * @return Gradient.
+     */
+    public static <V extends FeatureVector> DenseVector gradient(final PCollection<V> dataSet, final DenseVector thetas, final Double lambda) {
+        return step(dataSet, thetas, lambda).getGradientVector();
+    }
+
+    /**
+     * Compute the gradient as {@link #gradient(PCollection, DenseVector, Double)},
+     * with the number of rows already known.
+     * 
+     * @param dataSet
+     * @param thetas
+     * @param lambda
+     * @param m
+     *            Number of rows in the data set.
+     * @return Gradient.
+     */
+    public static <V extends FeatureVector> DenseVector gradient(final PCollection<V> dataSet, final DenseVector thetas, final Double lambda, final long m) {
+        return step(dataSet, thetas, lambda, m).getGradientVector();
+    }
+
+    /**
+     * Compute the cost, the gradient and the number of rows in a single pass,
+     * as {@link #step(PCollection, List, Double)}, without boxing.
+     * 
+     * @param dataSet
+     *            Dense or sparse rows, laid out as for {@link #INPUT_TYPE}.
+     * @param thetas
+     *            Thetas, starting with the intercept term theta0.
+     * @param lambda
+     *            Regularization term weighting. May be null, which will be
+     *            treated as zero.
+     * @return Cost and gradient at the thetas.
+     */
+    public static <V extends FeatureVector> Step step(final PCollection<V> dataSet, final DenseVector thetas, final Double lambda) {
+        final double[] sums = sumCostAndGradient(dataSet, thetas);
+        return step(sums, thetas.getValues(), lambda, (long) sums[COUNT_INDEX]);
+    }
+
+    /**
+     * Compute the cost and gradient as
+     * {@link #step(PCollection, DenseVector, Double)}, with the number of rows
+     * already known.
+     * 
+     * @param dataSet
+     * @param thetas
+     * @param lambda
+     * @param m
+     *            Number of rows in the data set.
+     * @return Cost and gradient at the thetas.
+     */
+    public static <V extends FeatureVector> Step step(final PCollection<V> dataSet, final DenseVector thetas, final Double lambda, final long m) {
+        return step(sumCostAndGradient(dataSet, thetas), thetas.getValues(), lambda, m);
+    }
+
+    private static <V extends FeatureVector> double[] sumCostAndGradient(final PCollection<V> dataSet, final DenseVector thetas) {
+        final double[] sums = new double[GRADIENT_INDEX + thetas.size()];
+        // Partials only hold the terms that some row of the task touched.
+        final PCollection<SparseVector> partials = dataSet.parallelDo(new VectorCostAndGradientDoFn<V>(thetas),
+                SparseVector.ptype(dataSet.getTypeFamily()));
+        for (final SparseVector partial : partials.materialize()) {
+            partial.addTo(sums, 0, 1.0, 0);
+        }
+        return sums;
+    }
+
+    static double mr_computeCost(final FeatureVector input, final double[] thetas) {
+        if (input.size() != thetas.length) {
+            throw new IllegalArgumentException("Input size: " + input.size() + "  Theta size: " + thetas.length);
+        }
+        // Index 0 is y, which lines up with the intercept term theta0.
+        return thetas[0] + input.dot(thetas, 1) - input.get(0);
+    }
+
+    /**
+     * Sums the squared costs of the rows each task sees, as
+     * {@link LinearRegressionCostDoFn}.
+     */
+    public static class VectorCostDoFn<V extends FeatureVector> extends DoFn<V, Double> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = -6418930829563574512L;
+        private final double[] thetas;
+        private final StageMetrics metrics = new StageMetrics(VectorCostDoFn.class.getSimpleName());
+        private transient double sum;
+        private transient boolean seen;
+
+        public VectorCostDoFn(final DenseVector thetas) {
+            this.thetas = thetas.getValues().clone();
+        }
+
+        @Override
+        public void initialize() {
+            sum = 0.0;
+            seen = false;
+        }
+
+        @Override
+        public void process(final V input, final Emitter<Double> emitter) {
+            final long start = metrics.begin();
+            final double cost = mr_computeCost(input, thetas);
+            sum += cost * cost;
+            seen = true;
+            metrics.end(start);
+        }
+
+        @Override
+        public void cleanup(final Emitter<Double> emitter) {
+            if (seen) {
+                emitter.emit(sum);
+                metrics.emitted();
+            }
+            metrics.publish(getContext());
+        }
+    }
+
+    /**
+     * Sums the squared costs, the row count and the terms of the gradient of
+     * the rows each task sees, as {@link LinearRegressionCostAndGradientDoFn}.
+     * Only the terms of features that are non-zero in some row are emitted.
+     */
+    public static class VectorCostAndGradientDoFn<V extends FeatureVector> extends DoFn<V, SparseVector> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 2960286785398017236L;
+        private final double[] thetas;
+        private final StageMetrics metrics = new StageMetrics(VectorCostAndGradientDoFn.class.getSimpleName());
+        private transient double[] sums;
+
+        public VectorCostAndGradientDoFn(final DenseVector thetas) {
+            this.thetas = thetas.getValues().clone();
+        }
+
+        @Override
+        public void initialize() {
+            sums = new double[GRADIENT_INDEX + thetas.length];
+        }
+
+        @Override
+        public void process(final V input, final Emitter<SparseVector> emitter) {
+            final long start = metrics.begin();
+            final double cost = mr_computeCost(input, thetas);
+            sums[COST_INDEX] += cost * cost;
+            sums[COUNT_INDEX] += 1;
+            // This represents the 1.0 bias term
+            sums[GRADIENT_INDEX] += cost;
+            input.addTo(sums, GRADIENT_INDEX, cost, 1);
+            metrics.end(start);
+        }
+
+        @Override
+        public void cleanup(final Emitter<SparseVector> emitter) {
+            if (sums[COUNT_INDEX] > 0) {
+                emitter.emit(SparseVector.of(sums));
+                metrics.emitted();
+            }
+            metrics.publish(getContext());
+        }
+    }
+
+    /**
+     * Cost and gradient of a data set, whichever way its rows are held, for
+     * the descent algorithms.
+     */
+    abstract static class Objective {
+
+        abstract long length();
+
+        /**
+         * Compute the cost and gradient, counting the rows.
+         */
+        abstract Step step(double[] thetas);
+
+        abstract Step step(double[] thetas, long m);
+
+        abstract double cost(double[] thetas, long m);
+
+        abstract Objective sample(long seed, double fraction);
+
+        /**
+         * Split the rows into seeded batches, all written by a single pass.
+         */
+        abstract List<Objective> batches(long seed, int count);
+    }
+
+    /**
+     * Split the rows into seeded batches, all written by a single pass over
+     * the inputs, so that each step only reads its own batch.
+     */
+    static <T> List<PCollection<T>> batches(final PCollection<T> inputs, final long seed, final int count) {
+        final List<PCollection<T>> batches = new ArrayList<PCollection<T>>(count);
+        final Pipeline pipeline = inputs.getPipeline();
+        for (int batch = 0; batch < count; ++batch) {
+            final PCollection<T> filtered = inputs.filter(new BatchFn<T>(seed, batch, count));
+            pipeline.materialize(filtered);
+            batches.add(filtered);
+        }
+        pipeline.run();
+        return batches;
+    }
+
+    private static class BoxedObjective extends Objective {
+        private final PCollection<Collection<Double>> inputs;
+        private final double lambda;
+
+        BoxedObjective(final PCollection<Collection<Double>> inputs, final double lambda) {
+            this.inputs = inputs;
+            this.lambda = lambda;
+        }
+
+        @Override
+        long length() {
+            return Aggregate.length(inputs).getValue();
+        }
+
+        @Override
+        Step step(final double[] thetas) {
+            return Cost.step(inputs, new DenseVector(thetas).toList(), lambda);
+        }
+
+        @Override
+        Step step(final double[] thetas, final long m) {
+            return Cost.step(inputs, new DenseVector(thetas).toList(), lambda, m);
+        }
+
+        @Override
+        double cost(final double[] thetas, final long m) {
+            return Cost.of(inputs, new DenseVector(thetas).toList(), lambda, m);
+        }
+
+        @Override
+        Objective sample(final long seed, final double fraction) {
+            return new BoxedObjective(Sample.sample(inputs, seed, fraction), lambda);
+        }
+
+        @Override
+        List<Objective> batches(final long seed, final int count) {
+            final List<Objective> batches = new ArrayList<Objective>(count);
+            for (final PCollection<Collection<Double>> batch : Cost.batches(inputs, seed, count)) {
+                batches.add(new BoxedObjective(batch, lambda));
+            }
+            return batches;
+        }
+    }
+
+    private static class VectorObjective<V extends FeatureVector> extends Objective {
+        private final PCollection<V> inputs;
+        private final double lambda;
+
+        VectorObjective(final PCollection<V> inputs, final double lambda) {
+            this.inputs = inputs;
+            this.lambda = lambda;
+        }
+
+        @Override
+        long length() {
+            return Aggregate.length(inputs).getValue();
+        }
+
+        @Override
+        Step step(final double[] thetas) {
+            return Cost.step(inputs, new DenseVector(thetas), lambda);
+        }
+
+        @Override
+        Step step(final double[] thetas, final long m) {
+            return Cost.step(inputs, new DenseVector(thetas), lambda, m);
+        }
+
+        @Override
+        double cost(final double[] thetas, final long m) {
+            return Cost.of(inputs, new DenseVector(thetas), lambda, m);
+        }
+
+        @Override
+        Objective sample(final long seed, final double fraction) {
+            return new VectorObjective<V>(Sample.sample(inputs, seed, fraction), lambda);
+        }
+
+        @Override
+        List<Objective> batches(final long seed, final int count) {
+            final List<Objective> batches = new ArrayList<Objective>(count);
+            for (final PCollection<V> batch : Cost.batches(inputs, seed, count)) {
+                batches.add(new VectorObjective<V>(batch, lambda));
+            }
+            return batches;
+        }
+    }
 }
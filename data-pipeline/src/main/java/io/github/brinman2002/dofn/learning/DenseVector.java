@@ -0,0 +1,175 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.learning;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.crunch.MapFn;
+import org.apache.crunch.types.PType;
+import org.apache.crunch.types.avro.AvroType;
+import org.apache.crunch.types.avro.Avros;
+import org.apache.crunch.types.writable.Writables;
+
+/**
+ * Vector of doubles backed by a primitive array, for rows and thetas that
+ * would otherwise be boxed into a {@link Collection} of {@link Double}. Rows
+ * are laid out as for {@link Cost#INPUT_TYPE}: the 'y' or expected value,
+ * followed by the features X.
+ * <p>
+ * Vectors are serialized as the big endian bytes of their values, in a
+ * {@link org.apache.hadoop.io.BytesWritable} or an Avro bytes field. The
+ * backing array is not copied, so a vector should not be changed once it has
+ * been emitted.
+ * 
+ * @author brandon
+ * 
+ */
+public class DenseVector implements FeatureVector, Serializable {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -3170346289412719302L;
+
+    public static final PType<DenseVector> WRITABLE_TYPE = Writables.derived(DenseVector.class, new FromBytesFn(), new ToBytesFn(),
+            Writables.bytes());
+    public static final AvroType<DenseVector> AVRO_TYPE = Avros.derived(DenseVector.class, new FromBytesFn(), new ToBytesFn(), Avros.bytes());
+
+    private final double[] values;
+
+    /**
+     * @param values
+     *            Values of the vector; not copied.
+     */
+    public DenseVector(final double[] values) {
+        this.values = values;
+    }
+
+    public static DenseVector of(final double... values) {
+        return new DenseVector(values);
+    }
+
+    /**
+     * Convert a boxed row or list of thetas.
+     */
+    public static DenseVector of(final Collection<Double> values) {
+        final double[] array = new double[values.size()];
+        int i = 0;
+        for (final Double value : values) {
+            array[i++] = value;
+        }
+        return new DenseVector(array);
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public double get(final int index) {
+        return values[index];
+    }
+
+    @Override
+    public int next(final int from) {
+        return Math.min(from, values.length);
+    }
+
+    /**
+     * @return The backing array.
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    @Override
+    public double dot(final double[] weights, final int from) {
+        double sum = 0.0;
+        for (int i = from; i < values.length; ++i) {
+            sum += values[i] * weights[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void addTo(final double[] sums, final int offset, final double scale, final int from) {
+        for (int i = from; i < values.length; ++i) {
+            sums[offset + i] += scale * values[i];
+        }
+    }
+
+    public List<Double> toList() {
+        final List<Double> list = new ArrayList<Double>(values.length);
+        for (final double value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof DenseVector && Arrays.equals(values, ((DenseVector) obj).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+
+    static class FromBytesFn extends MapFn<ByteBuffer, DenseVector> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 6410434245436941581L;
+
+        @Override
+        public DenseVector map(final ByteBuffer input) {
+            // The buffer may be reused by the reader, so the values are
+            // copied out.
+            final double[] values = new double[input.remaining() / 8];
+            input.duplicate().asDoubleBuffer().get(values);
+            return new DenseVector(values);
+        }
+    }
+
+    static class ToBytesFn extends MapFn<DenseVector, ByteBuffer> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = -1826002484755209003L;
+
+        @Override
+        public ByteBuffer map(final DenseVector input) {
+            final ByteBuffer buffer = ByteBuffer.allocate(input.values.length * 8);
+            buffer.asDoubleBuffer().put(input.values);
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.learning;
+
+/**
+ * Options for
+ * {@link Cost#miniBatchGradientDescent(java.util.List, org.apache.crunch.PCollection, double, double, DescentOptions)}
+ * . The defaults take every row in every step, as
+ * {@link Cost#gradientDescent(java.util.List, org.apache.crunch.PCollection, double, double)}
+ * does; options are immutable, and each of the setters returns a copy.
+ * 
+ * @author brandon
+ * 
+ */
+public class DescentOptions {
+
+    private static final DescentOptions DEFAULTS = new DescentOptions(1.0, 0, 64, 20130917L, LearningRateSchedule.constant(),
+            1, Integer.MAX_VALUE, 0.01);
+
+    private final double batchFraction;
+    private final long batchSize;
+    private final int maximumBatches;
+    private final long seed;
+    private final LearningRateSchedule schedule;
+    private final int checkpointInterval;
+    private final int maximumSteps;
+    private final double targetCost;
+
+    private DescentOptions(final double batchFraction, final long batchSize, final int maximumBatches, final long seed,
+            final LearningRateSchedule schedule, final int checkpointInterval, final int maximumSteps, final double targetCost) {
+        this.batchFraction = batchFraction;
+        this.batchSize = batchSize;
+        this.maximumBatches = maximumBatches;
+        this.seed = seed;
+        this.schedule = schedule;
+        this.checkpointInterval = checkpointInterval;
+        this.maximumSteps = maximumSteps;
+        this.targetCost = targetCost;
+    }
+
+    public static DescentOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param batchFraction
+     *            Fraction of the rows sampled for each step. Replaces any
+     *            batch size.
+     * @return Copy of these options.
+     */
+    public DescentOptions batchFraction(final double batchFraction) {
+        if (!(batchFraction > 0 && batchFraction <= 1)) {
+            throw new IllegalArgumentException("batchFraction must be in (0, 1], was " + batchFraction);
+        }
+        return new DescentOptions(batchFraction, 0, maximumBatches, seed, schedule, checkpointInterval, maximumSteps, targetCost);
+    }
+
+    /**
+     * @param batchSize
+     *            Expected number of rows sampled for each step; a size of one
+     *            is stochastic gradient descent. Steps whose sample happens to
+     *            be empty are skipped. Replaces any batch fraction.
+     * @return Copy of these options.
+     */
+    public DescentOptions batchSize(final long batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive, was " + batchSize);
+        }
+        return new DescentOptions(1.0, batchSize, maximumBatches, seed, schedule, checkpointInterval, maximumSteps, targetCost);
+    }
+
+    /**
+     * @param maximumBatches
+     *            Largest number of batches the rows are split into before the
+     *            descent starts. Each batch is written out, so this bounds the
+     *            number of outputs of the job that splits them; batches
+     *            larger than the batch size are sampled down at each step.
+     * @return Copy of these options.
+     */
+    public DescentOptions maximumBatches(final int maximumBatches) {
+        if (maximumBatches < 1) {
+            throw new IllegalArgumentException("maximumBatches must be positive, was " + maximumBatches);
+        }
+        return new DescentOptions(batchFraction, batchSize, maximumBatches, seed, schedule, checkpointInterval, maximumSteps, targetCost);
+    }
+
+    /**
+     * @param seed
+     *            Seed of the batches and sampling; the same seed over the
+     *            same data takes the same steps.
+     * @return Copy of these options.
+     */
+    public DescentOptions seed(final long seed) {
+        return new DescentOptions(batchFraction, batchSize, maximumBatches, seed, schedule, checkpointInterval, maximumSteps, targetCost);
+    }
+
+    /**
+     * @param schedule
+     *            Learning rate of each step.
+     * @return Copy of these options.
+     */
+    public DescentOptions schedule(final LearningRateSchedule schedule) {
+        if (schedule == null) {
+            throw new IllegalArgumentException("schedule must not be null");
+        }
+        return new DescentOptions(batchFraction, batchSize, maximumBatches, seed, schedule, checkpointInterval, maximumSteps, targetCost);
+    }
+
+    /**
+     * @param checkpointInterval
+     *            Number of steps between checkpoints. At each checkpoint the
+     *            cost is computed over every row, which is a pass over all of
+     *            the data; the descent stops once it reaches the target cost,
+     *            and the base learning rate is lowered if it went up.
+     * @return Copy of these options.
+     */
+    public DescentOptions checkpointInterval(final int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("checkpointInterval must be positive, was " + checkpointInterval);
+        }
+        return new DescentOptions(batchFraction, batchSize, maximumBatches, seed, schedule, checkpointInterval, maximumSteps, targetCost);
+    }
+
+    /**
+     * @param maximumSteps
+     *            Number of steps after which to stop, whatever the cost.
+     * @return Copy of these options.
+     */
+    public DescentOptions maximumSteps(final int maximumSteps) {
+        if (maximumSteps < 1) {
+            throw new IllegalArgumentException("maximumSteps must be positive, was " + maximumSteps);
+        }
+        return new DescentOptions(batchFraction, batchSize, maximumBatches, seed, schedule, checkpointInterval, maximumSteps, targetCost);
+    }
+
+    /**
+     * @param targetCost
+     *            Cost at a checkpoint at or below which to stop.
+     * @return Copy of these options.
+     */
+    public DescentOptions targetCost(final double targetCost) {
+        return new DescentOptions(batchFraction, batchSize, maximumBatches, seed, schedule, checkpointInterval, maximumSteps, targetCost);
+    }
+
+    /**
+     * @param m
+     *            Number of rows in the data set.
+     * @return Fraction of the rows to sample for each step.
+     */
+    public double getBatchFraction(final long m) {
+        if (batchSize > 0) {
+            return Math.min(1.0, (double) batchSize / m);
+        }
+        return batchFraction;
+    }
+
+    /**
+     * @param batchFraction
+     *            Fraction of the rows to sample for each step, as from
+     *            {@link #getBatchFraction(long)}.
+     * @return Number of batches to split the rows into.
+     */
+    public int getBatchCount(final double batchFraction) {
+        return (int) Math.min(maximumBatches, Math.max(1, Math.floor(1.0 / batchFraction)));
+    }
+
+    public int getMaximumBatches() {
+        return maximumBatches;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public LearningRateSchedule getSchedule() {
+        return schedule;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public int getMaximumSteps() {
+        return maximumSteps;
+    }
+
+    public double getTargetCost() {
+        return targetCost;
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+/**
+ * Row of the data set, or vector of thetas, held as primitives. Rows are laid
+ * out as for {@link Cost#INPUT_TYPE}: the 'y' or expected value at index zero,
+ * followed by the features X, so that feature i lines up with theta i.
+ * 
+ * @author brandon
+ * 
+ */
+public interface FeatureVector {
+
+    /**
+     * @return Number of entries, including any that are zero.
+     */
+    int size();
+
+    double get(int index);
+
+    /**
+     * @param from
+     *            Index to start from.
+     * @return The first index, from the given index on, whose entry may be
+     *         non-zero; {@link #size()} if there is none.
+     */
+    int next(int from);
+
+    /**
+     * @param weights
+     *            Weights, indexed as the vector.
+     * @param from
+     *            First index to include.
+     * @return Sum of the products of the entries and weights at the same
+     *         index, from the given index on.
+     */
+    double dot(double[] weights, int from);
+
+    /**
+     * Add each entry, times the scale, to the sum at the same index plus the
+     * offset, from the given index on.
+     */
+    void addTo(double[] sums, int offset, double scale, int from);
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.learning;
+
+/**
+ * Limited memory BFGS over an {@link Cost.Objective}. Each iteration moves
+ * along a direction that allows for the curvature seen over the last few
+ * steps, so badly scaled features don't need a small learning rate, and the
+ * length of the step is found by a backtracking line search rather than
+ * fixed. Every evaluation is a single pass that computes the cost and the
+ * gradient together.
+ * 
+ * @author brandon
+ * 
+ */
+final class Lbfgs {
+
+    // Sufficient decrease required of a step, as a fraction of the decrease
+    // predicted by the gradient.
+    private static final double ARMIJO = 1e-4;
+    private static final int MAXIMUM_LINE_SEARCH_STEPS = 20;
+
+    private Lbfgs() {
+    }
+
+    static double[] minimize(final double[] initialThetas, final Cost.Objective objective, final LbfgsOptions options) {
+        final int n = initialThetas.length;
+        final int history = options.getHistory();
+        final double[][] s = new double[history][];
+        final double[][] y = new double[history][];
+        final double[] rho = new double[history];
+        final double[] a = new double[history];
+        int stored = 0;
+        int newest = -1;
+
+        double[] thetas = initialThetas.clone();
+        Cost.Step step = objective.step(thetas);
+        final long m = step.getM();
+
+        for (int iteration = 0; iteration < options.getMaximumIterations(); ++iteration) {
+            final double[] gradient = step.getGradientVector().getValues();
+            if (norm(gradient) <= options.getGradientTolerance() * Math.max(1.0, norm(thetas))) {
+                break;
+            }
+
+            // Two loop recursion for the direction, -H * gradient.
+            final double[] direction = new double[n];
+            for (int j = 0; j < n; ++j) {
+                direction[j] = -gradient[j];
+            }
+            for (int k = 0, i = newest; k < stored; ++k, i = (i + history - 1) % history) {
+                a[i] = rho[i] * dot(s[i], direction);
+                axpy(-a[i], y[i], direction);
+            }
+            if (stored > 0) {
+                final double scale = dot(s[newest], y[newest]) / dot(y[newest], y[newest]);
+                for (int j = 0; j < n; ++j) {
+                    direction[j] *= scale;
+                }
+            }
+            for (int k = 0, i = (newest - stored + 1 + history) % history; k < stored; ++k, i = (i + 1) % history) {
+                final double b = rho[i] * dot(y[i], direction);
+                axpy(a[i] - b, s[i], direction);
+            }
+
+            double slope = dot(gradient, direction);
+            if (!(slope < 0)) {
+                // Not a descent direction, so the curvature is stale; start
+                // over from the gradient.
+                stored = 0;
+                for (int j = 0; j < n; ++j) {
+                    direction[j] = -gradient[j];
+                }
+                slope = dot(gradient, direction);
+            }
+
+            // Without any curvature yet, a unit step along the gradient may be
+            // far too long, so the first step is scaled down.
+            double t = stored == 0 ? Math.min(1.0, 1.0 / norm(gradient)) : 1.0;
+            double[] next = null;
+            Cost.Step nextStep = null;
+            for (int trial = 0; trial < MAXIMUM_LINE_SEARCH_STEPS; ++trial) {
+                final double[] candidate = thetas.clone();
+                axpy(t, direction, candidate);
+                final Cost.Step candidateStep = objective.step(candidate, m);
+                if (candidateStep.getCost() <= step.getCost() + ARMIJO * t * slope) {
+                    next = candidate;
+                    nextStep = candidateStep;
+                    break;
+                }
+                // Minimum of the quadratic through the cost and slope here and
+                // the cost at the candidate, kept within reason.
+                final double quadratic = -slope * t * t / (2.0 * (candidateStep.getCost() - step.getCost() - slope * t));
+                t = Double.isNaN(quadratic) ? 0.5 * t : Math.max(0.1 * t, Math.min(0.5 * t, quadratic));
+            }
+            if (next == null) {
+                // No step decreased the cost enough; this is as close as the
+                // precision of the cost allows.
+                break;
+            }
+
+            final double[] nextGradient = nextStep.getGradientVector().getValues();
+            final double[] sk = new double[n];
+            final double[] yk = new double[n];
+            for (int j = 0; j < n; ++j) {
+                sk[j] = next[j] - thetas[j];
+                yk[j] = nextGradient[j] - gradient[j];
+            }
+            final double sy = dot(sk, yk);
+            if (sy > 1e-10 * dot(yk, yk)) {
+                newest = (newest + 1) % history;
+                s[newest] = sk;
+                y[newest] = yk;
+                rho[newest] = 1.0 / sy;
+                stored = Math.min(stored + 1, history);
+            }
+
+            final double change = Math.abs(step.getCost() - nextStep.getCost());
+            final double scale = Math.max(1.0, Math.max(Math.abs(step.getCost()), Math.abs(nextStep.getCost())));
+            thetas = next;
+            step = nextStep;
+            if (change <= options.getRelativeTolerance() * scale) {
+                break;
+            }
+        }
+        return thetas;
+    }
+
+    private static double dot(final double[] a, final double[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; ++i) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static double norm(final double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    /**
+     * y += a * x
+     */
+    private static void axpy(final double a, final double[] x, final double[] y) {
+        for (int i = 0; i < x.length; ++i) {
+            y[i] += a * x[i];
+        }
+    }
+}
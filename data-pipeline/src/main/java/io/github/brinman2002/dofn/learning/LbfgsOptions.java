@@ -0,0 +1,115 @@
+/**
+ * Copyright 2013 Brandon Inman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.learning;
+
+/**
+ * Options for
+ * {@link Cost#lbfgs(java.util.List, org.apache.crunch.PCollection, double, LbfgsOptions)}
+ * . Options are immutable, and each of the setters returns a copy.
+ * 
+ * @author brandon
+ * 
+ */
+public class LbfgsOptions {
+
+    private static final LbfgsOptions DEFAULTS = new LbfgsOptions(10, 100, 1e-9, 1e-6);
+
+    private final int history;
+    private final int maximumIterations;
+    private final double relativeTolerance;
+    private final double gradientTolerance;
+
+    private LbfgsOptions(final int history, final int maximumIterations, final double relativeTolerance, final double gradientTolerance) {
+        this.history = history;
+        this.maximumIterations = maximumIterations;
+        this.relativeTolerance = relativeTolerance;
+        this.gradientTolerance = gradientTolerance;
+    }
+
+    public static LbfgsOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param history
+     *            Number of past steps kept to approximate the curvature. More
+     *            history takes more memory on the client but not more passes.
+     * @return Copy of these options.
+     */
+    public LbfgsOptions history(final int history) {
+        if (history < 1) {
+            throw new IllegalArgumentException("history must be positive, was " + history);
+        }
+        return new LbfgsOptions(history, maximumIterations, relativeTolerance, gradientTolerance);
+    }
+
+    /**
+     * @param maximumIterations
+     *            Number of iterations after which to stop, whatever the cost.
+     *            An iteration may take more than one pass over the data if
+     *            the line search has to back off.
+     * @return Copy of these options.
+     */
+    public LbfgsOptions maximumIterations(final int maximumIterations) {
+        if (maximumIterations < 1) {
+            throw new IllegalArgumentException("maximumIterations must be positive, was " + maximumIterations);
+        }
+        return new LbfgsOptions(history, maximumIterations, relativeTolerance, gradientTolerance);
+    }
+
+    /**
+     * @param relativeTolerance
+     *            Stop once an iteration changes the cost by no more than this
+     *            fraction of the cost (or of one, if the cost is smaller).
+     * @return Copy of these options.
+     */
+    public LbfgsOptions relativeTolerance(final double relativeTolerance) {
+        if (!(relativeTolerance >= 0)) {
+            throw new IllegalArgumentException("relativeTolerance must not be negative, was " + relativeTolerance);
+        }
+        return new LbfgsOptions(history, maximumIterations, relativeTolerance, gradientTolerance);
+    }
+
+    /**
+     * @param gradientTolerance
+     *            Stop once the norm of the gradient is no more than this
+     *            times the norm of the thetas (or one, if that is smaller).
+     * @return Copy of these options.
+     */
+    public LbfgsOptions gradientTolerance(final double gradientTolerance) {
+        if (!(gradientTolerance >= 0)) {
+            throw new IllegalArgumentException("gradientTolerance must not be negative, was " + gradientTolerance);
+        }
+        return new LbfgsOptions(history, maximumIterations, relativeTolerance, gradientTolerance);
+    }
+
+    public int getHistory() {
+        return history;
+    }
+
+    public int getMaximumIterations() {
+        return maximumIterations;
+    }
+
+    public double getRelativeTolerance() {
+        return relativeTolerance;
+    }
+
+    public double getGradientTolerance() {
+        return gradientTolerance;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.learning;
+
+/**
+ * Learning rate of each step of a gradient descent, relative to the base rate
+ * alpha. The base rate may itself be lowered as the descent goes, when the
+ * cost at a checkpoint is higher than at the last one.
+ * 
+ * @author brandon
+ * 
+ */
+public abstract class LearningRateSchedule {
+
+    /**
+     * @param alpha
+     *            Base learning rate.
+     * @param step
+     *            Number of steps taken so far, from zero.
+     * @return Learning rate of the step.
+     */
+    public abstract double rate(double alpha, int step);
+
+    /**
+     * @return Schedule that always uses the base rate.
+     */
+    public static LearningRateSchedule constant() {
+        return new LearningRateSchedule() {
+            @Override
+            public double rate(final double alpha, final int step) {
+                return alpha;
+            }
+        };
+    }
+
+    /**
+     * @param decay
+     *            How quickly the rate falls.
+     * @return Schedule of alpha / (1 + decay * step).
+     */
+    public static LearningRateSchedule inverseScaling(final double decay) {
+        checkNotNegative(decay);
+        return new LearningRateSchedule() {
+            @Override
+            public double rate(final double alpha, final int step) {
+                return alpha / (1.0 + decay * step);
+            }
+        };
+    }
+
+    /**
+     * @param decay
+     *            Fraction of the rate kept from one step to the next.
+     * @return Schedule of alpha * decay^step.
+     */
+    public static LearningRateSchedule exponential(final double decay) {
+        checkFraction(decay);
+        return new LearningRateSchedule() {
+            @Override
+            public double rate(final double alpha, final int step) {
+                return alpha * Math.pow(decay, step);
+            }
+        };
+    }
+
+    /**
+     * @param decay
+     *            Fraction of the rate kept at the end of each interval.
+     * @param interval
+     *            Number of steps between drops.
+     * @return Schedule of alpha * decay^(step / interval), in whole
+     *         intervals.
+     */
+    public static LearningRateSchedule stepDecay(final double decay, final int interval) {
+        checkFraction(decay);
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be positive, was " + interval);
+        }
+        return new LearningRateSchedule() {
+            @Override
+            public double rate(final double alpha, final int step) {
+                return alpha * Math.pow(decay, step / interval);
+            }
+        };
+    }
+
+    private static void checkNotNegative(final double decay) {
+        if (!(decay >= 0)) {
+            throw new IllegalArgumentException("decay must not be negative, was " + decay);
+        }
+    }
+
+    private static void checkFraction(final double decay) {
+        if (!(decay > 0 && decay <= 1)) {
+            throw new IllegalArgumentException("decay must be in (0, 1], was " + decay);
+        }
+    }
+}
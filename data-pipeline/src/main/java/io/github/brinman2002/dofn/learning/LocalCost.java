@@ -0,0 +1,309 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.crunch.PCollection;
+
+/**
+ * Cost and gradient descent over a data set held in memory, for data sets
+ * small enough to fit on one machine. The rows are loaded once and each pass
+ * is split across a pool of threads, rather than run as a pipeline, so there
+ * is no per-pass planning or serialization. The API and results are those of
+ * the {@link DenseVector} methods of {@link Cost}, up to the order in which
+ * the partial sums are added.
+ * <p>
+ * The pool is shared by all calls; call {@link #shutdown()} when done. An
+ * instance may be used by several threads, though their passes will share
+ * the pool.
+ * 
+ * @author brandon
+ * 
+ */
+public class LocalCost {
+
+    // Each thread gets a few slices, so that a slow one doesn't hold up the
+    // pass.
+    private static final int SLICES_PER_THREAD = 4;
+
+    private final FeatureVector[] rows;
+    private final ExecutorService executor;
+    private final int slices;
+
+    /**
+     * @param rows
+     *            Dense or sparse rows, laid out as for {@link Cost#INPUT_TYPE}
+     *            . The rows themselves are not copied.
+     * @param threads
+     *            Number of threads to split each pass across.
+     */
+    public LocalCost(final Collection<? extends FeatureVector> rows, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be at least 1: " + threads);
+        }
+        this.rows = rows.toArray(new FeatureVector[rows.size()]);
+        this.executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+        this.slices = threads * SLICES_PER_THREAD;
+    }
+
+    /**
+     * Load the rows of a collection, using a thread for each processor. This
+     * will run the pipeline.
+     */
+    public static <V extends FeatureVector> LocalCost of(final PCollection<V> dataSet) {
+        return of(dataSet, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Load the rows of a collection. This will run the pipeline.
+     */
+    public static <V extends FeatureVector> LocalCost of(final PCollection<V> dataSet, final int threads) {
+        final List<V> rows = new ArrayList<V>();
+        for (final V row : dataSet.materialize()) {
+            rows.add(row);
+        }
+        return new LocalCost(rows, threads);
+    }
+
+    /**
+     * @return Number of rows, or m.
+     */
+    public long length() {
+        return rows.length;
+    }
+
+    /**
+     * Compute the cost as {@link Cost#of(PCollection, DenseVector, Double)}.
+     */
+    public double of(final DenseVector thetas, final Double lambda) {
+        final double[] sums = sum(rows, thetas.getValues(), false);
+        return (sums[Cost.COST_INDEX] + Cost.regularizationTerm(thetas.getValues(), lambda)) / (2.0 * rows.length);
+    }
+
+    /**
+     * Compute the gradient as
+     * {@link Cost#gradient(PCollection, DenseVector, Double)}.
+     */
+    public DenseVector gradient(final DenseVector thetas, final Double lambda) {
+        return step(thetas, lambda).getGradientVector();
+    }
+
+    /**
+     * Compute the cost and gradient in one pass as
+     * {@link Cost#step(PCollection, DenseVector, Double)}.
+     */
+    public Cost.Step step(final DenseVector thetas, final Double lambda) {
+        return new LocalObjective(rows, lambda).step(thetas.getValues());
+    }
+
+    /**
+     * Gradient descent as
+     * {@link Cost#gradientDescent(DenseVector, PCollection, double, double)}.
+     */
+    public DenseVector gradientDescent(final DenseVector initialThetas, final double alpha, final double lambda) {
+        return new DenseVector(Cost.gradientDescent(initialThetas.getValues(), objective(lambda), alpha));
+    }
+
+    /**
+     * Gradient descent over batches of the rows as
+     * {@link Cost#miniBatchGradientDescent(DenseVector, PCollection, double, double, DescentOptions)}
+     * . The rows are split into the same batches as the pipeline splits them,
+     * but batches that are sampled down are not sampled the same way, so the
+     * thetas can differ from those of the pipeline.
+     */
+    public DenseVector miniBatchGradientDescent(final DenseVector initialThetas, final double alpha, final double lambda,
+            final DescentOptions options) {
+        return new DenseVector(Cost.miniBatchGradientDescent(initialThetas.getValues(), objective(lambda), alpha, options));
+    }
+
+    /**
+     * Minimize the cost with L-BFGS as
+     * {@link Cost#lbfgs(DenseVector, PCollection, double, LbfgsOptions)}.
+     */
+    public DenseVector lbfgs(final DenseVector initialThetas, final double lambda, final LbfgsOptions options) {
+        return new DenseVector(Lbfgs.minimize(initialThetas.getValues(), objective(lambda), options));
+    }
+
+    /**
+     * @return Cost and gradient of all of the rows.
+     */
+    Cost.Objective objective(final double lambda) {
+        return new LocalObjective(rows, lambda);
+    }
+
+    /**
+     * Stop the threads. Passes that have already started are finished.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Sum the cost, count and, if asked for, the gradient of the rows, laid
+     * out as the partials of {@link Cost.VectorCostAndGradientDoFn}. Each
+     * slice of the rows is summed on its own thread and the slices are then
+     * added together.
+     */
+    private double[] sum(final FeatureVector[] rows, final double[] thetas, final boolean gradient) {
+        final int length = gradient ? Cost.GRADIENT_INDEX + thetas.length : Cost.GRADIENT_INDEX;
+        final int count = Math.max(1, Math.min(slices, rows.length));
+        final List<Future<double[]>> futures = new ArrayList<Future<double[]>>(count);
+        for (int i = 0; i < count; ++i) {
+            final int from = (int) ((long) rows.length * i / count);
+            final int to = (int) ((long) rows.length * (i + 1) / count);
+            futures.add(executor.submit(new Slice(rows, from, to, thetas, length)));
+        }
+
+        final double[] sums = new double[length];
+        try {
+            for (final Future<double[]> future : futures) {
+                final double[] partial = future.get();
+                for (int i = 0; i < length; ++i) {
+                    sums[i] += partial[i];
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a pass", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return sums;
+    }
+
+    /**
+     * Sums one slice of the rows, as {@link Cost.VectorCostAndGradientDoFn}
+     * sums the rows of one task.
+     */
+    private static class Slice implements Callable<double[]> {
+        private final FeatureVector[] rows;
+        private final int from;
+        private final int to;
+        private final double[] thetas;
+        private final int length;
+
+        Slice(final FeatureVector[] rows, final int from, final int to, final double[] thetas, final int length) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.thetas = thetas;
+            this.length = length;
+        }
+
+        @Override
+        public double[] call() {
+            final double[] sums = new double[length];
+            final boolean gradient = length > Cost.GRADIENT_INDEX;
+            for (int i = from; i < to; ++i) {
+                final FeatureVector row = rows[i];
+                final double cost = Cost.mr_computeCost(row, thetas);
+                sums[Cost.COST_INDEX] += cost * cost;
+                sums[Cost.COUNT_INDEX] += 1;
+                if (gradient) {
+                    // This represents the 1.0 bias term
+                    sums[Cost.GRADIENT_INDEX] += cost;
+                    row.addTo(sums, Cost.GRADIENT_INDEX, cost, 1);
+                }
+            }
+            return sums;
+        }
+    }
+
+    private class LocalObjective extends Cost.Objective {
+        private final FeatureVector[] rows;
+        private final Double lambda;
+
+        LocalObjective(final FeatureVector[] rows, final Double lambda) {
+            this.rows = rows;
+            this.lambda = lambda;
+        }
+
+        @Override
+        long length() {
+            return rows.length;
+        }
+
+        @Override
+        Cost.Step step(final double[] thetas) {
+            return step(thetas, rows.length);
+        }
+
+        @Override
+        Cost.Step step(final double[] thetas, final long m) {
+            return Cost.step(sum(rows, thetas, true), thetas, lambda, m);
+        }
+
+        @Override
+        double cost(final double[] thetas, final long m) {
+            return (sum(rows, thetas, false)[Cost.COST_INDEX] + Cost.regularizationTerm(thetas, lambda)) / (2.0 * m);
+        }
+
+        @Override
+        Cost.Objective sample(final long seed, final double fraction) {
+            final Random random = new Random(seed);
+            final List<FeatureVector> sample = new ArrayList<FeatureVector>((int) (rows.length * fraction) + 1);
+            for (final FeatureVector row : rows) {
+                if (random.nextDouble() < fraction) {
+                    sample.add(row);
+                }
+            }
+            return new LocalObjective(sample.toArray(new FeatureVector[sample.size()]), lambda);
+        }
+
+        @Override
+        List<Cost.Objective> batches(final long seed, final int count) {
+            final List<List<FeatureVector>> batches = new ArrayList<List<FeatureVector>>(count);
+            for (int batch = 0; batch < count; ++batch) {
+                batches.add(new ArrayList<FeatureVector>());
+            }
+            for (final FeatureVector row : rows) {
+                batches.get(BatchFn.batchOf(row.hashCode(), seed, count)).add(row);
+            }
+            final List<Cost.Objective> objectives = new ArrayList<Cost.Objective>(count);
+            for (final List<FeatureVector> batch : batches) {
+                objectives.add(new LocalObjective(batch.toArray(new FeatureVector[batch.size()]), lambda));
+            }
+            return objectives;
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = delegate.newThread(runnable);
+            // An instance that isn't shut down shouldn't keep the JVM alive.
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import io.github.brinman2002.dofn.internal.StageMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.MapFn;
+import org.apache.crunch.PCollection;
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.lib.Aggregate;
+import org.apache.crunch.lib.Sample;
+import org.apache.crunch.types.PTypeFamily;
+
+/**
+ * Logistic regression, for outcomes that are zero or one. The cost is the
+ * mean log loss, -y log(h) - (1 - y) log(1 - h) where h is the
+ * {@link Sigmoid} of theta0 plus the features times their thetas, plus the
+ * same regularization as {@link Cost}. Rows are laid out as for
+ * {@link Cost#INPUT_TYPE}, with the outcome as 'y'.
+ * <p>
+ * The loss is computed from the margin rather than from h, so that it stays
+ * finite when h rounds to zero or one. Passes, partial sums and the descent
+ * algorithms are those of the vector API of {@link Cost}.
+ * 
+ * @author brandon
+ * 
+ */
+public class LogisticCost {
+
+    /**
+     * Compute the cost of the data set relative to the values of theta.
+     * 
+     * @param dataSet
+     *            Dense or sparse rows, with the outcome as 'y'.
+     * @param thetas
+     *            Thetas, starting with the intercept term theta0.
+     * @param lambda
+     *            Regularization term weighting. May be null, which will be
+     *            treated as zero.
+     * @return Value of the cost function.
+     */
+    public static <V extends FeatureVector> double of(final PCollection<V> dataSet, final DenseVector thetas, final Double lambda) {
+        return of(dataSet, thetas, lambda, Aggregate.length(dataSet).getValue());
+    }
+
+    /**
+     * Compute the cost as {@link #of(PCollection, DenseVector, Double)}, with
+     * the number of rows already known.
+     */
+    public static <V extends FeatureVector> double of(final PCollection<V> dataSet, final DenseVector thetas, final Double lambda,
+            final long m) {
+        final double[] sums = sum(dataSet, thetas, false);
+        return (sums[Cost.COST_INDEX] + Cost.regularizationTerm(thetas.getValues(), lambda)) / (2.0 * m);
+    }
+
+    /**
+     * Compute the gradient, counting the rows in the same pass.
+     */
+    public static <V extends FeatureVector> DenseVector gradient(final PCollection<V> dataSet, final DenseVector thetas, final Double lambda) {
+        return step(dataSet, thetas, lambda).getGradientVector();
+    }
+
+    /**
+     * Compute the cost, the gradient and the number of rows in a single pass,
+     * as {@link Cost#step(PCollection, DenseVector, Double)}.
+     */
+    public static <V extends FeatureVector> Cost.Step step(final PCollection<V> dataSet, final DenseVector thetas, final Double lambda) {
+        final double[] sums = sum(dataSet, thetas, true);
+        return Cost.step(sums, thetas.getValues(), lambda, (long) sums[Cost.COUNT_INDEX]);
+    }
+
+    /**
+     * Compute the cost and gradient as
+     * {@link #step(PCollection, DenseVector, Double)}, with the number of
+     * rows already known.
+     */
+    public static <V extends FeatureVector> Cost.Step step(final PCollection<V> dataSet, final DenseVector thetas, final Double lambda,
+            final long m) {
+        return Cost.step(sum(dataSet, thetas, true), thetas.getValues(), lambda, m);
+    }
+
+    /**
+     * Gradient descent, as
+     * {@link Cost#gradientDescent(DenseVector, PCollection, double, double)}.
+     * That stops once the cost is no more than 0.01, which the log loss of
+     * outcomes that overlap never reaches; for those, use
+     * {@link #lbfgs(DenseVector, PCollection, double, LbfgsOptions)} or
+     * bound the steps of
+     * {@link #miniBatchGradientDescent(DenseVector, PCollection, double, double, DescentOptions)}
+     * .
+     */
+    public static <V extends FeatureVector> DenseVector gradientDescent(final DenseVector initialThetas, final PCollection<V> inputs,
+            final double alpha, final double lambda) {
+        return new DenseVector(Cost.gradientDescent(initialThetas.getValues(), new LogisticObjective<V>(inputs, lambda), alpha));
+    }
+
+    /**
+     * Gradient descent over batches of the data set, as
+     * {@link Cost#miniBatchGradientDescent(DenseVector, PCollection, double, double, DescentOptions)}
+     * .
+     */
+    public static <V extends FeatureVector> DenseVector miniBatchGradientDescent(final DenseVector initialThetas, final PCollection<V> inputs,
+            final double alpha, final double lambda, final DescentOptions options) {
+        return new DenseVector(Cost.miniBatchGradientDescent(initialThetas.getValues(), new LogisticObjective<V>(inputs, lambda), alpha,
+                options));
+    }
+
+    /**
+     * Minimize the cost with L-BFGS, as
+     * {@link Cost#lbfgs(DenseVector, PCollection, double, LbfgsOptions)}.
+     */
+    public static <V extends FeatureVector> DenseVector lbfgs(final DenseVector initialThetas, final PCollection<V> inputs, final double lambda,
+            final LbfgsOptions options) {
+        return new DenseVector(Lbfgs.minimize(initialThetas.getValues(), new LogisticObjective<V>(inputs, lambda), options));
+    }
+
+    /**
+     * Score rows with fitted thetas.
+     * 
+     * @param rows
+     *            Dense or sparse rows; 'y' is ignored.
+     * @param thetas
+     *            Fitted thetas.
+     * @return Each row with the probability that its outcome is one.
+     */
+    public static <V extends FeatureVector> PTable<V, Double> score(final PCollection<V> rows, final DenseVector thetas) {
+        return score(rows, thetas, false);
+    }
+
+    /**
+     * Score rows with fitted thetas, as
+     * {@link #score(PCollection, DenseVector)}.
+     * 
+     * @param rows
+     * @param thetas
+     * @param approximate
+     *            Whether to use {@link Sigmoid#approximate(double)}, which is
+     *            faster but only within
+     *            {@link Sigmoid#APPROXIMATION_ERROR}.
+     * @return Each row with the probability that its outcome is one.
+     */
+    public static <V extends FeatureVector> PTable<V, Double> score(final PCollection<V> rows, final DenseVector thetas,
+            final boolean approximate) {
+        final PTypeFamily family = rows.getTypeFamily();
+        return rows.parallelDo(new ScoringDoFn<V>(thetas, approximate), family.tableOf(rows.getPType(), family.doubles()));
+    }
+
+    private static <V extends FeatureVector> double[] sum(final PCollection<V> dataSet, final DenseVector thetas, final boolean gradient) {
+        final double[] sums = new double[gradient ? Cost.GRADIENT_INDEX + thetas.size() : Cost.GRADIENT_INDEX];
+        final PCollection<SparseVector> partials = dataSet.parallelDo(new LogisticCostAndGradientDoFn<V>(thetas, gradient),
+                SparseVector.ptype(dataSet.getTypeFamily()));
+        for (final SparseVector partial : partials.materialize()) {
+            partial.addTo(sums, 0, 1.0, 0);
+        }
+        return sums;
+    }
+
+    /**
+     * @return theta0 plus the features times their thetas.
+     */
+    static double margin(final FeatureVector input, final double[] thetas) {
+        if (input.size() != thetas.length) {
+            throw new IllegalArgumentException("Input size: " + input.size() + "  Theta size: " + thetas.length);
+        }
+        return thetas[0] + input.dot(thetas, 1);
+    }
+
+    /**
+     * @return Log loss of a margin, log(1 + e^z) - y z, without overflow.
+     */
+    static double logLoss(final double z, final double y) {
+        final double softplus = z > 0 ? z + Math.log1p(Math.exp(-z)) : Math.log1p(Math.exp(z));
+        return softplus - y * z;
+    }
+
+    /**
+     * Sums the log losses, the row count and, if asked for, the terms of the
+     * gradient of the rows each task sees, laid out as the partials of
+     * {@link Cost.VectorCostAndGradientDoFn}.
+     */
+    public static class LogisticCostAndGradientDoFn<V extends FeatureVector> extends DoFn<V, SparseVector> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = -2436307436001563581L;
+        private final double[] thetas;
+        private final boolean gradient;
+        private final StageMetrics metrics = new StageMetrics(LogisticCostAndGradientDoFn.class.getSimpleName());
+        private transient double[] sums;
+
+        public LogisticCostAndGradientDoFn(final DenseVector thetas, final boolean gradient) {
+            this.thetas = thetas.getValues().clone();
+            this.gradient = gradient;
+        }
+
+        @Override
+        public void initialize() {
+            sums = new double[gradient ? Cost.GRADIENT_INDEX + thetas.length : Cost.GRADIENT_INDEX];
+        }
+
+        @Override
+        public void process(final V input, final Emitter<SparseVector> emitter) {
+            final long start = metrics.begin();
+            final double z = margin(input, thetas);
+            final double y = input.get(0);
+            // Cost.step halves the sum, as the squared error cost carries a
+            // half, so the loss is doubled here.
+            sums[Cost.COST_INDEX] += 2.0 * logLoss(z, y);
+            sums[Cost.COUNT_INDEX] += 1;
+            if (gradient) {
+                final double error = Sigmoid.calculate(z) - y;
+                // This represents the 1.0 bias term
+                sums[Cost.GRADIENT_INDEX] += error;
+                input.addTo(sums, Cost.GRADIENT_INDEX, error, 1);
+            }
+            metrics.end(start);
+        }
+
+        @Override
+        public void cleanup(final Emitter<SparseVector> emitter) {
+            if (sums[Cost.COUNT_INDEX] > 0) {
+                emitter.emit(SparseVector.of(sums));
+                metrics.emitted();
+            }
+            metrics.publish(getContext());
+        }
+    }
+
+    /**
+     * Pairs each row with the probability that its outcome is one.
+     */
+    public static class ScoringDoFn<V extends FeatureVector> extends MapFn<V, Pair<V, Double>> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 7170826016339426118L;
+        private final double[] thetas;
+        private final boolean approximate;
+
+        public ScoringDoFn(final DenseVector thetas) {
+            this(thetas, false);
+        }
+
+        public ScoringDoFn(final DenseVector thetas, final boolean approximate) {
+            this.thetas = thetas.getValues().clone();
+            this.approximate = approximate;
+        }
+
+        @Override
+        public Pair<V, Double> map(final V input) {
+            final double z = margin(input, thetas);
+            return Pair.of(input, approximate ? Sigmoid.approximate(z) : Sigmoid.calculate(z));
+        }
+    }
+
+    private static class LogisticObjective<V extends FeatureVector> extends Cost.Objective {
+        private final PCollection<V> inputs;
+        private final double lambda;
+
+        LogisticObjective(final PCollection<V> inputs, final double lambda) {
+            this.inputs = inputs;
+            this.lambda = lambda;
+        }
+
+        @Override
+        long length() {
+            return Aggregate.length(inputs).getValue();
+        }
+
+        @Override
+        Cost.Step step(final double[] thetas) {
+            return LogisticCost.step(inputs, new DenseVector(thetas), lambda);
+        }
+
+        @Override
+        Cost.Step step(final double[] thetas, final long m) {
+            return LogisticCost.step(inputs, new DenseVector(thetas), lambda, m);
+        }
+
+        @Override
+        double cost(final double[] thetas, final long m) {
+            return LogisticCost.of(inputs, new DenseVector(thetas), lambda, m);
+        }
+
+        @Override
+        Cost.Objective sample(final long seed, final double fraction) {
+            return new LogisticObjective<V>(Sample.sample(inputs, seed, fraction), lambda);
+        }
+
+        @Override
+        List<Cost.Objective> batches(final long seed, final int count) {
+            final List<Cost.Objective> batches = new ArrayList<Cost.Objective>(count);
+            for (final PCollection<V> batch : Cost.batches(inputs, seed, count)) {
+                batches.add(new LogisticObjective<V>(batch, lambda));
+            }
+            return batches;
+        }
+    }
+}
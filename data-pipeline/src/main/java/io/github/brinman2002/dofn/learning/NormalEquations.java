@@ -0,0 +1,205 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import org.apache.crunch.DoFn;
+import org.apache.crunch.Emitter;
+import org.apache.crunch.PCollection;
+
+/**
+ * Closed form linear regression. The thetas that minimize the cost of
+ * {@link Cost} solve the normal equations (X'X + lambda I) theta = X'y,
+ * where X has the 1.0 bias term as its first column. X'X is only as large as
+ * the square of the number of features, so it and X'y are accumulated in a
+ * single pass and solved on the client by Cholesky decomposition. For data
+ * sets with few features and many rows this replaces every pass of gradient
+ * descent with one.
+ * 
+ * @author brandon
+ * 
+ */
+public class NormalEquations {
+
+    // Layout of the partial sums emitted by NormalEquationsDoFn: the row
+    // count, then the upper triangle of X'X by row, then X'y.
+    static final int COUNT_INDEX = 0;
+    static final int MATRIX_INDEX = 1;
+
+    /**
+     * Solve for the thetas in one pass over the data set. Calling this method
+     * will run the pipeline.
+     * 
+     * @param dataSet
+     *            Dense or sparse rows, laid out as for {@link Cost#INPUT_TYPE}
+     *            .
+     * @param lambda
+     *            Regularization term weighting, as for
+     *            {@link Cost#of(PCollection, DenseVector, Double)}.
+     * @return Thetas, starting with the intercept term theta0.
+     * @throws IllegalArgumentException
+     *             If the data set is empty, or X'X + lambda I is singular, as
+     *             it is when a feature is a combination of others and lambda
+     *             is zero.
+     */
+    public static <V extends FeatureVector> DenseVector solve(final PCollection<V> dataSet, final double lambda) {
+        double[] sums = null;
+        int width = 0;
+        for (final SparseVector partial : dataSet.parallelDo(new NormalEquationsDoFn<V>(), SparseVector.ptype(dataSet.getTypeFamily()))
+                .materialize()) {
+            if (sums == null) {
+                while (length(width) < partial.size()) {
+                    ++width;
+                }
+                sums = new double[length(width)];
+            }
+            if (partial.size() != sums.length) {
+                throw new IllegalArgumentException("Rows differ in size");
+            }
+            partial.addTo(sums, 0, 1.0, 0);
+        }
+        if (sums == null) {
+            throw new IllegalArgumentException("No rows");
+        }
+        return new DenseVector(solve(sums, width, lambda));
+    }
+
+    /**
+     * Solve the normal equations from summed partials.
+     */
+    static double[] solve(final double[] sums, final int width, final double lambda) {
+        final double[][] a = new double[width][width];
+        for (int i = 0; i < width; ++i) {
+            for (int k = i; k < width; ++k) {
+                a[i][k] = sums[index(width, i, k)];
+                a[k][i] = a[i][k];
+            }
+            a[i][i] += lambda;
+        }
+        final double[] b = new double[width];
+        System.arraycopy(sums, MATRIX_INDEX + width * (width + 1) / 2, b, 0, width);
+        return cholesky(a, b);
+    }
+
+    /**
+     * Solve a x = b, where a is symmetric and positive definite. a is
+     * overwritten with its lower triangular factor L, where a = L L'.
+     */
+    static double[] cholesky(final double[][] a, final double[] b) {
+        final int n = b.length;
+        for (int j = 0; j < n; ++j) {
+            double diagonal = a[j][j];
+            for (int k = 0; k < j; ++k) {
+                diagonal -= a[j][k] * a[j][k];
+            }
+            // Allow for rounding relative to the scale of the original entry.
+            if (!(diagonal > 1e-12 * Math.abs(a[j][j]))) {
+                throw new IllegalArgumentException("Matrix is not positive definite at column " + j + "; try a positive lambda");
+            }
+            a[j][j] = Math.sqrt(diagonal);
+            for (int i = j + 1; i < n; ++i) {
+                double sum = a[i][j];
+                for (int k = 0; k < j; ++k) {
+                    sum -= a[i][k] * a[j][k];
+                }
+                a[i][j] = sum / a[j][j];
+            }
+        }
+
+        // L z = b, then L' x = z.
+        final double[] x = b.clone();
+        for (int i = 0; i < n; ++i) {
+            for (int k = 0; k < i; ++k) {
+                x[i] -= a[i][k] * x[k];
+            }
+            x[i] /= a[i][i];
+        }
+        for (int i = n - 1; i >= 0; --i) {
+            for (int k = i + 1; k < n; ++k) {
+                x[i] -= a[k][i] * x[k];
+            }
+            x[i] /= a[i][i];
+        }
+        return x;
+    }
+
+    /**
+     * @return Number of partial sums for rows of the given width.
+     */
+    static int length(final int width) {
+        return MATRIX_INDEX + width * (width + 1) / 2 + width;
+    }
+
+    /**
+     * @return Index of entry (i, k) of X'X, where i <= k.
+     */
+    static int index(final int width, final int i, final int k) {
+        return MATRIX_INDEX + i * width - i * (i - 1) / 2 + (k - i);
+    }
+
+    /**
+     * Sums X'X, X'y and the row count of the rows each task sees, emitting
+     * them once the task is done. Only the entries that some row touched are
+     * emitted. The work for each row is proportional to the square of its
+     * non-zero features.
+     */
+    public static class NormalEquationsDoFn<V extends FeatureVector> extends DoFn<V, SparseVector> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1809284734468215137L;
+        private transient double[] sums;
+        private transient int width;
+
+        @Override
+        public void initialize() {
+            sums = null;
+        }
+
+        @Override
+        public void process(final V input, final Emitter<SparseVector> emitter) {
+            if (sums == null) {
+                width = input.size();
+                sums = new double[length(width)];
+            } else if (input.size() != width) {
+                throw new IllegalArgumentException("Input size: " + input.size() + "  Expected size: " + width);
+            }
+            final double y = input.get(0);
+            sums[COUNT_INDEX] += 1;
+
+            // Index 0 of the row is y, which lines up with the 1.0 bias term.
+            // Each of its products with the features is the feature itself.
+            sums[index(width, 0, 0)] += 1.0;
+            input.addTo(sums, index(width, 0, 0), 1.0, 1);
+            for (int i = input.next(1); i < width; i = input.next(i + 1)) {
+                input.addTo(sums, index(width, i, i) - i, input.get(i), i);
+            }
+
+            final int xty = MATRIX_INDEX + width * (width + 1) / 2;
+            sums[xty] += y;
+            input.addTo(sums, xty, y, 1);
+        }
+
+        @Override
+        public void cleanup(final Emitter<SparseVector> emitter) {
+            if (sums != null) {
+                emitter.emit(SparseVector.of(sums));
+            }
+        }
+    }
+}
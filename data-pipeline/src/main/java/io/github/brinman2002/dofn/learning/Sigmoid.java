@@ -2,8 +2,68 @@ package io.github.brinman2002.dofn.learning;
 
 public class Sigmoid {
 
+    /**
+     * Largest absolute difference between {@link #approximate(double)} and
+     * {@link #calculate(double)}, over all inputs.
+     */
+    public static final double APPROXIMATION_ERROR = 3e-6;
+
+    // The table covers [0, TABLE_LIMIT) in steps of 1 / STEPS_PER_UNIT; the
+    // error of linear interpolation is at most step^2 / 8 times the largest
+    // second derivative of the sigmoid, about 0.096. Beyond the table, the
+    // sigmoid is within 1.2e-7 of one.
+    private static final int TABLE_LIMIT = 16;
+    private static final int STEPS_PER_UNIT = 64;
+    private static final double[] TABLE = new double[TABLE_LIMIT * STEPS_PER_UNIT + 1];
+
+    static {
+        for (int i = 0; i < TABLE.length; ++i) {
+            TABLE[i] = calculate((double) i / STEPS_PER_UNIT);
+        }
+    }
+
     public static double calculate(final double input) {
         return 1.0 / (1.0 + Math.exp(-input));
     }
 
+    /**
+     * Replace each of the values with its sigmoid.
+     */
+    public static void calculate(final double[] values) {
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = 1.0 / (1.0 + Math.exp(-values[i]));
+        }
+    }
+
+    /**
+     * Sigmoid by interpolating a table, which is several times faster than
+     * {@link #calculate(double)} and within {@link #APPROXIMATION_ERROR} of
+     * it. The error is absolute, so very small results may be zero.
+     */
+    public static double approximate(final double input) {
+        final double x = Math.abs(input);
+        final double y;
+        if (x < TABLE_LIMIT) {
+            final double position = x * STEPS_PER_UNIT;
+            final int i = (int) position;
+            y = TABLE[i] + (position - i) * (TABLE[i + 1] - TABLE[i]);
+        } else if (x >= TABLE_LIMIT) {
+            y = 1.0;
+        } else {
+            // NaN
+            return input;
+        }
+        // The sigmoid is symmetric about (0, 0.5).
+        return input < 0 ? 1.0 - y : y;
+    }
+
+    /**
+     * Replace each of the values with its approximate sigmoid, as
+     * {@link #approximate(double)}.
+     */
+    public static void approximate(final double[] values) {
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = approximate(values[i]);
+        }
+    }
 }
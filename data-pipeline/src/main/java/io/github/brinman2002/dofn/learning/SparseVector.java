@@ -0,0 +1,247 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.crunch.MapFn;
+import org.apache.crunch.types.PType;
+import org.apache.crunch.types.PTypeFamily;
+import org.apache.crunch.types.avro.AvroType;
+import org.apache.crunch.types.avro.AvroTypeFamily;
+import org.apache.crunch.types.avro.Avros;
+import org.apache.crunch.types.writable.Writables;
+
+/**
+ * Vector of doubles that holds only its non-zero entries, as parallel arrays
+ * of indices and values. Products with thetas and gradient terms only touch
+ * the entries that are held, so the cost of a row is proportional to its
+ * non-zeros rather than to the number of features.
+ * <p>
+ * Vectors are serialized as the big endian bytes of the size, the number of
+ * entries, the indices and then the values, in a
+ * {@link org.apache.hadoop.io.BytesWritable} or an Avro bytes field. The
+ * arrays are not copied, so a vector should not be changed once it has been
+ * emitted.
+ * 
+ * @author brandon
+ * 
+ */
+public class SparseVector implements FeatureVector, Serializable {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 4630985402270845316L;
+
+    public static final PType<SparseVector> WRITABLE_TYPE = Writables.derived(SparseVector.class, new FromBytesFn(), new ToBytesFn(),
+            Writables.bytes());
+    public static final AvroType<SparseVector> AVRO_TYPE = Avros.derived(SparseVector.class, new FromBytesFn(), new ToBytesFn(), Avros.bytes());
+
+    private final int size;
+    private final int[] indices;
+    private final double[] values;
+
+    /**
+     * @param size
+     *            Number of entries, including those that are zero.
+     * @param indices
+     *            Indices of the entries that are held, in increasing order;
+     *            not copied.
+     * @param values
+     *            Values of the entries that are held; not copied.
+     */
+    public SparseVector(final int size, final int[] indices, final double[] values) {
+        if (indices.length != values.length) {
+            throw new IllegalArgumentException("Indices: " + indices.length + "  Values: " + values.length);
+        }
+        for (int i = 0; i < indices.length; ++i) {
+            if (indices[i] < 0 || indices[i] >= size || (i > 0 && indices[i] <= indices[i - 1])) {
+                throw new IllegalArgumentException("Index " + indices[i] + " out of order or outside size " + size);
+            }
+        }
+        this.size = size;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /**
+     * Hold the non-zero entries of a dense array.
+     */
+    public static SparseVector of(final double... dense) {
+        int count = 0;
+        for (final double value : dense) {
+            if (value != 0.0) {
+                ++count;
+            }
+        }
+        final int[] indices = new int[count];
+        final double[] values = new double[count];
+        int j = 0;
+        for (int i = 0; i < dense.length; ++i) {
+            if (dense[i] != 0.0) {
+                indices[j] = i;
+                values[j] = dense[i];
+                ++j;
+            }
+        }
+        return new SparseVector(dense.length, indices, values);
+    }
+
+    /**
+     * @return Type of the given family.
+     */
+    public static PType<SparseVector> ptype(final PTypeFamily family) {
+        return family == AvroTypeFamily.getInstance() ? AVRO_TYPE : WRITABLE_TYPE;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Number of entries held.
+     */
+    public int getNonZeros() {
+        return indices.length;
+    }
+
+    @Override
+    public double get(final int index) {
+        final int i = Arrays.binarySearch(indices, index);
+        return i < 0 ? 0.0 : values[i];
+    }
+
+    @Override
+    public int next(final int from) {
+        final int i = Arrays.binarySearch(indices, from);
+        final int at = i < 0 ? -i - 1 : i;
+        return at < indices.length ? indices[at] : size;
+    }
+
+    /**
+     * @return The backing array of indices.
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    /**
+     * @return The backing array of values.
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    @Override
+    public double dot(final double[] weights, final int from) {
+        double sum = 0.0;
+        for (int i = start(from); i < indices.length; ++i) {
+            sum += values[i] * weights[indices[i]];
+        }
+        return sum;
+    }
+
+    @Override
+    public void addTo(final double[] sums, final int offset, final double scale, final int from) {
+        for (int i = start(from); i < indices.length; ++i) {
+            sums[offset + indices[i]] += scale * values[i];
+        }
+    }
+
+    private int start(final int from) {
+        // Rows skip at most their first entry, so this doesn't need a search.
+        int i = 0;
+        while (i < indices.length && indices[i] < from) {
+            ++i;
+        }
+        return i;
+    }
+
+    public DenseVector toDense() {
+        final double[] dense = new double[size];
+        for (int i = 0; i < indices.length; ++i) {
+            dense[indices[i]] = values[i];
+        }
+        return new DenseVector(dense);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof SparseVector)) {
+            return false;
+        }
+        final SparseVector other = (SparseVector) obj;
+        return size == other.size && Arrays.equals(indices, other.indices) && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * size + Arrays.hashCode(indices)) + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return size + ":" + Arrays.toString(indices) + "=" + Arrays.toString(values);
+    }
+
+    static class FromBytesFn extends MapFn<ByteBuffer, SparseVector> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = -7719282765436210331L;
+
+        @Override
+        public SparseVector map(final ByteBuffer input) {
+            // The buffer may be reused by the reader, so the entries are
+            // copied out.
+            final ByteBuffer buffer = input.duplicate();
+            final int size = buffer.getInt();
+            final int[] indices = new int[buffer.getInt()];
+            final double[] values = new double[indices.length];
+            buffer.asIntBuffer().get(indices);
+            buffer.position(buffer.position() + indices.length * 4);
+            buffer.asDoubleBuffer().get(values);
+            return new SparseVector(size, indices, values);
+        }
+    }
+
+    static class ToBytesFn extends MapFn<SparseVector, ByteBuffer> {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1398571407306452860L;
+
+        @Override
+        public ByteBuffer map(final SparseVector input) {
+            final ByteBuffer buffer = ByteBuffer.allocate(8 + input.indices.length * 12);
+            buffer.putInt(input.size);
+            buffer.putInt(input.indices.length);
+            buffer.asIntBuffer().put(input.indices);
+            buffer.position(buffer.position() + input.indices.length * 4);
+            buffer.asDoubleBuffer().put(input.values);
+            buffer.rewind();
+            return buffer;
+        }
+    }
+}
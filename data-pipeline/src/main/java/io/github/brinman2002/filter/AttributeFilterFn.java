@@ -2,14 +2,42 @@ package io.github.brinman2002.filter;
 
 import io.github.brinman2002.data.model.Attribute;
 import io.github.brinman2002.data.model.Outcome;
+import io.github.brinman2002.dofn.internal.ModelCounter;
+import io.github.brinman2002.dofn.internal.StageMetrics;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.crunch.CrunchRuntimeException;
 import org.apache.crunch.FilterFn;
 import org.apache.crunch.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 
 /**
  * FilterFn for a set of attributes.
+ * <p>
+ * The attributes are carried to the tasks either Avro encoded in the
+ * function itself or, for large sets, in a side file of Avro records that
+ * each task reads, so that the set doesn't inflate the job. Either way, the
+ * set is built into a compact hashed set when the function is initialized,
+ * optionally with a Bloom filter in front of it; see
+ * {@link #withBloomFilter(double)}.
  * 
  * @author brandon
  * 
@@ -25,14 +53,153 @@ public class AttributeFilterFn extends FilterFn<Pair<Attribute, Pair<Outcome, Do
         return new AttributeFilterFn(attributes);
     }
 
-    private final Collection<Attribute> attributes;
+    /**
+     * Filter by the attributes of a side file, as written by
+     * {@link #writeSideFile(Collection, String, Configuration)} or by writing
+     * a PCollection of attributes to an Avro file target. The file is read by
+     * each task as it is initialized, through the task's file system.
+     * 
+     * @param path
+     *            Avro data file of attributes, or a directory of them; files
+     *            starting with '_' or '.' are skipped.
+     * @return Filter.
+     */
+    public static AttributeFilterFn fromSideFile(final String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("path must not be null");
+        }
+        return new AttributeFilterFn(null, path, 0);
+    }
+
+    /**
+     * Write attributes to a side file for {@link #fromSideFile(String)}.
+     * 
+     * @param attributes
+     * @param path
+     *            File to write.
+     * @param conf
+     *            Configuration of the file system.
+     * @throws IOException
+     */
+    public static void writeSideFile(final Collection<Attribute> attributes, final String path, final Configuration conf) throws IOException {
+        final Path file = new Path(path);
+        final OutputStream out = file.getFileSystem(conf).create(file);
+        final DataFileWriter<Attribute> writer = new DataFileWriter<Attribute>(new SpecificDatumWriter<Attribute>(Attribute.class)).create(
+                Attribute.SCHEMA$, out);
+        try {
+            for (final Attribute attribute : attributes) {
+                writer.append(attribute);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private final byte[] encodedAttributes;
+    private final String sideFile;
+    private final double falsePositiveRate;
+    private final StageMetrics metrics = new StageMetrics(AttributeFilterFn.class.getSimpleName());
+    private transient AttributeSet attributes;
 
     public AttributeFilterFn(final Collection<Attribute> attributes) {
-        this.attributes = attributes;
+        this(encode(attributes), null, 0);
+    }
+
+    private AttributeFilterFn(final byte[] encodedAttributes, final String sideFile, final double falsePositiveRate) {
+        this.encodedAttributes = encodedAttributes;
+        this.sideFile = sideFile;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * @param falsePositiveRate
+     *            False positive rate of a Bloom filter to check before the
+     *            set, between 0 and 1 exclusive; a rate of 0.01 costs about
+     *            ten bits per attribute. This pays off when the set is too
+     *            large to stay in cache and most attributes are filtered out.
+     *            False positives are still checked against the set, so the
+     *            filter stays exact.
+     * @return Copy of this filter.
+     */
+    public AttributeFilterFn withBloomFilter(final double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be in (0, 1), was " + falsePositiveRate);
+        }
+        return new AttributeFilterFn(encodedAttributes, sideFile, falsePositiveRate);
+    }
+
+    @Override
+    public void initialize() {
+        final List<Attribute> list = new ArrayList<Attribute>();
+        try {
+            if (sideFile == null) {
+                final SpecificDatumReader<Attribute> reader = new SpecificDatumReader<Attribute>(Attribute.class);
+                final BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(encodedAttributes, null);
+                while (!decoder.isEnd()) {
+                    list.add(reader.read(null, decoder));
+                }
+            } else {
+                read(new Path(sideFile), getConfiguration(), list);
+            }
+        } catch (final IOException e) {
+            throw new CrunchRuntimeException(e);
+        }
+        attributes = new AttributeSet(list, falsePositiveRate);
     }
 
     @Override
     public boolean accept(final Pair<Attribute, Pair<Outcome, Double>> input) {
-        return attributes.contains(input.first());
+        final long start = metrics.begin();
+        final boolean accepted = attributes.contains(input.first());
+        if (accepted) {
+            metrics.emitted();
+        }
+        metrics.end(start);
+        return accepted;
+    }
+
+    @Override
+    public void cleanup() {
+        increment(ModelCounter.ATTRIBUTES_FILTERED_OUT, metrics.getInputRecords() - metrics.getOutputRecords());
+        metrics.publish(getContext());
+    }
+
+    private static byte[] encode(final Collection<Attribute> attributes) {
+        // Avro records aren't Serializable, and the encoding is far smaller
+        // than serialized objects would be anyway.
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final SpecificDatumWriter<Attribute> writer = new SpecificDatumWriter<Attribute>(Attribute.class);
+        final BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(bytes, null);
+        try {
+            for (final Attribute attribute : attributes) {
+                writer.write(attribute, encoder);
+            }
+            encoder.flush();
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Attributes could not be encoded", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void read(final Path path, final Configuration conf, final List<Attribute> list) throws IOException {
+        final FileSystem fs = path.getFileSystem(conf);
+        if (fs.getFileStatus(path).isDir()) {
+            for (final FileStatus status : fs.listStatus(path)) {
+                final String name = status.getPath().getName();
+                if (!status.isDir() && !name.startsWith("_") && !name.startsWith(".")) {
+                    read(status.getPath(), conf, list);
+                }
+            }
+            return;
+        }
+        final InputStream in = fs.open(path);
+        final DataFileStream<Attribute> stream = new DataFileStream<Attribute>(in, new SpecificDatumReader<Attribute>(Attribute.class));
+        try {
+            for (final Attribute attribute : stream) {
+                list.add(attribute);
+            }
+        } finally {
+            stream.close();
+        }
     }
 }
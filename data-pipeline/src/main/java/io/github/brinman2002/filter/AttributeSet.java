@@ -0,0 +1,195 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.filter;
+
+import io.github.brinman2002.data.model.Attribute;
+
+import java.util.Collection;
+
+import org.apache.avro.util.Utf8;
+
+/**
+ * Compact hashed set of attributes for {@link AttributeFilterFn}. Attributes
+ * are found by a 64 bit fingerprint of their namespace and value, kept in an
+ * open addressed table of primitive longs; the attribute itself is only
+ * compared when the fingerprints match, so a miss costs a hash of the value
+ * and a probe or two rather than the generic Avro hashCode and equals.
+ * <p>
+ * Optionally, a Bloom filter over the fingerprints sits in front of the
+ * table. It is much smaller than the table, so for sets too large to stay in
+ * the processor's cache most misses are turned away without touching the
+ * table.
+ * 
+ * @author brandon
+ * 
+ */
+final class AttributeSet {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int MAXIMUM_BLOOM_WORDS = 1 << 24;
+    /**
+     * Most attributes the table can hold at most half full, in an array no
+     * longer than 2^30.
+     */
+    static final int MAXIMUM_SIZE = 1 << 29;
+
+    private final long[] fingerprints;
+    private final Attribute[] attributes;
+    private final int mask;
+    private final int size;
+
+    private final long[] bloom;
+    private final int bloomMask;
+    private final int bloomHashes;
+
+    /**
+     * @param attributes
+     *            Attributes of the set; duplicates are dropped.
+     * @param falsePositiveRate
+     *            False positive rate of the Bloom filter, or zero for none.
+     * @throws IllegalArgumentException
+     *             If there are more than {@link #MAXIMUM_SIZE} attributes.
+     */
+    AttributeSet(final Collection<Attribute> attributes, final double falsePositiveRate) {
+        if (attributes.size() > MAXIMUM_SIZE) {
+            throw new IllegalArgumentException("At most " + MAXIMUM_SIZE + " attributes can be held, was " + attributes.size());
+        }
+        // At most half full, so probes stay short.
+        final int capacity = Integer.highestOneBit(Math.max(2, attributes.size() * 2 - 1)) << 1;
+        fingerprints = new long[capacity];
+        this.attributes = new Attribute[capacity];
+        mask = capacity - 1;
+
+        if (falsePositiveRate > 0) {
+            final int n = Math.max(1, attributes.size());
+            final double bits = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+            // Rounded up to a power of two, in whole longs, up to 2^30 bits.
+            int words = 1;
+            while (words * 64.0 < bits && words < MAXIMUM_BLOOM_WORDS) {
+                words <<= 1;
+            }
+            bloom = new long[words];
+            bloomMask = bloom.length * 64 - 1;
+            bloomHashes = Math.max(1, (int) Math.round((double) bloom.length * 64 / n * Math.log(2)));
+        } else {
+            bloom = null;
+            bloomMask = 0;
+            bloomHashes = 0;
+        }
+
+        int added = 0;
+        for (final Attribute attribute : attributes) {
+            if (add(attribute)) {
+                ++added;
+            }
+        }
+        size = added;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean hasBloomFilter() {
+        return bloom != null;
+    }
+
+    boolean contains(final Attribute attribute) {
+        final long fingerprint = fingerprint(attribute);
+        if (bloom != null && !mightContain(fingerprint)) {
+            return false;
+        }
+        for (int i = (int) fingerprint & mask; fingerprints[i] != 0; i = (i + 1) & mask) {
+            if (fingerprints[i] == fingerprint && attributes[i].equals(attribute)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean add(final Attribute attribute) {
+        final long fingerprint = fingerprint(attribute);
+        int i = (int) fingerprint & mask;
+        for (; fingerprints[i] != 0; i = (i + 1) & mask) {
+            if (fingerprints[i] == fingerprint && attributes[i].equals(attribute)) {
+                return false;
+            }
+        }
+        fingerprints[i] = fingerprint;
+        attributes[i] = attribute;
+        if (bloom != null) {
+            // Double hashing, from the two halves of the fingerprint.
+            final int h1 = (int) fingerprint;
+            final int h2 = (int) (fingerprint >>> 32) | 1;
+            for (int k = 0; k < bloomHashes; ++k) {
+                final int bit = (h1 + k * h2) & bloomMask;
+                bloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return true;
+    }
+
+    private boolean mightContain(final long fingerprint) {
+        final int h1 = (int) fingerprint;
+        final int h2 = (int) (fingerprint >>> 32) | 1;
+        for (int k = 0; k < bloomHashes; ++k) {
+            final int bit = (h1 + k * h2) & bloomMask;
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Fingerprint of the namespace and value, never zero, as zero
+     *         marks an empty slot.
+     */
+    static long fingerprint(final Attribute attribute) {
+        long hash = FNV_OFFSET;
+        hash ^= attribute.getNamespace() == null ? -1 : attribute.getNamespace().ordinal();
+        hash *= FNV_PRIME;
+        final CharSequence value = attribute.getValue();
+        if (value != null) {
+            // Values decoded by Avro are Utf8, whose charAt decodes the whole
+            // value, so the UTF-8 bytes are hashed instead; a String is
+            // encoded the same way so that both hash alike.
+            final byte[] bytes;
+            final int length;
+            if (value instanceof Utf8) {
+                bytes = ((Utf8) value).getBytes();
+                length = ((Utf8) value).getByteLength();
+            } else {
+                bytes = Utf8.getBytesFor(value.toString());
+                length = bytes.length;
+            }
+            for (int i = 0; i < length; ++i) {
+                hash ^= bytes[i] & 0xff;
+                hash *= FNV_PRIME;
+            }
+        }
+        // FNV mixes the low bits poorly, and they pick the slot, so finish
+        // with the MurmurHash3 mix.
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.pipeline;
+
+import io.github.brinman2002.dofn.internal.DenseIdDoFn;
+import io.github.brinman2002.dofn.internal.PartitionOffsetDoFn;
+import io.github.brinman2002.dofn.internal.SwapDoFn;
+
+import org.apache.crunch.MapFn;
+import org.apache.crunch.PCollection;
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.fn.Aggregators;
+import org.apache.crunch.lib.Distinct;
+import org.apache.crunch.lib.PTables;
+import org.apache.crunch.lib.join.DefaultJoinStrategy;
+import org.apache.crunch.lib.join.JoinStrategy;
+import org.apache.crunch.lib.join.JoinType;
+import org.apache.crunch.lib.join.MapsideJoinStrategy;
+import org.apache.crunch.types.PType;
+import org.apache.crunch.types.avro.Avros;
+
+/**
+ * Dense integer ids for a set of values, so that later stages can shuffle the
+ * ids in place of the values. By default values are encoded and decoded with reduce
+ * side joins, which shuffle the dictionary alongside the table being encoded;
+ * a small dictionary can instead be {@link #broadcast() broadcast} and joined
+ * map side, which requires the whole dictionary to fit in the memory of each
+ * task that uses it.
+ * 
+ * @author brandon
+ * 
+ * @param <T>
+ *            Type of the values. Must be an Avro type.
+ */
+public class Dictionary<T> {
+
+    /**
+     * Number of partitions the values are numbered in by
+     * {@link #of(PCollection)}.
+     */
+    public static final int DEFAULT_PARTITIONS = 32;
+
+    private final PType<T> type;
+    private final PTable<T, Integer> ids;
+    private final boolean broadcast;
+
+    private Dictionary(final PType<T> type, final PTable<T, Integer> ids, final boolean broadcast) {
+        this.type = type;
+        this.ids = ids;
+        this.broadcast = broadcast;
+    }
+
+    /**
+     * Build a dictionary of the distinct values of the collection, numbered in
+     * {@link #DEFAULT_PARTITIONS} partitions.
+     * 
+     * @param values
+     *            Values, which may repeat.
+     * @return Dictionary.
+     */
+    public static <T> Dictionary<T> of(final PCollection<T> values) {
+        return of(values, DEFAULT_PARTITIONS);
+    }
+
+    /**
+     * Build a dictionary of the distinct values of the collection, with ids
+     * from zero up to one less than the number of values. The values are made
+     * distinct first, then split by hash into partitions that are numbered in
+     * parallel, each by its own reducer, starting from the number of values
+     * in the partitions before it. The partition sizes are counted in a small
+     * pass of their own and joined map side, so no reducer sees more than its
+     * own partition.
+     * 
+     * @param values
+     *            Values, which may repeat.
+     * @param partitions
+     *            Number of partitions to number the values in.
+     * @return Dictionary.
+     */
+    public static <T> Dictionary<T> of(final PCollection<T> values, final int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be positive, was " + partitions);
+        }
+        final PType<T> type = values.getPType();
+        final PTable<Integer, T> partitioned = Distinct.distinct(values).by(new MapFn<T, Integer>() {
+            private static final long serialVersionUID = 2619570426186232587L;
+
+            @Override
+            public Integer map(final T input) {
+                return (input.hashCode() & Integer.MAX_VALUE) % partitions;
+            }
+        }, Avros.ints());
+        final PTable<Integer, Long> offsets = PTables.keys(partitioned).count()
+                .parallelDo(new PartitionOffsetDoFn(partitions), Avros.tableOf(Avros.ints(), Avros.longs())).groupByKey(1)
+                .combineValues(Aggregators.SUM_LONGS());
+        final PTable<T, Integer> ids = new MapsideJoinStrategy<Integer, T, Long>().join(partitioned, offsets, JoinType.INNER_JOIN)
+                .groupByKey(partitions).parallelDo(new DenseIdDoFn<T>(), Avros.tableOf(type, Avros.ints()));
+        return new Dictionary<T>(type, ids, false);
+    }
+
+    /**
+     * @return Copy of this dictionary that is joined map side, by shipping it
+     *         to every task through the distributed cache, rather than by
+     *         shuffling it. Only suitable for dictionaries small enough to be
+     *         held in memory, such as the outcomes of a classifier.
+     */
+    public Dictionary<T> broadcast() {
+        return new Dictionary<T>(type, ids, true);
+    }
+
+    public boolean isBroadcast() {
+        return broadcast;
+    }
+
+    /**
+     * @return Id of each value.
+     */
+    public PTable<T, Integer> getIds() {
+        return ids;
+    }
+
+    /**
+     * Replace the values of the table with their ids.
+     * 
+     * @param table
+     *            Table whose values are all in the dictionary.
+     * @return Encoded table.
+     */
+    public <K> PTable<K, Integer> encodeValues(final PTable<K, T> table) {
+        final PTable<T, K> byValue = table.parallelDo(new SwapDoFn<K, T>(), Avros.tableOf(type, table.getKeyType()));
+        return PTables.asPTable(PTables.values(this.<T, K, Integer> joinStrategy().join(byValue, ids, JoinType.INNER_JOIN)));
+    }
+
+    /**
+     * Replace the keys of the table, which are ids, with their values.
+     * 
+     * @param table
+     *            Table keyed by ids from this dictionary.
+     * @return Decoded table.
+     */
+    public <V> PTable<T, V> decodeKeys(final PTable<Integer, V> table) {
+        final PTable<Integer, T> values = ids.parallelDo(new SwapDoFn<T, Integer>(), Avros.tableOf(Avros.ints(), type));
+        final PTable<V, T> byValue = PTables.asPTable(PTables.values(this.<Integer, V, T> joinStrategy().join(table, values,
+                JoinType.INNER_JOIN)));
+        return byValue.parallelDo(new SwapDoFn<V, T>(), Avros.tableOf(type, table.getValueType()));
+    }
+
+    private <K, U, V> JoinStrategy<K, U, V> joinStrategy() {
+        if (broadcast) {
+            return new MapsideJoinStrategy<K, U, V>();
+        }
+        return new DefaultJoinStrategy<K, U, V>();
+    }
+}
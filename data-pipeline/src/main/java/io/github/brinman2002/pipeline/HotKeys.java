@@ -0,0 +1,111 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.pipeline;
+
+import io.github.brinman2002.dofn.internal.ReplicateHotKeyDoFn;
+import io.github.brinman2002.dofn.internal.SplitHotKeyDoFn;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.crunch.PCollection;
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.lib.PTables;
+import org.apache.crunch.lib.Sample;
+import org.apache.crunch.types.avro.AvroType;
+import org.apache.crunch.types.avro.Avros;
+
+/**
+ * Keys that hold so many of the records that the reducer they are sent to
+ * runs long after the rest, such as the few busiest days once
+ * {@link io.github.brinman2002.dofn.BlockingDoFn} has blocked the keys. Hot
+ * keys are split over several shards by salting the key with a shard number:
+ * the larger side is spread over the shards and the smaller side copied to
+ * every shard, so joining or cogrouping the salted tables gives the same
+ * results as the originals, spread over more reducers.
+ * 
+ * @author brandon
+ * 
+ */
+final class HotKeys {
+
+    // Fixed so that the same data always finds the same hot keys.
+    private static final Long SEED = 20130917L;
+
+    private static final AvroType<Pair<Long, Integer>> SALTED_KEY_TYPE = Avros.pairs(Avros.longs(), Avros.ints());
+
+    private final HashSet<Long> keys;
+    private final int shards;
+
+    private HotKeys(final HashSet<Long> keys, final int shards) {
+        this.keys = keys;
+        this.shards = shards;
+    }
+
+    /**
+     * Find the hot keys of a table from a sample of its records. A key is hot
+     * if it holds at least {@link TrainingOptions#getHotKeyFraction()} of the
+     * sample. Calling this method will run the pipeline.
+     * 
+     * @param table
+     *            Larger side of the join.
+     * @param options
+     *            Training options.
+     * @return Hot keys.
+     */
+    static HotKeys sample(final PTable<Long, ?> table, final TrainingOptions options) {
+        PCollection<Long> keys = PTables.keys(table);
+        if (options.getHotKeySampleRate() < 1) {
+            keys = Sample.sample(keys, SEED, options.getHotKeySampleRate());
+        }
+        final Iterable<Pair<Long, Long>> sampledCounts = keys.count().materialize();
+        long total = 0;
+        final List<Pair<Long, Long>> counts = new LinkedList<Pair<Long, Long>>();
+        for (final Pair<Long, Long> count : sampledCounts) {
+            total += count.second();
+            counts.add(count);
+        }
+        final HashSet<Long> hotKeys = new HashSet<Long>();
+        for (final Pair<Long, Long> count : counts) {
+            if (count.second() >= options.getHotKeyFraction() * total) {
+                hotKeys.add(count.first());
+            }
+        }
+        return new HotKeys(hotKeys, options.getHotKeyShards());
+    }
+
+    /**
+     * Salt the keys of the larger side, spreading each hot key over the
+     * shards. Equal values of a key always land on the same shard.
+     */
+    <V> PTable<Pair<Long, Integer>, V> split(final PTable<Long, V> table) {
+        return table.parallelDo(new SplitHotKeyDoFn<V>(keys, shards), Avros.tableOf(SALTED_KEY_TYPE, table.getValueType()));
+    }
+
+    /**
+     * Salt the keys of the smaller side, copying each hot key to every shard.
+     */
+    <V> PTable<Pair<Long, Integer>, V> replicate(final PTable<Long, V> table) {
+        return table.parallelDo(new ReplicateHotKeyDoFn<V>(keys, shards), Avros.tableOf(SALTED_KEY_TYPE, table.getValueType()));
+    }
+
+    HashSet<Long> getKeys() {
+        return keys;
+    }
+}
@@ -15,27 +15,41 @@
  */
 package io.github.brinman2002.pipeline;
 
+import io.github.brinman2002.classifier.PredictionWriter;
+import io.github.brinman2002.classifier.TopK;
 import io.github.brinman2002.data.model.Attribute;
 import io.github.brinman2002.data.model.Outcome;
+import io.github.brinman2002.dofn.internal.AttributeLogProbabilityDoFn;
 import io.github.brinman2002.dofn.internal.AttributeOutcomeProbabilityCalculatingDoFn;
+import io.github.brinman2002.dofn.internal.ObservationScoringDoFn;
 import io.github.brinman2002.dofn.internal.ProbabilityCalculatingDoFn;
+import io.github.brinman2002.dofn.internal.RegroupAttributeOutcomeProbabilityDoFn;
+import io.github.brinman2002.dofn.internal.RegroupObservationDoFn;
 import io.github.brinman2002.dofn.internal.RegroupOutcomeAttributeCountDoFn;
+import io.github.brinman2002.dofn.internal.SwapDoFn;
+import io.github.brinman2002.dofn.internal.TopOutcomesDoFn;
 import io.github.brinman2002.filter.AttributeFilterFn;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 import org.apache.crunch.PTable;
 import org.apache.crunch.Pair;
 import org.apache.crunch.lib.Distinct;
 import org.apache.crunch.lib.Join;
 import org.apache.crunch.lib.PTables;
+import org.apache.crunch.lib.join.DefaultJoinStrategy;
+import org.apache.crunch.lib.join.JoinStrategy;
+import org.apache.crunch.lib.join.JoinType;
+import org.apache.crunch.lib.join.MapsideJoinStrategy;
+import org.apache.crunch.types.PType;
+import org.apache.crunch.types.avro.AvroType;
 import org.apache.crunch.types.avro.Avros;
 
 /**
@@ -66,7 +80,9 @@ public class NaiveBayesianClassifier {
      * <p>
      * 
      * Calling this method will, at least partially, invoke the pipeline to
-     * begin processing.
+     * begin processing. Once the pipeline has been run, pass its result to
+     * {@link StageSummary#of(org.apache.crunch.PipelineResult)} to see the
+     * records through, and time spent in, each stage.
      * 
      * @param attributes
      *            PTable of attributes.
@@ -76,31 +92,58 @@ public class NaiveBayesianClassifier {
      */
     public static Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> train(final PTable<Long, Attribute> attributes,
             final PTable<Long, Outcome> outcomes) {
+        return train(attributes, outcomes, TrainingOptions.defaults());
+    }
+
+    /**
+     * Build training data as {@link #train(PTable, PTable)}, pruning the
+     * attribute/outcome pairs as described by the options. If hot keys are
+     * being split, the attributes are sampled up front to find them.
+     * 
+     * @param attributes
+     *            PTable of attributes.
+     * @param outcomes
+     *            PTable of outcomes.
+     * @param options
+     *            Training options.
+     * @return Training data.
+     */
+    public static Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> train(final PTable<Long, Attribute> attributes,
+            final PTable<Long, Outcome> outcomes, final TrainingOptions options) {
 
         final PTable<Outcome, Long> outcomeCounts = PTables.values(outcomes).count();
 
         // Join the outcomes and attributes on their key. Attributes are forced
         // to be distinct so that multiple occurrences of the same attribute
-        // does not adversely weight the attribute.
-        final PTable<Outcome, Attribute> attributesAssociatedToOutcome = PTables.asPTable(PTables.values(Join.innerJoin(outcomes,
-                Distinct.distinct(attributes))));
+        // does not adversely weight the attribute. Hot keys, if they are being
+        // split, have their attributes spread over several reducers.
+        final PTable<Long, Attribute> distinctAttributes = Distinct.distinct(attributes);
+        final PTable<Outcome, Attribute> attributesAssociatedToOutcome;
+        if (options.isSplittingHotKeys()) {
+            final HotKeys hotKeys = HotKeys.sample(attributes, options);
+            attributesAssociatedToOutcome = PTables.asPTable(PTables.values(Join.innerJoin(hotKeys.replicate(outcomes),
+                    hotKeys.split(distinctAttributes))));
+        } else {
+            attributesAssociatedToOutcome = PTables.asPTable(PTables.values(Join.innerJoin(outcomes, distinctAttributes)));
+        }
 
         // Count the number of Outcome/Attribute combinations and regroup by
         // the outcome. We are counting the number of times an attribute is
         // associated with an outcome so that we can calculate the probability
-        // (by dividing this by the total count of the outcome).
+        // (by dividing this by the total count of the outcome). Pairs below the
+        // minimum count are dropped by the reduce that counts them.
         final PTable<Pair<Outcome, Attribute>, Long> countedEventAttributes = attributesAssociatedToOutcome.count();
         final PTable<Outcome, Pair<Attribute, Long>> attributeCountsByEvent = countedEventAttributes.parallelDo(
-                new RegroupOutcomeAttributeCountDoFn(),
+                new RegroupOutcomeAttributeCountDoFn<Outcome, Attribute>(options.getMinimumCount()),
                 Avros.tableOf(Avros.containers(Outcome.class), Avros.pairs(Avros.containers(Attribute.class), Avros.longs())));
 
         // This join is used to group together the count of outcomes with the
         // count of attributes.
-        final PTable<Outcome, Pair<Pair<Attribute, Long>, Long>> joinedAttributeAndEventCounts = Join
-                .innerJoin(attributeCountsByEvent, outcomeCounts);
+        final PTable<Outcome, Pair<Pair<Attribute, Long>, Long>> joinedAttributeAndEventCounts = joinOutcomeCounts(attributeCountsByEvent,
+                outcomeCounts, options);
 
         final PTable<Attribute, Pair<Outcome, Double>> outcomeAttributeProbabilities = joinedAttributeAndEventCounts.parallelDo(
-                new AttributeOutcomeProbabilityCalculatingDoFn(),
+                new AttributeOutcomeProbabilityCalculatingDoFn<Outcome, Attribute>(),
                 Avros.tableOf(Avros.containers(Attribute.class), Avros.pairs(Avros.containers(Outcome.class), Avros.doubles())));
 
         // This will trigger the pipeline so far, at least the parts related to
@@ -111,11 +154,154 @@ public class NaiveBayesianClassifier {
         final PTable<Outcome, Double> outcomeProbabilities = countedOutcomes.parallelDo(new ProbabilityCalculatingDoFn<Outcome>(totalOutcomeCount),
                 Avros.tableOf(Avros.containers(Outcome.class), Avros.doubles()));
 
-        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> output = Pair.of(outcomeAttributeProbabilities,
-                outcomeProbabilities);
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> output = Pair.of(
+                limitOutcomes(outcomeAttributeProbabilities, options), outcomeProbabilities);
         return output;
     }
 
+    /**
+     * Build the same training data as {@link #train(PTable, PTable)} with
+     * fewer passes over the data. Outcomes and attributes are cogrouped on
+     * their key in a single grouping pass, which also makes the attributes of
+     * each key distinct; the outcome/attribute pairs are then counted in one
+     * reduce. The overall outcome probabilities are calculated from the
+     * outcome counts in a final (small) reduce, so nothing forces the pipeline
+     * to run before the results are read.
+     * <p>
+     * {@link #train(PTable, PTable)} runs seven grouping operations over two
+     * pipeline runs (count of outcomes, distinct, join, count, join, length
+     * and another count of outcomes). This runs four in a single pipeline run
+     * (cogroup, count, count of outcomes and the outcome probability reduce),
+     * and only two of them handle attributes; the outcome counts are joined
+     * map side, in the reduce that counts the pairs, unless
+     * {@link TrainingOptions#broadcastOutcomes(boolean)} is turned off.
+     * 
+     * @param attributes
+     *            PTable of attributes.
+     * @param outcomes
+     *            PTable of outcomes.
+     * @return Training data.
+     */
+    public static Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trainFused(final PTable<Long, Attribute> attributes,
+            final PTable<Long, Outcome> outcomes) {
+        return trainFused(attributes, outcomes, TrainingOptions.defaults());
+    }
+
+    /**
+     * Build training data as {@link #trainFused(PTable, PTable)}, pruning the
+     * attribute/outcome pairs as described by the options. As training is a
+     * single pipeline run, its result can be passed to
+     * {@link PruningSummary#of(org.apache.crunch.PipelineResult)} to see how
+     * much was pruned.
+     * <p>
+     * This is the same as counting with
+     * {@link TrainingSnapshot#count(PTable, PTable, TrainingOptions)} and
+     * training from the snapshot; use the snapshot directly to keep the
+     * counts for later incremental training. Splitting hot keys samples the
+     * attributes first, so training is then two pipeline runs.
+     * 
+     * @param attributes
+     *            PTable of attributes.
+     * @param outcomes
+     *            PTable of outcomes.
+     * @param options
+     *            Training options.
+     * @return Training data.
+     */
+    public static Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trainFused(final PTable<Long, Attribute> attributes,
+            final PTable<Long, Outcome> outcomes, final TrainingOptions options) {
+        return TrainingSnapshot.count(attributes, outcomes, options).train(options);
+    }
+
+    /**
+     * Build the same training data as
+     * {@link #trainFused(PTable, PTable, TrainingOptions)}, with the outcomes
+     * replaced by integer ids for the counting and join stages, and the
+     * attributes too if {@link TrainingOptions#encodeAttributes(boolean)} is
+     * turned on. The dictionaries are built from the distinct values in
+     * passes of their own, then shipped to every task and joined map side, so
+     * the values are never shuffled to be encoded or decoded; only ids are
+     * shuffled from the cogroup on. Encoding the attributes this way needs
+     * every task to hold all of them in memory. Without it the attributes
+     * are shuffled as records, as in
+     * {@link #trainFused(PTable, PTable, TrainingOptions)}, and only the
+     * outcome half of each pair is made smaller.
+     * 
+     * @param attributes
+     *            PTable of attributes.
+     * @param outcomes
+     *            PTable of outcomes.
+     * @param options
+     *            Training options.
+     * @return Training data.
+     */
+    public static Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trainEncoded(
+            final PTable<Long, Attribute> attributes, final PTable<Long, Outcome> outcomes, final TrainingOptions options) {
+        final Dictionary<Outcome> outcomeDictionary = Dictionary.of(PTables.values(outcomes)).broadcast();
+        final PTable<Long, Integer> encodedOutcomes = outcomeDictionary.encodeValues(outcomes);
+        final PTable<Integer, Long> outcomeCounts = PTables.values(encodedOutcomes).count();
+
+        final PTable<Attribute, Pair<Outcome, Double>> outcomeAttributeProbabilities;
+        if (options.isEncodeAttributes()) {
+            final Dictionary<Attribute> attributeDictionary = Dictionary.of(PTables.values(attributes)).broadcast();
+            outcomeAttributeProbabilities = attributeDictionary.decodeKeys(encodedProbabilities(attributeDictionary.encodeValues(attributes),
+                    Avros.ints(), outcomeDictionary, encodedOutcomes, outcomeCounts, options));
+        } else {
+            outcomeAttributeProbabilities = encodedProbabilities(attributes, Avros.containers(Attribute.class), outcomeDictionary,
+                    encodedOutcomes, outcomeCounts, options);
+        }
+
+        final PTable<Outcome, Double> outcomeProbabilities = outcomeDictionary.decodeKeys(TrainingSnapshot.outcomeProbabilities(outcomeCounts,
+                Avros.ints()));
+
+        return Pair.of(limitOutcomes(outcomeAttributeProbabilities, options), outcomeProbabilities);
+    }
+
+    /**
+     * Count the pairs of encoded outcomes and attributes, either of which may
+     * be ids, and calculate their probabilities. Outcomes are decoded as soon
+     * as they have been joined, while the data is still keyed by them.
+     */
+    private static <A> PTable<A, Pair<Outcome, Double>> encodedProbabilities(final PTable<Long, A> attributes, final PType<A> attributeType,
+            final Dictionary<Outcome> outcomeDictionary, final PTable<Long, Integer> encodedOutcomes, final PTable<Integer, Long> outcomeCounts,
+            final TrainingOptions options) {
+        final PType<Integer> idType = Avros.ints();
+        final PTable<Integer, Pair<A, Long>> attributeCountsByEvent = TrainingSnapshot.countPairs(attributes, encodedOutcomes, idType,
+                attributeType, options).parallelDo(new RegroupOutcomeAttributeCountDoFn<Integer, A>(options.getMinimumCount()),
+                Avros.tableOf(idType, Avros.pairs(attributeType, Avros.longs())));
+        return outcomeDictionary.decodeKeys(joinOutcomeCounts(attributeCountsByEvent, outcomeCounts, options)).parallelDo(
+                new AttributeOutcomeProbabilityCalculatingDoFn<Outcome, A>(),
+                Avros.tableOf(attributeType, Avros.pairs(Avros.containers(Outcome.class), Avros.doubles())));
+    }
+
+    /**
+     * Join the outcome/attribute counts with the counts of their outcomes. The
+     * outcome counts are small enough to be held in memory, so by default
+     * they are joined map side and the outcome/attribute counts, the largest
+     * table in training, are never shuffled for the join.
+     */
+    static <O, A> PTable<O, Pair<Pair<A, Long>, Long>> joinOutcomeCounts(final PTable<O, Pair<A, Long>> attributeCountsByEvent,
+            final PTable<O, Long> outcomeCounts, final TrainingOptions options) {
+        final JoinStrategy<O, Pair<A, Long>, Long> strategy;
+        if (options.isBroadcastOutcomes()) {
+            strategy = new MapsideJoinStrategy<O, Pair<A, Long>, Long>();
+        } else {
+            strategy = new DefaultJoinStrategy<O, Pair<A, Long>, Long>();
+        }
+        return strategy.join(attributeCountsByEvent, outcomeCounts, JoinType.INNER_JOIN);
+    }
+
+    static PTable<Attribute, Pair<Outcome, Double>> limitOutcomes(
+            final PTable<Attribute, Pair<Outcome, Double>> outcomeAttributeProbabilities, final TrainingOptions options) {
+        if (!options.isOutcomeLimited()) {
+            return outcomeAttributeProbabilities;
+        }
+        final AvroType<Outcome> outcomeType = Avros.containers(Outcome.class);
+        return outcomeAttributeProbabilities.groupByKey().parallelDo(
+                new TopOutcomesDoFn(outcomeType, options.getMaximumOutcomesPerAttribute()),
+                Avros.tableOf(Avros.containers(Attribute.class), Avros.pairs(outcomeType, Avros.doubles())));
+    }
+
     /**
      * Convenience method for {@link #predict(PTable, PTable)}.
      * 
@@ -135,7 +321,9 @@ public class NaiveBayesianClassifier {
      * the prediction in-memory.
      * <p>
      * This implementation, at least currently, does not account for the zero
-     * probability quirk documented in {@link #train(PTable, PTable)}.
+     * probability quirk documented in {@link #train(PTable, PTable)}. The
+     * number of attribute probabilities filtered out is counted, as
+     * {@link StageSummary#getAttributesFilteredOut()}.
      * 
      * @param attributeOutcomeProbabilities
      *            Probability of an attribute occurring given an outcome.
@@ -172,23 +360,143 @@ public class NaiveBayesianClassifier {
         return probabilityTable;
     }
 
+    /**
+     * Convenience method for {@link #predictAll(PTable, Pair, int)} that emits
+     * every outcome seen with at least one attribute of each observation.
+     * 
+     * @see {@link #predictAll(PTable, Pair, int)}
+     * @param observations
+     * @param trainingResults
+     * @return Predicted classification of each observation.
+     */
+    public static <K> PTable<K, Pair<Outcome, Double>> predictAll(final PTable<K, Attribute> observations,
+            final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trainingResults) {
+        return predictAll(observations, trainingResults, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Perform prediction for many observations at once. Each key of the
+     * observations table is one observation, holding all of the attributes
+     * emitted under it. Scoring is a single join of the observed attributes
+     * against the training results, followed by a combine of the log
+     * probabilities of each observation, so the whole table is scored by one
+     * pipeline run rather than a run per observation as with
+     * {@link #predict(PTable, PTable, Collection)}.
+     * <p>
+     * The outcome probabilities are assumed to be small enough to be joined
+     * in memory; they are attached to the attribute/outcome probabilities
+     * before the join so that the observations are only shuffled once.
+     * <p>
+     * The probabilities are the same as those of
+     * {@link io.github.brinman2002.classifier.NaiveBayesModel#predict(Collection)}
+     * , including the zero probability quirk documented in
+     * {@link #train(PTable, PTable)}, except that each attribute is counted
+     * every time it is observed; callers should make the attributes of an
+     * observation distinct if they may repeat. The key must be an Avro type.
+     * 
+     * @param observations
+     *            Observed attributes, keyed by observation.
+     * @param trainingResults
+     *            Output of training.
+     * @param limit
+     *            Maximum number of outcomes to emit for each observation.
+     * @return Predicted classification of each observation, best outcome
+     *         first.
+     */
+    public static <K> PTable<K, Pair<Outcome, Double>> predictAll(final PTable<K, Attribute> observations,
+            final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trainingResults, final int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive, was " + limit);
+        }
+        final AvroType<Outcome> outcomeType = Avros.containers(Outcome.class);
+        final AvroType<Attribute> attributeType = Avros.containers(Attribute.class);
+        final PType<K> keyType = observations.getKeyType();
+        final PType<Pair<Outcome, Pair<Double, Double>>> logProbabilityType = Avros.pairs(outcomeType,
+                Avros.pairs(Avros.doubles(), Avros.doubles()));
+
+        final PTable<Outcome, Pair<Attribute, Double>> attributeProbabilitiesByOutcome = trainingResults.first().parallelDo(
+                new RegroupAttributeOutcomeProbabilityDoFn(), Avros.tableOf(outcomeType, Avros.pairs(attributeType, Avros.doubles())));
+        final PTable<Attribute, Pair<Outcome, Pair<Double, Double>>> logProbabilities = new MapsideJoinStrategy<Outcome, Pair<Attribute, Double>, Double>()
+                .join(attributeProbabilitiesByOutcome, trainingResults.second(), JoinType.INNER_JOIN).parallelDo(
+                        new AttributeLogProbabilityDoFn(), Avros.tableOf(attributeType, logProbabilityType));
+
+        // The training results go on the left of the join as there are only a
+        // few values (one per outcome) for each attribute to be held while
+        // the observations stream past.
+        final PTable<Attribute, K> observationsByAttribute = observations.parallelDo(new SwapDoFn<K, Attribute>(),
+                Avros.tableOf(attributeType, keyType));
+        final PTable<K, Pair<Outcome, Pair<Double, Double>>> observedLogProbabilities = Join.innerJoin(logProbabilities,
+                observationsByAttribute).parallelDo(new RegroupObservationDoFn<K>(), Avros.tableOf(keyType, logProbabilityType));
+
+        return observedLogProbabilities.groupByKey().parallelDo(new ObservationScoringDoFn<K>(outcomeType, limit),
+                Avros.tableOf(keyType, Avros.pairs(outcomeType, Avros.doubles())));
+    }
+
+    /**
+     * The k most probable outcomes of a prediction, selected with a bounded
+     * heap rather than by sorting every outcome. Outcomes of equal probability
+     * are taken in the iteration order of the map, which for the maps
+     * returned by {@link #predict(PTable, PTable, Collection)} is the order of
+     * the outcomes.
+     * 
+     * @param predictions
+     *            Predicted classification.
+     * @param k
+     *            Maximum number of outcomes. If not positive, no outcomes
+     *            are returned.
+     * @return Up to k outcomes and their probabilities, most probable first.
+     */
+    public static List<Pair<Outcome, Double>> topK(final Map<Outcome, Double> predictions, final int k) {
+        if (k <= 0 || predictions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final TopK topK = new TopK(Math.min(k, predictions.size()));
+        final Outcome[] outcomes = new Outcome[predictions.size()];
+        final double[] probabilities = new double[predictions.size()];
+        int i = 0;
+        for (final Entry<Outcome, Double> entry : predictions.entrySet()) {
+            outcomes[i] = entry.getKey();
+            probabilities[i++] = entry.getValue();
+        }
+        final int[] indices = new int[topK.getK()];
+        final int count = topK.select(probabilities, indices);
+        final List<Pair<Outcome, Double>> out = new ArrayList<Pair<Outcome, Double>>(count);
+        for (int j = 0; j < count; ++j) {
+            out.add(Pair.of(outcomes[indices[j]], probabilities[indices[j]]));
+        }
+        return out;
+    }
+
+    /**
+     * Format a prediction as CSV rows, most probable outcome first, with
+     * outcomes of equal probability in outcome order. This builds every row
+     * in memory; to write a large prediction, or only the best of it, use a
+     * {@link PredictionWriter}, with {@link #topK(Map, int)}.
+     * 
+     * @param data
+     *            Predicted classification.
+     * @param header
+     *            Whether to start with {@link PredictionWriter#CSV_HEADER}.
+     * @return Rows.
+     */
     public static List<String> toCsv(final Map<Outcome, Double> data, final boolean header) {
-        final List<String> out = new LinkedList<String>();
+        final List<String> out = new ArrayList<String>(data.size() + 1);
         if (header) {
-            out.add("OUTCOME_NAMESPACE,OUTCOME,OUTCOME_QUALIFIER,PROBABILITY");
+            out.add(PredictionWriter.CSV_HEADER);
         }
 
-        // Sort in reverse order of the probability
-
-        final TreeSet<Entry<Outcome, Double>> entrySet = new TreeSet<Entry<Outcome, Double>>(new Comparator<Entry<Outcome, Double>>() {
+        // Sort in reverse order of the probability. Ties are broken by the
+        // outcome so that outcomes of equal probability are all kept.
+        final List<Entry<Outcome, Double>> entries = new ArrayList<Entry<Outcome, Double>>(data.entrySet());
+        Collections.sort(entries, new Comparator<Entry<Outcome, Double>>() {
             @Override
-            public int compare(Entry<Outcome, Double> o1, Entry<Outcome, Double> o2) {
-                return o2.getValue().compareTo(o1.getValue());
+            public int compare(final Entry<Outcome, Double> o1, final Entry<Outcome, Double> o2) {
+                final int cmp = o2.getValue().compareTo(o1.getValue());
+                return cmp != 0 ? cmp : o1.getKey().compareTo(o2.getKey());
             }
         });
-        entrySet.addAll(data.entrySet());
 
-        for (final Entry<Outcome, Double> entry : entrySet) {
+        for (final Entry<Outcome, Double> entry : entries) {
             final Outcome outcome = entry.getKey();
             out.add(String.format("%s,%s,%s,%s", outcome.getNamespace(), outcome.getValue(), outcome.getQualifier(), entry.getValue()));
         }
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.pipeline;
+
+import io.github.brinman2002.dofn.internal.PruningCounter;
+
+import org.apache.crunch.PipelineResult;
+import org.apache.crunch.PipelineResult.StageResult;
+import org.apache.hadoop.mapreduce.Counters;
+
+/**
+ * How much a trained model shrank through the {@link TrainingOptions}, read
+ * from the counters of the pipeline run that trained it. For a
+ * {@link org.apache.crunch.impl.mem.MemPipeline}, use
+ * {@link org.apache.crunch.impl.mem.MemPipeline#getCounters()}.
+ * 
+ * @author brandon
+ * 
+ */
+public class PruningSummary {
+
+    private final long pairsCounted;
+    private final long pairsBelowMinimumCount;
+    private final long pairsOverOutcomeLimit;
+
+    public PruningSummary(final long pairsCounted, final long pairsBelowMinimumCount, final long pairsOverOutcomeLimit) {
+        this.pairsCounted = pairsCounted;
+        this.pairsBelowMinimumCount = pairsBelowMinimumCount;
+        this.pairsOverOutcomeLimit = pairsOverOutcomeLimit;
+    }
+
+    public static PruningSummary of(final PipelineResult result) {
+        long pairsCounted = 0;
+        long pairsBelowMinimumCount = 0;
+        long pairsOverOutcomeLimit = 0;
+        for (final StageResult stage : result.getStageResults()) {
+            pairsCounted += stage.getCounterValue(PruningCounter.PAIRS_COUNTED);
+            pairsBelowMinimumCount += stage.getCounterValue(PruningCounter.PAIRS_BELOW_MINIMUM_COUNT);
+            pairsOverOutcomeLimit += stage.getCounterValue(PruningCounter.PAIRS_OVER_OUTCOME_LIMIT);
+        }
+        return new PruningSummary(pairsCounted, pairsBelowMinimumCount, pairsOverOutcomeLimit);
+    }
+
+    public static PruningSummary of(final Counters counters) {
+        return new PruningSummary(counters.findCounter(PruningCounter.PAIRS_COUNTED).getValue(), counters.findCounter(
+                PruningCounter.PAIRS_BELOW_MINIMUM_COUNT).getValue(), counters.findCounter(PruningCounter.PAIRS_OVER_OUTCOME_LIMIT).getValue());
+    }
+
+    /**
+     * @return Number of distinct attribute/outcome pairs seen in training.
+     */
+    public long getPairsCounted() {
+        return pairsCounted;
+    }
+
+    public long getPairsBelowMinimumCount() {
+        return pairsBelowMinimumCount;
+    }
+
+    public long getPairsOverOutcomeLimit() {
+        return pairsOverOutcomeLimit;
+    }
+
+    /**
+     * @return Number of attribute/outcome pairs in the model.
+     */
+    public long getPairsKept() {
+        return pairsCounted - pairsBelowMinimumCount - pairsOverOutcomeLimit;
+    }
+
+    /**
+     * @return Fraction of the pairs that were pruned, between 0 and 1.
+     */
+    public double getPrunedFraction() {
+        return pairsCounted == 0 ? 0.0 : (pairsBelowMinimumCount + pairsOverOutcomeLimit) / (double) pairsCounted;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Kept %d of %d attribute/outcome pairs (%.1f%% pruned: %d below minimum count, %d over outcome limit)",
+                getPairsKept(), pairsCounted, getPrunedFraction() * 100, pairsBelowMinimumCount, pairsOverOutcomeLimit);
+    }
+}
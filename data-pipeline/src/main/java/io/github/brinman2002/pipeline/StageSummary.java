@@ -0,0 +1,202 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.pipeline;
+
+import io.github.brinman2002.dofn.internal.ModelCounter;
+import io.github.brinman2002.dofn.internal.StageCounter;
+import io.github.brinman2002.dofn.internal.StageMetrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.crunch.PipelineResult;
+import org.apache.crunch.PipelineResult.StageResult;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
+
+/**
+ * Records in and out of, and the time spent in, each instrumented stage of a
+ * pipeline run, read from the counters published by
+ * {@link StageMetrics}, along with the
+ * {@link ModelCounter}s. For a {@link org.apache.crunch.impl.mem.MemPipeline},
+ * use {@link org.apache.crunch.impl.mem.MemPipeline#getCounters()}.
+ * <p>
+ * A stage that runs in several tasks, or in several runs whose results are
+ * summarized together, is summed over them.
+ * 
+ * @author brandon
+ * 
+ */
+public class StageSummary {
+
+    private final Map<String, Stage> stages;
+    private final long distinctOutcomes;
+    private final long attributesFilteredOut;
+
+    public StageSummary(final Map<String, Stage> stages, final long distinctOutcomes, final long attributesFilteredOut) {
+        this.stages = Collections.unmodifiableMap(new TreeMap<String, Stage>(stages));
+        this.distinctOutcomes = distinctOutcomes;
+        this.attributesFilteredOut = attributesFilteredOut;
+    }
+
+    public static StageSummary of(final PipelineResult result) {
+        final Map<String, Stage> stages = new TreeMap<String, Stage>();
+        long distinctOutcomes = 0;
+        long attributesFilteredOut = 0;
+        for (final StageResult stage : result.getStageResults()) {
+            addStages(stage.getCounters(), stages);
+            distinctOutcomes += stage.getCounterValue(ModelCounter.DISTINCT_OUTCOMES);
+            attributesFilteredOut += stage.getCounterValue(ModelCounter.ATTRIBUTES_FILTERED_OUT);
+        }
+        return new StageSummary(stages, distinctOutcomes, attributesFilteredOut);
+    }
+
+    public static StageSummary of(final Counters counters) {
+        final Map<String, Stage> stages = new TreeMap<String, Stage>();
+        addStages(counters, stages);
+        return new StageSummary(stages, counters.findCounter(ModelCounter.DISTINCT_OUTCOMES).getValue(), counters.findCounter(
+                ModelCounter.ATTRIBUTES_FILTERED_OUT).getValue());
+    }
+
+    private static void addStages(final Counters counters, final Map<String, Stage> stages) {
+        if (counters == null) {
+            return;
+        }
+        for (final CounterGroup group : counters) {
+            if (!group.getName().startsWith(StageMetrics.GROUP_PREFIX)) {
+                continue;
+            }
+            final String name = group.getName().substring(StageMetrics.GROUP_PREFIX.length());
+            final long[] values = new long[StageCounter.values().length];
+            for (final Counter counter : group) {
+                try {
+                    values[StageCounter.valueOf(counter.getName()).ordinal()] = counter.getValue();
+                } catch (final IllegalArgumentException e) {
+                    // Not one of ours.
+                }
+            }
+            final Stage stage = new Stage(name, values[StageCounter.INPUT_RECORDS.ordinal()], values[StageCounter.OUTPUT_RECORDS.ordinal()],
+                    values[StageCounter.TIMED_RECORDS.ordinal()], values[StageCounter.TIMED_NANOS.ordinal()]);
+            final Stage existing = stages.get(name);
+            stages.put(name, existing == null ? stage : existing.plus(stage));
+        }
+    }
+
+    /**
+     * @return Each stage, by name.
+     */
+    public Map<String, Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * @param name
+     *            Name of the stage, usually the simple name of its DoFn.
+     * @return The stage, or null if it did not run.
+     */
+    public Stage getStage(final String name) {
+        return stages.get(name);
+    }
+
+    public long getDistinctOutcomes() {
+        return distinctOutcomes;
+    }
+
+    public long getAttributesFilteredOut() {
+        return attributesFilteredOut;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-45s %14s %14s %12s%n", "stage", "records in", "records out", "est. ms"));
+        for (final Stage stage : stages.values()) {
+            builder.append(String.format("%-45s %,14d %,14d %,12.1f%n", stage.getName(), stage.getInputRecords(), stage.getOutputRecords(),
+                    stage.getEstimatedNanos() / 1e6));
+        }
+        builder.append(String.format("%,d distinct outcomes, %,d attribute probabilities filtered out", distinctOutcomes, attributesFilteredOut));
+        return builder.toString();
+    }
+
+    /**
+     * Counts and timing of one stage.
+     */
+    public static class Stage {
+        private final String name;
+        private final long inputRecords;
+        private final long outputRecords;
+        private final long timedRecords;
+        private final long timedNanos;
+
+        public Stage(final String name, final long inputRecords, final long outputRecords, final long timedRecords, final long timedNanos) {
+            this.name = name;
+            this.inputRecords = inputRecords;
+            this.outputRecords = outputRecords;
+            this.timedRecords = timedRecords;
+            this.timedNanos = timedNanos;
+        }
+
+        Stage plus(final Stage other) {
+            return new Stage(name, inputRecords + other.inputRecords, outputRecords + other.outputRecords, timedRecords + other.timedRecords,
+                    timedNanos + other.timedNanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getInputRecords() {
+            return inputRecords;
+        }
+
+        public long getOutputRecords() {
+            return outputRecords;
+        }
+
+        public long getTimedRecords() {
+            return timedRecords;
+        }
+
+        public long getTimedNanos() {
+            return timedNanos;
+        }
+
+        /**
+         * @return Mean time spent processing a record, from the timed
+         *         records; zero if none were timed.
+         */
+        public double getMeanNanos() {
+            return timedRecords == 0 ? 0.0 : (double) timedNanos / timedRecords;
+        }
+
+        /**
+         * @return Time spent processing all of the records, estimated from
+         *         the timed records. Time spent emitting on cleanup is not
+         *         included.
+         */
+        public double getEstimatedNanos() {
+            return getMeanNanos() * inputRecords;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d in, %d out, %.0f ns per record", name, inputRecords, outputRecords, getMeanNanos());
+        }
+    }
+}
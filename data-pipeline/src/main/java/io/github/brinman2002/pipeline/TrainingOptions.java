@@ -0,0 +1,195 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.pipeline;
+
+/**
+ * Options for training a {@link NaiveBayesianClassifier}. The defaults keep
+ * every attribute/outcome pair that was seen; options are immutable, and each
+ * of the setters returns a copy.
+ * 
+ * @author brandon
+ * 
+ */
+public class TrainingOptions {
+
+    private static final TrainingOptions DEFAULTS = new TrainingOptions(1, Integer.MAX_VALUE, false, true, 1, 0.01, 0.01);
+
+    private final long minimumCount;
+    private final int maximumOutcomesPerAttribute;
+    private final boolean encodeAttributes;
+    private final boolean broadcastOutcomes;
+    private final int hotKeyShards;
+    private final double hotKeySampleRate;
+    private final double hotKeyFraction;
+
+    private TrainingOptions(final long minimumCount, final int maximumOutcomesPerAttribute, final boolean encodeAttributes,
+            final boolean broadcastOutcomes, final int hotKeyShards, final double hotKeySampleRate, final double hotKeyFraction) {
+        this.minimumCount = minimumCount;
+        this.maximumOutcomesPerAttribute = maximumOutcomesPerAttribute;
+        this.encodeAttributes = encodeAttributes;
+        this.broadcastOutcomes = broadcastOutcomes;
+        this.hotKeyShards = hotKeyShards;
+        this.hotKeySampleRate = hotKeySampleRate;
+        this.hotKeyFraction = hotKeyFraction;
+    }
+
+    public static TrainingOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param minimumCount
+     *            Minimum number of keys an attribute must have been seen with
+     *            an outcome under for the pair to be kept. Pairs are dropped
+     *            as soon as they are counted, before they are shuffled again.
+     * @return Copy of these options.
+     */
+    public TrainingOptions minimumCount(final long minimumCount) {
+        if (minimumCount < 1) {
+            throw new IllegalArgumentException("minimumCount must be positive, was " + minimumCount);
+        }
+        return new TrainingOptions(minimumCount, maximumOutcomesPerAttribute, encodeAttributes, broadcastOutcomes, hotKeyShards, hotKeySampleRate,
+                hotKeyFraction);
+    }
+
+    /**
+     * @param maximumOutcomesPerAttribute
+     *            Maximum number of outcomes to keep for each attribute; the
+     *            most probable are kept. Limiting the outcomes takes one more
+     *            grouping pass, over the probabilities.
+     * @return Copy of these options.
+     */
+    public TrainingOptions maximumOutcomesPerAttribute(final int maximumOutcomesPerAttribute) {
+        if (maximumOutcomesPerAttribute < 1) {
+            throw new IllegalArgumentException("maximumOutcomesPerAttribute must be positive, was " + maximumOutcomesPerAttribute);
+        }
+        return new TrainingOptions(minimumCount, maximumOutcomesPerAttribute, encodeAttributes, broadcastOutcomes, hotKeyShards, hotKeySampleRate,
+                hotKeyFraction);
+    }
+
+    /**
+     * @param encodeAttributes
+     *            Whether
+     *            {@link NaiveBayesianClassifier#trainEncoded(org.apache.crunch.PTable, org.apache.crunch.PTable, TrainingOptions)}
+     *            replaces the attributes with ids too, and not only the
+     *            outcomes. The attribute dictionary is joined map side, so
+     *            every task holds all of the distinct attributes in memory;
+     *            turn this on only if they fit.
+     * @return Copy of these options.
+     */
+    public TrainingOptions encodeAttributes(final boolean encodeAttributes) {
+        return new TrainingOptions(minimumCount, maximumOutcomesPerAttribute, encodeAttributes, broadcastOutcomes, hotKeyShards, hotKeySampleRate,
+                hotKeyFraction);
+    }
+
+    /**
+     * @param broadcastOutcomes
+     *            Whether the outcome counts are joined with the
+     *            outcome/attribute counts map side, by shipping them to every
+     *            task through the distributed cache, rather than by shuffling
+     *            both sides. As the number of outcomes is assumed to be small
+     *            this is on by default; turn it off only if the outcomes are
+     *            too many to hold in memory.
+     * @return Copy of these options.
+     */
+    public TrainingOptions broadcastOutcomes(final boolean broadcastOutcomes) {
+        return new TrainingOptions(minimumCount, maximumOutcomesPerAttribute, encodeAttributes, broadcastOutcomes, hotKeyShards, hotKeySampleRate,
+                hotKeyFraction);
+    }
+
+    /**
+     * @param hotKeyShards
+     *            Number of reducers to split each hot key across when joining
+     *            or grouping the attributes and outcomes on their key. Hot
+     *            keys are found by sampling the attributes before training,
+     *            which runs the pipeline; their attributes are then spread
+     *            over the shards and their outcomes copied to each shard. One,
+     *            the default, turns this off.
+     * @return Copy of these options.
+     */
+    public TrainingOptions hotKeyShards(final int hotKeyShards) {
+        if (hotKeyShards < 1) {
+            throw new IllegalArgumentException("hotKeyShards must be positive, was " + hotKeyShards);
+        }
+        return new TrainingOptions(minimumCount, maximumOutcomesPerAttribute, encodeAttributes, broadcastOutcomes, hotKeyShards, hotKeySampleRate,
+                hotKeyFraction);
+    }
+
+    /**
+     * @param hotKeySampleRate
+     *            Fraction of the attributes sampled to find the hot keys;
+     *            one counts every key.
+     * @return Copy of these options.
+     */
+    public TrainingOptions hotKeySampleRate(final double hotKeySampleRate) {
+        if (!(hotKeySampleRate > 0 && hotKeySampleRate <= 1)) {
+            throw new IllegalArgumentException("hotKeySampleRate must be in (0, 1], was " + hotKeySampleRate);
+        }
+        return new TrainingOptions(minimumCount, maximumOutcomesPerAttribute, encodeAttributes, broadcastOutcomes, hotKeyShards, hotKeySampleRate,
+                hotKeyFraction);
+    }
+
+    /**
+     * @param hotKeyFraction
+     *            Fraction of the sampled attributes a key must hold to be
+     *            treated as hot.
+     * @return Copy of these options.
+     */
+    public TrainingOptions hotKeyFraction(final double hotKeyFraction) {
+        if (!(hotKeyFraction > 0 && hotKeyFraction <= 1)) {
+            throw new IllegalArgumentException("hotKeyFraction must be in (0, 1], was " + hotKeyFraction);
+        }
+        return new TrainingOptions(minimumCount, maximumOutcomesPerAttribute, encodeAttributes, broadcastOutcomes, hotKeyShards, hotKeySampleRate,
+                hotKeyFraction);
+    }
+
+    public long getMinimumCount() {
+        return minimumCount;
+    }
+
+    public int getMaximumOutcomesPerAttribute() {
+        return maximumOutcomesPerAttribute;
+    }
+
+    public boolean isEncodeAttributes() {
+        return encodeAttributes;
+    }
+
+    public boolean isBroadcastOutcomes() {
+        return broadcastOutcomes;
+    }
+
+    public boolean isOutcomeLimited() {
+        return maximumOutcomesPerAttribute != Integer.MAX_VALUE;
+    }
+
+    public int getHotKeyShards() {
+        return hotKeyShards;
+    }
+
+    public double getHotKeySampleRate() {
+        return hotKeySampleRate;
+    }
+
+    public double getHotKeyFraction() {
+        return hotKeyFraction;
+    }
+
+    public boolean isSplittingHotKeys() {
+        return hotKeyShards > 1;
+    }
+}
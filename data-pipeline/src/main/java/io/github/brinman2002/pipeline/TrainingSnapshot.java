@@ -0,0 +1,260 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.pipeline;
+
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+import io.github.brinman2002.dofn.internal.AttributeOutcomeProbabilityCalculatingDoFn;
+import io.github.brinman2002.dofn.internal.BlockOutcomeAttributeDoFn;
+import io.github.brinman2002.dofn.internal.NormalizingProbabilityDoFn;
+import io.github.brinman2002.dofn.internal.RegroupOutcomeAttributeCountDoFn;
+
+import java.io.IOException;
+
+import org.apache.crunch.MapFn;
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.Pipeline;
+import org.apache.crunch.fn.Aggregators;
+import org.apache.crunch.fn.IdentityFn;
+import org.apache.crunch.io.From;
+import org.apache.crunch.io.To;
+import org.apache.crunch.lib.Cogroup;
+import org.apache.crunch.lib.PTables;
+import org.apache.crunch.types.PType;
+import org.apache.crunch.types.avro.AvroType;
+import org.apache.crunch.types.avro.Avros;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * The raw counts behind a trained {@link NaiveBayesianClassifier}: the number
+ * of keys each outcome/attribute pair was seen under, and the number of keys
+ * each outcome was seen under. The total number of outcomes is the sum of the
+ * outcome counts, so it isn't kept separately.
+ * <p>
+ * Unlike the probabilities, counts can be added together, so a snapshot can be
+ * written out after training and later merged with the counts of only the new
+ * data to train again without rescanning the history. Snapshots are never
+ * pruned; the {@link TrainingOptions} are applied when the probabilities are
+ * derived.
+ * 
+ * @author brandon
+ * 
+ */
+public class TrainingSnapshot {
+
+    /**
+     * Version of the snapshot layout written by {@link #write(Path)}.
+     */
+    public static final int VERSION = 1;
+
+    private static final AvroType<Outcome> OUTCOME_TYPE = Avros.containers(Outcome.class);
+    private static final AvroType<Attribute> ATTRIBUTE_TYPE = Avros.containers(Attribute.class);
+    private static final AvroType<Pair<Pair<Outcome, Attribute>, Long>> PAIR_COUNT_TYPE = Avros.pairs(Avros.pairs(OUTCOME_TYPE, ATTRIBUTE_TYPE),
+            Avros.longs());
+    private static final AvroType<Pair<Outcome, Long>> OUTCOME_COUNT_TYPE = Avros.pairs(OUTCOME_TYPE, Avros.longs());
+
+    private final PTable<Pair<Outcome, Attribute>, Long> pairCounts;
+    private final PTable<Outcome, Long> outcomeCounts;
+
+    public TrainingSnapshot(final PTable<Pair<Outcome, Attribute>, Long> pairCounts, final PTable<Outcome, Long> outcomeCounts) {
+        this.pairCounts = pairCounts;
+        this.outcomeCounts = outcomeCounts;
+    }
+
+    /**
+     * Count the outcomes and attributes, keyed as for
+     * {@link NaiveBayesianClassifier#train(PTable, PTable)}. Outcomes and
+     * attributes are cogrouped on their key in a single grouping pass, which
+     * also makes the attributes of each key distinct, and the
+     * outcome/attribute pairs are then counted in one reduce. The outcomes,
+     * of which there is usually one per key, are counted in a separate small
+     * pass.
+     * 
+     * @param attributes
+     *            PTable of attributes.
+     * @param outcomes
+     *            PTable of outcomes.
+     * @return Counts.
+     */
+    public static TrainingSnapshot count(final PTable<Long, Attribute> attributes, final PTable<Long, Outcome> outcomes) {
+        return count(attributes, outcomes, TrainingOptions.defaults());
+    }
+
+    /**
+     * Count the outcomes and attributes as {@link #count(PTable, PTable)}.
+     * The options don't change the counts, only how the work is spread: if
+     * hot keys are being split, the attributes are sampled to find them,
+     * which runs the pipeline, and each hot key is cogrouped over several
+     * reducers.
+     * 
+     * @param attributes
+     *            PTable of attributes.
+     * @param outcomes
+     *            PTable of outcomes.
+     * @param options
+     *            Training options.
+     * @return Counts.
+     */
+    public static TrainingSnapshot count(final PTable<Long, Attribute> attributes, final PTable<Long, Outcome> outcomes,
+            final TrainingOptions options) {
+        return new TrainingSnapshot(countPairs(attributes, outcomes, OUTCOME_TYPE, ATTRIBUTE_TYPE, options), PTables.values(outcomes).count());
+    }
+
+    /**
+     * Count the number of keys each outcome/attribute pair was seen under.
+     */
+    static <O, A> PTable<Pair<O, A>, Long> countPairs(final PTable<Long, A> attributes, final PTable<Long, O> outcomes,
+            final PType<O> outcomeType, final PType<A> attributeType, final TrainingOptions options) {
+        final PTable<Pair<O, A>, Long> pairs;
+        if (options.isSplittingHotKeys()) {
+            // Attributes are split by value, so each shard of a hot key still
+            // sees every occurrence of its attributes and can make them
+            // distinct.
+            final HotKeys hotKeys = HotKeys.sample(attributes, options);
+            pairs = Cogroup.cogroup(hotKeys.replicate(outcomes), hotKeys.split(attributes)).parallelDo(
+                    new BlockOutcomeAttributeDoFn<Pair<Long, Integer>, O, A>(),
+                    Avros.tableOf(Avros.pairs(outcomeType, attributeType), Avros.longs()));
+        } else {
+            pairs = Cogroup.cogroup(outcomes, attributes).parallelDo(new BlockOutcomeAttributeDoFn<Long, O, A>(),
+                    Avros.tableOf(Avros.pairs(outcomeType, attributeType), Avros.longs()));
+        }
+        return pairs.groupByKey().combineValues(Aggregators.SUM_LONGS());
+    }
+
+    /**
+     * Calculate the probability of each outcome from their counts.
+     */
+    static <O> PTable<O, Double> outcomeProbabilities(final PTable<O, Long> outcomeCounts, final PType<O> outcomeType) {
+        // The number of outcomes is assumed to be small, so they are all
+        // brought to a single reducer to be totalled rather than running a
+        // separate job to find the total up front.
+        return outcomeCounts.by(new MapFn<Pair<O, Long>, Integer>() {
+            private static final long serialVersionUID = -6364431305870442734L;
+
+            @Override
+            public Integer map(final Pair<O, Long> input) {
+                return 1;
+            }
+        }, Avros.ints()).groupByKey(1)
+                .parallelDo(new NormalizingProbabilityDoFn<Integer, O>(outcomeType), Avros.tableOf(outcomeType, Avros.doubles()));
+    }
+
+    /**
+     * Read a snapshot written by {@link #write(Path)}.
+     * 
+     * @param pipeline
+     *            Pipeline to read the snapshot into.
+     * @param directory
+     *            Directory the snapshot was written to.
+     * @return Snapshot.
+     * @throws IOException
+     *             if the directory doesn't hold a snapshot of this version.
+     */
+    public static TrainingSnapshot read(final Pipeline pipeline, final Path directory) throws IOException {
+        final Path versionDirectory = versionDirectory(directory);
+        final FileSystem fileSystem = versionDirectory.getFileSystem(pipeline.getConfiguration());
+        if (!fileSystem.exists(versionDirectory)) {
+            throw new IOException("No version " + VERSION + " training snapshot in " + directory);
+        }
+        return new TrainingSnapshot(PTables.asPTable(pipeline.read(From.avroFile(new Path(versionDirectory, "pairs"), PAIR_COUNT_TYPE))),
+                PTables.asPTable(pipeline.read(From.avroFile(new Path(versionDirectory, "outcomes"), OUTCOME_COUNT_TYPE))));
+    }
+
+    /**
+     * Write the snapshot under the directory, to be read back by
+     * {@link #read(Pipeline, Path)}. The counts are written when the pipeline
+     * next runs.
+     * 
+     * @param directory
+     *            Directory to write to.
+     */
+    public void write(final Path directory) {
+        final Path versionDirectory = versionDirectory(directory);
+        final Pipeline pipeline = pairCounts.getPipeline();
+        // The tables are written as collections of pairs, which have the same
+        // layout in Avro but can be written as Avro by a MemPipeline too.
+        pipeline.write(pairCounts.parallelDo(IdentityFn.<Pair<Pair<Outcome, Attribute>, Long>> getInstance(), PAIR_COUNT_TYPE),
+                To.avroFile(new Path(versionDirectory, "pairs")));
+        pipeline.write(outcomeCounts.parallelDo(IdentityFn.<Pair<Outcome, Long>> getInstance(), OUTCOME_COUNT_TYPE),
+                To.avroFile(new Path(versionDirectory, "outcomes")));
+    }
+
+    /**
+     * Add the counts of another snapshot to these.
+     * 
+     * @param other
+     *            Snapshot to add.
+     * @return Merged snapshot.
+     */
+    @SuppressWarnings("unchecked")
+    public TrainingSnapshot merge(final TrainingSnapshot other) {
+        return new TrainingSnapshot(pairCounts.union(other.pairCounts).groupByKey().combineValues(Aggregators.SUM_LONGS()), outcomeCounts
+                .union(other.outcomeCounts).groupByKey().combineValues(Aggregators.SUM_LONGS()));
+    }
+
+    /**
+     * Add the counts of new outcomes and attributes to these. The keys of the
+     * new data must not overlap the keys of the data already counted.
+     * 
+     * @param attributes
+     *            PTable of new attributes.
+     * @param outcomes
+     *            PTable of new outcomes.
+     * @return Merged snapshot.
+     */
+    public TrainingSnapshot update(final PTable<Long, Attribute> attributes, final PTable<Long, Outcome> outcomes) {
+        return merge(count(attributes, outcomes));
+    }
+
+    /**
+     * Derive the training data from the counts, in the same form as
+     * {@link NaiveBayesianClassifier#train(PTable, PTable)}.
+     * 
+     * @param options
+     *            Training options.
+     * @return Training data.
+     */
+    public Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> train(final TrainingOptions options) {
+        // Pairs below the minimum count are dropped in the same reduce that
+        // counted them, and, with the outcome counts broadcast, the join
+        // happens in that reduce too.
+        final PTable<Outcome, Pair<Attribute, Long>> attributeCountsByEvent = pairCounts.parallelDo(
+                new RegroupOutcomeAttributeCountDoFn<Outcome, Attribute>(options.getMinimumCount()),
+                Avros.tableOf(OUTCOME_TYPE, Avros.pairs(ATTRIBUTE_TYPE, Avros.longs())));
+
+        final PTable<Attribute, Pair<Outcome, Double>> outcomeAttributeProbabilities = NaiveBayesianClassifier
+                .joinOutcomeCounts(attributeCountsByEvent, outcomeCounts, options).parallelDo(new AttributeOutcomeProbabilityCalculatingDoFn<Outcome, Attribute>(),
+                        Avros.tableOf(ATTRIBUTE_TYPE, Avros.pairs(OUTCOME_TYPE, Avros.doubles())));
+
+        return Pair.of(NaiveBayesianClassifier.limitOutcomes(outcomeAttributeProbabilities, options),
+                outcomeProbabilities(outcomeCounts, OUTCOME_TYPE));
+    }
+
+    public PTable<Pair<Outcome, Attribute>, Long> getPairCounts() {
+        return pairCounts;
+    }
+
+    public PTable<Outcome, Long> getOutcomeCounts() {
+        return outcomeCounts;
+    }
+
+    private static Path versionDirectory(final Path directory) {
+        return new Path(directory, "v" + VERSION);
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2013 Brandon Inman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.brinman2002.classifier;
+
+import static io.github.brinman2002.Helper.attribute;
+import static io.github.brinman2002.Helper.outcome;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.AttributeNamespace;
+import io.github.brinman2002.data.model.Outcome;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.avro.util.Utf8;
+import org.apache.crunch.MapFn;
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.Pipeline;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.apache.crunch.impl.mr.MRPipeline;
+import org.apache.crunch.types.avro.Avros;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NaiveBayesModelFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndOpen() throws IOException {
+        final Attribute unicode = Attribute.newBuilder().setNamespace(AttributeNamespace.KEYWORD_AND_AUTHOR).setValue("café 日本").build();
+        final PTable<Attribute, Pair<Outcome, Double>> attributeOutcomeProbabilities = MemPipeline.typedTableOf(
+                Avros.tableOf(Avros.containers(Attribute.class), Avros.pairs(Avros.containers(Outcome.class), Avros.doubles())),
+                attribute("2"), Pair.of(outcome("a"), 0.5), attribute("1"), Pair.of(outcome("a"), 0.25), attribute("1"),
+                Pair.of(outcome("b"), 0.75), unicode, Pair.of(outcome("b"), 0.125));
+        final PTable<Outcome, Double> outcomeProbabilities = MemPipeline.typedTableOf(
+                Avros.tableOf(Avros.containers(Outcome.class), Avros.doubles()), outcome("b"), 0.4, outcome("a"), 0.6);
+
+        final File file = folder.newFile("model");
+        NaiveBayesModelFile.write(Pair.of(attributeOutcomeProbabilities, outcomeProbabilities), file);
+
+        verify(NaiveBayesModelFile.open(file), unicode);
+
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        final byte[] bytes = new byte[(int) in.length()];
+        in.readFully(bytes);
+        in.close();
+        verify(NaiveBayesModelFile.wrap(ByteBuffer.wrap(bytes)), unicode);
+    }
+
+    @Test
+    public void supplementaryCharacters() throws IOException {
+        // U+FF01 sorts after the surrogates of U+1F600 as a string, but
+        // before its UTF-8 bytes.
+        final Attribute fullwidth = Attribute.newBuilder().setNamespace(AttributeNamespace.KEYWORD).setValue("\uff01").build();
+        final Attribute emoji = Attribute.newBuilder().setNamespace(AttributeNamespace.KEYWORD).setValue("\ud83d\ude00").build();
+        final PTable<Attribute, Pair<Outcome, Double>> attributeOutcomeProbabilities = MemPipeline.typedTableOf(
+                Avros.tableOf(Avros.containers(Attribute.class), Avros.pairs(Avros.containers(Outcome.class), Avros.doubles())),
+                emoji, Pair.of(outcome("a"), 0.5), fullwidth, Pair.of(outcome("a"), 0.25));
+        final PTable<Outcome, Double> outcomeProbabilities = MemPipeline.typedTableOf(
+                Avros.tableOf(Avros.containers(Outcome.class), Avros.doubles()), outcome("a"), 1.0);
+
+        final File file = folder.newFile("model");
+        NaiveBayesModelFile.write(Pair.of(attributeOutcomeProbabilities, outcomeProbabilities), file);
+
+        final NaiveBayesModelFile model = NaiveBayesModelFile.open(file);
+        assertEquals(2, model.getAttributeCount());
+        assertEquals(fullwidth, model.getAttribute(0));
+        assertEquals(emoji, model.getAttribute(1));
+        assertEquals(Math.log(0.25), model.getLogProbability(model.indexOf(fullwidth), 0), 1e-12);
+        assertEquals(Math.log(0.5), model.getLogProbability(model.indexOf(emoji), 0), 1e-12);
+    }
+
+    @Test
+    public void writeFromMapReduce() throws IOException {
+        final Attribute unicode = Attribute.newBuilder().setNamespace(AttributeNamespace.KEYWORD_AND_AUTHOR).setValue("café 日本").build();
+        final File probabilities = folder.newFile("probabilities.txt");
+        write(probabilities, "KEYWORD\tVALUE2\ta\t0.5", "KEYWORD\tVALUE1\ta\t0.25", "KEYWORD\tVALUE1\tb\t0.75",
+                "KEYWORD_AND_AUTHOR\tcafé 日本\tb\t0.125");
+        final File outcomes = folder.newFile("outcomes.txt");
+        write(outcomes, "b\t0.4", "a\t0.6");
+
+        final Pipeline pipeline = new MRPipeline(NaiveBayesModelFileTest.class, new Configuration());
+        final PTable<Attribute, Pair<Outcome, Double>> attributeOutcomeProbabilities = pipeline.readTextFile(probabilities.getPath()).parallelDo(
+                new ParseProbabilityFn(),
+                Avros.tableOf(Avros.containers(Attribute.class), Avros.pairs(Avros.containers(Outcome.class), Avros.doubles())));
+        final PTable<Outcome, Double> outcomeProbabilities = pipeline.readTextFile(outcomes.getPath()).parallelDo(new ParseOutcomeFn(),
+                Avros.tableOf(Avros.containers(Outcome.class), Avros.doubles()));
+
+        final File file = new File(folder.getRoot(), "model");
+        try {
+            NaiveBayesModelFile.write(Pair.of(attributeOutcomeProbabilities, outcomeProbabilities), file);
+        } finally {
+            pipeline.done();
+        }
+
+        verify(NaiveBayesModelFile.open(file), unicode);
+    }
+
+    private static void write(final File file, final String... lines) throws IOException {
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            for (final String line : lines) {
+                out.write(line);
+                out.write('\n');
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Parse "namespace, value, outcome, probability" lines.
+     */
+    private static class ParseProbabilityFn extends MapFn<String, Pair<Attribute, Pair<Outcome, Double>>> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Pair<Attribute, Pair<Outcome, Double>> map(final String input) {
+            final String[] fields = input.split("\t");
+            final Attribute attribute = Attribute.newBuilder().setNamespace(AttributeNamespace.valueOf(fields[0])).setValue(fields[1]).build();
+            return Pair.of(attribute, Pair.of(outcome(fields[2]), Double.valueOf(fields[3])));
+        }
+    }
+
+    /**
+     * Parse "outcome, probability" lines.
+     */
+    private static class ParseOutcomeFn extends MapFn<String, Pair<Outcome, Double>> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Pair<Outcome, Double> map(final String input) {
+            final String[] fields = input.split("\t");
+            return Pair.of(outcome(fields[0]), Double.valueOf(fields[1]));
+        }
+    }
+
+    private void verify(final NaiveBayesModelFile model, final Attribute unicode) {
+        assertEquals(2, model.getOutcomeCount());
+        assertEquals(outcome("a"), model.getOutcome(0));
+        assertEquals(0.6, model.getOutcomeProbability(0), 0.0);
+        assertEquals(outcome("b"), model.getOutcome(1));
+        assertEquals(0.4, model.getOutcomeProbability(1), 0.0);
+
+        assertEquals(3, model.getAttributeCount());
+        final Set<Attribute> attributes = new HashSet<Attribute>();
+        for (int i = 0; i < model.getAttributeCount(); ++i) {
+            attributes.add(model.getAttribute(i));
+            assertEquals(i, model.indexOf(model.getAttribute(i)));
+        }
+        assertTrue(attributes.contains(unicode));
+
+        final int one = model.indexOf(attribute("1"));
+        assertEquals(Math.log(0.25), model.getLogProbability(one, 0), 0.0);
+        assertEquals(Math.log(0.75), model.getLogProbability(one, 1), 0.0);
+        final int two = model.indexOf(attribute("2"));
+        assertEquals(Math.log(0.5), model.getLogProbability(two, 0), 0.0);
+        assertTrue(Double.isNaN(model.getLogProbability(two, 1)));
+        assertEquals(Math.log(0.125), model.getLogProbability(model.indexOf(unicode), 1), 0.0);
+
+        // Only the pairs that were seen together are stored.
+        assertEquals(1, model.getRowEnd(two) - model.getRowStart(two));
+        assertEquals(0, model.getEntryOutcome(model.getRowStart(two)));
+        assertEquals(2, model.getRowEnd(one) - model.getRowStart(one));
+        assertEquals(1, model.getEntryOutcome(model.getRowStart(one) + 1));
+
+        // Avro may hand back values as Utf8 rather than String.
+        assertEquals(two, model.indexOf(Attribute.newBuilder().setNamespace(AttributeNamespace.KEYWORD).setValue(new Utf8("VALUE2")).build()));
+        assertEquals(-1, model.indexOf(attribute("3")));
+        assertEquals(-1, model.indexOf(Attribute.newBuilder().setNamespace(AttributeNamespace.KEYWORD_AND_SOURCE).setValue("VALUE1").build()));
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2013 Brandon Inman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.brinman2002.classifier;
+
+import static io.github.brinman2002.Helper.attribute;
+import static io.github.brinman2002.Helper.outcome;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+import io.github.brinman2002.pipeline.NaiveBayesianClassifier;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.crunch.MapFn;
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.Pipeline;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.apache.crunch.impl.mr.MRPipeline;
+import org.apache.crunch.types.avro.Avros;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NaiveBayesModelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final long DAY = 1000L * 60 * 60 * 24;
+
+    @Test
+    public void score() throws IOException {
+        final PTable<Long, Attribute> attributes = MemPipeline.typedTableOf(Avros.tableOf(Avros.longs(), Avros.containers(Attribute.class)), DAY,
+                attribute("1"), DAY, attribute("2"), 2 * DAY, attribute("1"), 3 * DAY, attribute("2"), 3 * DAY, attribute("3"), 4 * DAY,
+                attribute("3"), 5 * DAY, attribute("2"), 5 * DAY, attribute("3"));
+        final PTable<Long, Outcome> outcomes = MemPipeline.typedTableOf(Avros.tableOf(Avros.longs(), Avros.containers(Outcome.class)), DAY,
+                outcome("a"), 2 * DAY, outcome("a"), 3 * DAY, outcome("b"), 4 * DAY, outcome("c"), 5 * DAY, outcome("b"));
+
+        final NaiveBayesModel model = NaiveBayesModel.of(NaiveBayesianClassifier.train(attributes, outcomes));
+        assertEquals(3, model.getOutcomeCount());
+        assertEquals(outcome("a"), model.getOutcome(0));
+        assertEquals(outcome("b"), model.getOutcome(1));
+        assertEquals(outcome("c"), model.getOutcome(2));
+
+        final NaiveBayesModel.Scorer scorer = model.newScorer();
+        // Attribute 4 isn't in the model and the duplicate of 2 is ignored.
+        final double[] scores = scorer.score(Arrays.asList(attribute("2"), attribute("3"), attribute("4"), attribute("2")));
+        // P(a) * P(2|a); 3 was never seen with a.
+        assertEquals(Math.log(0.4 * 0.5), scores[0], 1e-12);
+        // P(b) * P(2|b) * P(3|b)
+        assertEquals(Math.log(0.4 * 1.0 * 1.0), scores[1], 1e-12);
+        // P(c) * P(3|c)
+        assertEquals(Math.log(0.2 * 1.0), scores[2], 1e-12);
+        assertEquals(1, scorer.best());
+
+        // Scoring reuses the same accumulator.
+        final double[] again = scorer.score(Arrays.asList(attribute("1")));
+        assertSame(scores, again);
+        assertEquals(Math.log(0.4 * 1.0), again[0], 1e-12);
+        assertEquals(Double.NEGATIVE_INFINITY, again[1], 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, again[2], 0.0);
+        assertEquals(0, scorer.best());
+
+        final Map<Outcome, Double> predicted = model.predict(Arrays.asList(attribute("1")));
+        assertEquals(1, predicted.size());
+        assertEquals(0.4, predicted.get(outcome("a")), 1e-12);
+
+        // b and c both score P(3|x) = 1.0 but b is more likely.
+        final List<Pair<Outcome, Double>> top = model.topK(Arrays.asList(attribute("3")), 1);
+        assertEquals(1, top.size());
+        assertEquals(outcome("b"), top.get(0).first());
+        assertEquals(0.4, top.get(0).second(), 1e-12);
+        assertEquals(2, model.topK(Arrays.asList(attribute("3")), 5).size());
+        assertTrue(model.topK(Arrays.asList(attribute("3")), 0).isEmpty());
+    }
+
+    @Test
+    public void ofMapReduce() throws IOException {
+        final List<String> attributeLines = new ArrayList<String>();
+        final List<String> outcomeLines = new ArrayList<String>();
+        final List<Pair<Long, Attribute>> attributes = new ArrayList<Pair<Long, Attribute>>();
+        final List<Pair<Long, Outcome>> outcomes = new ArrayList<Pair<Long, Outcome>>();
+        final List<Attribute> observed = new ArrayList<Attribute>();
+        for (int day = 1; day <= 40; ++day) {
+            for (final String value : new String[] { Integer.toString(day), Integer.toString(day % 7) }) {
+                attributeLines.add(day + "\t" + value);
+                attributes.add(Pair.of(day * DAY, attribute(value)));
+            }
+            final String outcome = Integer.toString(day % 3);
+            outcomeLines.add(day + "\t" + outcome);
+            outcomes.add(Pair.of(day * DAY, outcome(outcome)));
+            observed.add(attribute(Integer.toString(day)));
+        }
+
+        final Pipeline pipeline = new MRPipeline(NaiveBayesModelTest.class, new Configuration());
+        final NaiveBayesModel model;
+        try {
+            final PTable<Long, Attribute> attributeTable = pipeline.readTextFile(write("attributes.txt", attributeLines)).parallelDo(
+                    new ParseAttributeFn(), Avros.tableOf(Avros.longs(), Avros.containers(Attribute.class)));
+            final PTable<Long, Outcome> outcomeTable = pipeline.readTextFile(write("outcomes.txt", outcomeLines)).parallelDo(
+                    new ParseOutcomeFn(), Avros.tableOf(Avros.longs(), Avros.containers(Outcome.class)));
+            model = NaiveBayesModel.of(NaiveBayesianClassifier.train(attributeTable, outcomeTable));
+        } finally {
+            pipeline.done();
+        }
+        final NaiveBayesModel expected = NaiveBayesModel.of(NaiveBayesianClassifier.train(
+                MemPipeline.typedTableOf(Avros.tableOf(Avros.longs(), Avros.containers(Attribute.class)), attributes),
+                MemPipeline.typedTableOf(Avros.tableOf(Avros.longs(), Avros.containers(Outcome.class)), outcomes)));
+
+        assertEquals(expected.getOutcomeCount(), model.getOutcomeCount());
+        final double[] expectedScores = expected.newScorer().score(observed).clone();
+        final NaiveBayesModel.Scorer scorer = model.newScorer();
+        assertArrayEquals(expectedScores, scorer.score(observed), 1e-12);
+
+        // Repeated attributes, more of them than the scorer first has room
+        // for, are still only counted once.
+        final List<Attribute> repeated = new ArrayList<Attribute>(observed);
+        repeated.addAll(observed);
+        Collections.reverse(repeated);
+        assertArrayEquals(expectedScores, scorer.score(repeated), 1e-12);
+        assertArrayEquals(expectedScores, scorer.score(new HashSet<Attribute>(repeated)), 1e-12);
+    }
+
+    private String write(final String name, final List<String> lines) throws IOException {
+        final File file = folder.newFile(name);
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            for (final String line : lines) {
+                out.write(line);
+                out.write('\n');
+            }
+        } finally {
+            out.close();
+        }
+        return file.getPath();
+    }
+
+    /**
+     * Parse "day, value" lines into a table keyed by the time of the day.
+     */
+    private abstract static class ParseFn<T> extends MapFn<String, Pair<Long, T>> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Pair<Long, T> map(final String input) {
+            final String[] fields = input.split("\t");
+            return Pair.of(Long.parseLong(fields[0]) * DAY, parse(fields[1]));
+        }
+
+        abstract T parse(String value);
+    }
+
+    private static class ParseAttributeFn extends ParseFn<Attribute> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        Attribute parse(final String value) {
+            return attribute(value);
+        }
+    }
+
+    private static class ParseOutcomeFn extends ParseFn<Outcome> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        Outcome parse(final String value) {
+            return outcome(value);
+        }
+    }
+}
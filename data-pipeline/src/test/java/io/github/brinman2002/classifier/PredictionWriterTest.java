@@ -0,0 +1,72 @@
+/**
+ * Copyright 2013 Brandon Inman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.classifier;
+
+import static io.github.brinman2002.Helper.outcome;
+import static org.junit.Assert.assertEquals;
+import io.github.brinman2002.data.model.Outcome;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.crunch.Pair;
+import org.junit.Test;
+
+public class PredictionWriterTest {
+
+    @Test
+    public void csv() throws IOException {
+        final StringWriter out = new StringWriter();
+        final PredictionWriter writer = PredictionWriter.csv(out, true);
+        final List<Pair<Outcome, Double>> predictions = new ArrayList<Pair<Outcome, Double>>();
+        predictions.add(Pair.of(outcome("a"), 0.5));
+        predictions.add(Pair.of(outcome("b"), 0.25));
+        writer.writeAll(predictions);
+        writer.close();
+        assertEquals(PredictionWriter.CSV_HEADER + "\n" + "test_outcome,VALUE_a,null,0.5\ntest_outcome,VALUE_b,null,0.25\n", out.toString());
+    }
+
+    @Test
+    public void avro() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PredictionWriter writer = PredictionWriter.avro(out);
+        writer.write(outcome("a"), 0.5);
+        writer.write(outcome("b"), 0.25);
+        writer.close();
+
+        final DataFileStream<GenericRecord> in = new DataFileStream<GenericRecord>(new ByteArrayInputStream(out.toByteArray()),
+                new SpecificDatumReader<GenericRecord>(PredictionWriter.AVRO_SCHEMA));
+        try {
+            GenericRecord record = in.next();
+            assertEquals(outcome("a"), record.get("outcome"));
+            assertEquals(0.5, (Double) record.get("probability"), 0.0);
+            record = in.next();
+            assertEquals(outcome("b"), record.get("outcome"));
+            assertEquals(0.25, (Double) record.get("probability"), 0.0);
+            assertEquals(false, in.hasNext());
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2013 Brandon Inman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.classifier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TopKTest {
+
+    @Test
+    public void select() {
+        final TopK topK = new TopK(3);
+        final int[] indices = new int[3];
+        assertEquals(3, topK.select(new double[] { 0.1, 0.5, Double.NEGATIVE_INFINITY, 0.3, 0.9, Double.NaN, 0.2 }, indices));
+        assertArrayEquals(new int[] { 4, 1, 3 }, indices);
+
+        // Fewer finite scores than k.
+        assertEquals(2, topK.select(new double[] { Double.NEGATIVE_INFINITY, -2.0, -1.0 }, indices));
+        assertEquals(2, indices[0]);
+        assertEquals(1, indices[1]);
+    }
+
+    @Test
+    public void ties() {
+        // Equal scores are all candidates, lowest index first.
+        final int[] indices = new int[4];
+        assertEquals(4, new TopK(4).select(new double[] { 0.25, 0.5, 0.25, 0.25, 0.25 }, indices));
+        assertArrayEquals(new int[] { 1, 0, 2, 3 }, indices);
+    }
+
+    @Test
+    public void matchesSort() {
+        final Random random = new Random(20130917L);
+        final TopK topK = new TopK(10);
+        final int[] indices = new int[10];
+        for (int trial = 0; trial < 100; ++trial) {
+            final double[] scores = new double[1 + random.nextInt(200)];
+            for (int i = 0; i < scores.length; ++i) {
+                // Few distinct values, so that there are ties.
+                scores[i] = random.nextInt(20);
+            }
+            final double[] sorted = scores.clone();
+            Arrays.sort(sorted);
+            final int count = topK.select(scores, indices);
+            assertEquals(Math.min(10, scores.length), count);
+            for (int i = 0; i < count; ++i) {
+                assertEquals(sorted[sorted.length - 1 - i], scores[indices[i]], 0.0);
+                if (i > 0 && scores[indices[i]] == scores[indices[i - 1]]) {
+                    assertEquals(true, indices[i] > indices[i - 1]);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void k() {
+        new TopK(0);
+    }
+}
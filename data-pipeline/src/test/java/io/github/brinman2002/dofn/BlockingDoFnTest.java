@@ -45,4 +45,18 @@ public class BlockingDoFnTest {
         assertTrue(collection.contains(Pair.of(ONE_DAY * 3, "Four")));
 
     }
+
+    @Test
+    public void intervalAndOffset() {
+        final long offset = BlockingDoFn.ONE_HOUR * 5;
+        final PTable<Long, String> table = MemPipeline.tableOf(ONE_DAY * 7 + offset, "One", ONE_DAY * 7 + offset - 1, "Two", offset - 1, "Three");
+
+        final Collection<Pair<Long, String>> collection = table
+                .parallelDo(new BlockingDoFn<String>(BlockingDoFn.ONE_WEEK, offset), Writables.pairs(Writables.longs(), Writables.strings()))
+                .asCollection().getValue();
+        assertEquals(3, collection.size());
+        assertTrue(collection.contains(Pair.of(ONE_DAY * 7 + offset, "One")));
+        assertTrue(collection.contains(Pair.of(offset, "Two")));
+        assertTrue(collection.contains(Pair.of(offset - BlockingDoFn.ONE_WEEK, "Three")));
+    }
 }
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.apache.crunch.types.writable.Writables;
+import org.junit.Test;
+
+public class MultiBlockingDoFnTest {
+    private static final long ONE_HOUR = BlockingDoFn.ONE_HOUR;
+    private static final long ONE_DAY = BlockingDoFn.ONE_DAY;
+
+    @Test
+    public void process() {
+        final PTable<Long, String> table = MemPipeline.tableOf(ONE_DAY + ONE_HOUR * 3 + 10, "One", ONE_DAY * 9, "Two");
+
+        final PTable<Pair<Long, Long>, String> blocked = table.parallelDo(new MultiBlockingDoFn<String>(0, ONE_HOUR, ONE_DAY, ONE_DAY * 7),
+                Writables.tableOf(Writables.pairs(Writables.longs(), Writables.longs()), Writables.strings()));
+        assertEquals(6, blocked.asCollection().getValue().size());
+
+        final Collection<Pair<Long, String>> hours = blocked
+                .parallelDo(new SelectGranularityDoFn<String>(ONE_HOUR), Writables.pairs(Writables.longs(), Writables.strings())).asCollection()
+                .getValue();
+        assertEquals(2, hours.size());
+        assertTrue(hours.contains(Pair.of(ONE_DAY + ONE_HOUR * 3, "One")));
+        assertTrue(hours.contains(Pair.of(ONE_DAY * 9, "Two")));
+
+        final Collection<Pair<Long, String>> weeks = blocked
+                .parallelDo(new SelectGranularityDoFn<String>(ONE_DAY * 7), Writables.pairs(Writables.longs(), Writables.strings())).asCollection()
+                .getValue();
+        assertEquals(2, weeks.size());
+        assertTrue(weeks.contains(Pair.of(0L, "One")));
+        assertTrue(weeks.contains(Pair.of(ONE_DAY * 7, "Two")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateIntervals() {
+        new MultiBlockingDoFn<String>(0, ONE_HOUR, ONE_DAY, ONE_HOUR);
+    }
+}
@@ -41,7 +41,7 @@ public class AttributeOutcomeProbabilityCalculatingDoFnTest {
                 testData(outcome("1"), 10, attribute("1"), 5), testData(outcome("1"), 10, attribute("2"), 8),
                 testData(outcome("1"), 10, attribute("3"), 1), testData(outcome("2"), 20, attribute("1"), 10));
 
-        final PTable<Attribute, Pair<Outcome, Double>> pCollection2 = pCollection.parallelDo(new AttributeOutcomeProbabilityCalculatingDoFn(),
+        final PTable<Attribute, Pair<Outcome, Double>> pCollection2 = pCollection.parallelDo(new AttributeOutcomeProbabilityCalculatingDoFn<Outcome, Attribute>(),
                 Avros.tableOf(Avros.containers(Attribute.class), Avros.pairs(Avros.containers(Outcome.class), Avros.doubles())));
 
         final Collection<Pair<Attribute, Pair<Outcome, Double>>> collection = pCollection2.asCollection().getValue();
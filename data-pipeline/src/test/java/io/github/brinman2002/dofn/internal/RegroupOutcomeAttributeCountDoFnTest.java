@@ -44,7 +44,7 @@ public class RegroupOutcomeAttributeCountDoFnTest {
                 testData("3", "1"), testData("1", "1"), testData("1", "1"), testData("1", "1"), testData("1", "1"));
         final PTable<Pair<Outcome, Attribute>, Long> count = inputPCollection.count();
 
-        final PCollection<Pair<Outcome, Pair<Attribute, Long>>> pCollection2 = count.parallelDo(new RegroupOutcomeAttributeCountDoFn(),
+        final PCollection<Pair<Outcome, Pair<Attribute, Long>>> pCollection2 = count.parallelDo(new RegroupOutcomeAttributeCountDoFn<Outcome, Attribute>(),
                 Avros.pairs(Avros.containers(Outcome.class), Avros.pairs(Avros.containers(Attribute.class), Avros.longs())));
         final Collection<Pair<Outcome, Pair<Attribute, Long>>> collection = pCollection2.asCollection().getValue();
 
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2013 Brandon Inman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Test;
+
+public class BatchFnTest {
+
+    @Test
+    public void everyRowInExactlyOneBatch() {
+        final int batches = 10;
+        final int[] sizes = new int[batches];
+        for (int x = 0; x < 1000; ++x) {
+            final Collection<Double> row = Arrays.asList(1.0 + 2.0 * x, (double) x);
+            int kept = 0;
+            for (int batch = 0; batch < batches; ++batch) {
+                if (new BatchFn<Collection<Double>>(7, batch, batches).accept(row)) {
+                    ++kept;
+                    ++sizes[batch];
+                }
+            }
+            assertEquals(1, kept);
+        }
+        for (final int size : sizes) {
+            assertTrue("Batch of " + size + " rows", size > 50 && size < 150);
+        }
+    }
+
+    @Test
+    public void seedChangesBatches() {
+        int moved = 0;
+        for (int x = 0; x < 100; ++x) {
+            if (BatchFn.batchOf(x, 1, 10) != BatchFn.batchOf(x, 2, 10)) {
+                ++moved;
+            }
+        }
+        assertTrue(moved > 50);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchOutOfRange() {
+        new BatchFn<Collection<Double>>(7, 10, 10);
+    }
+}
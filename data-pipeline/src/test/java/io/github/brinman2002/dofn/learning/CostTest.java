@@ -0,0 +1,173 @@
+/**
+ * Copyright 2013 Brandon Inman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.learning;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.crunch.Emitter;
+import org.apache.crunch.PCollection;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.junit.Test;
+
+public class CostTest {
+
+    @Test
+    public void step() {
+        final PCollection<Collection<Double>> dataSet = dataSet();
+        final List<Double> thetas = Arrays.asList(0.5, 1.5);
+
+        final Cost.Step step = Cost.step(dataSet, thetas, 0.1);
+        assertEquals(5, step.getM());
+        assertEquals(Cost.of(dataSet, thetas, 0.1), step.getCost(), 1e-12);
+        final Map<Integer, Double> gradient = Cost.gradient(dataSet, thetas, 0.1);
+        assertEquals(gradient.size(), step.getGradient().size());
+        for (final Map.Entry<Integer, Double> entry : gradient.entrySet()) {
+            assertEquals(entry.getValue(), step.getGradient().get(entry.getKey()), 1e-12);
+        }
+
+        final Cost.Step known = Cost.step(dataSet, thetas, 0.1, 5);
+        assertEquals(step.getCost(), known.getCost(), 1e-12);
+        assertEquals(step.getGradient(), known.getGradient());
+    }
+
+    @Test
+    public void vectors() {
+        final PCollection<Collection<Double>> dataSet = dataSet();
+        final PCollection<DenseVector> vectors = MemPipeline.typedCollectionOf(DenseVector.WRITABLE_TYPE, vectors(dataSet));
+        final List<Double> thetas = Arrays.asList(0.5, 1.5);
+
+        final Cost.Step boxed = Cost.step(dataSet, thetas, 0.1);
+        final Cost.Step step = Cost.step(vectors, DenseVector.of(thetas), 0.1);
+        assertEquals(boxed.getM(), step.getM());
+        assertEquals(boxed.getCost(), step.getCost(), 1e-12);
+        assertEquals(boxed.getGradient(), step.getGradient());
+        assertEquals(Cost.of(dataSet, thetas, 0.1), Cost.of(vectors, DenseVector.of(thetas), 0.1), 1e-12);
+        assertEquals(DenseVector.of(Cost.gradient(dataSet, thetas, 0.1).values()), Cost.gradient(vectors, DenseVector.of(thetas), 0.1));
+
+        assertEquals(DenseVector.of(Cost.gradientDescent(Arrays.asList(0.0, 0.0), dataSet, 0.1, 0.0)),
+                Cost.gradientDescent(DenseVector.of(0.0, 0.0), vectors, 0.1, 0.0));
+    }
+
+    @Test
+    public void sparse() {
+        // Each row has one of features 1, 3 and 5; 2 and 4 never appear.
+        final List<DenseVector> dense = new ArrayList<DenseVector>();
+        final List<SparseVector> sparse = new ArrayList<SparseVector>();
+        for (int x = 0; x < 20; ++x) {
+            final double[] row = new double[6];
+            row[1 + 2 * (x % 3)] = 1.0 + x % 2;
+            row[0] = 1.0 + 2.0 * row[1] - row[3] + 0.5 * row[5];
+            dense.add(DenseVector.of(row));
+            sparse.add(SparseVector.of(row));
+        }
+        final PCollection<DenseVector> denseRows = MemPipeline.typedCollectionOf(DenseVector.WRITABLE_TYPE, dense);
+        final PCollection<SparseVector> sparseRows = MemPipeline.typedCollectionOf(SparseVector.WRITABLE_TYPE, sparse);
+        final DenseVector thetas = DenseVector.of(0.5, 1.5, 0.0, -0.5, 0.25, 0.0);
+
+        final Cost.Step denseStep = Cost.step(denseRows, thetas, 0.1);
+        final Cost.Step sparseStep = Cost.step(sparseRows, thetas, 0.1);
+        assertEquals(denseStep.getM(), sparseStep.getM());
+        assertEquals(denseStep.getCost(), sparseStep.getCost(), 1e-12);
+        assertArrayEquals(denseStep.getGradientVector().getValues(), sparseStep.getGradientVector().getValues(), 1e-12);
+        assertEquals(Cost.of(denseRows, thetas, 0.1), Cost.of(sparseRows, thetas, 0.1), 1e-12);
+
+        final Cost.VectorCostAndGradientDoFn<SparseVector> fn = new Cost.VectorCostAndGradientDoFn<SparseVector>(thetas);
+        final List<SparseVector> partials = new ArrayList<SparseVector>();
+        final Emitter<SparseVector> emitter = new Emitter<SparseVector>() {
+            @Override
+            public void emit(final SparseVector emitted) {
+                partials.add(emitted);
+            }
+
+            @Override
+            public void flush() {
+            }
+        };
+        fn.initialize();
+        for (final SparseVector row : sparse) {
+            fn.process(row, emitter);
+        }
+        fn.cleanup(emitter);
+        assertEquals(1, partials.size());
+        assertEquals(0.0, partials.get(0).get(Cost.GRADIENT_INDEX + 2), 0.0);
+        assertTrue(partials.get(0).getNonZeros() < partials.get(0).size());
+
+        assertEquals(Cost.gradientDescent(DenseVector.of(new double[6]), denseRows, 0.05, 0.0),
+                Cost.gradientDescent(DenseVector.of(new double[6]), sparseRows, 0.05, 0.0));
+    }
+
+    @Test
+    public void gradientDescent() {
+        final List<Double> thetas = Cost.gradientDescent(Arrays.asList(0.0, 0.0), dataSet(), 0.1, 0.0);
+        assertEquals(1.0, thetas.get(0), 0.5);
+        assertEquals(2.0, thetas.get(1), 0.2);
+    }
+
+    @Test
+    public void miniBatchGradientDescent() {
+        final List<Collection<Double>> rows = new ArrayList<Collection<Double>>();
+        for (int x = 0; x < 200; ++x) {
+            rows.add(Arrays.asList(1.0 + 2.0 * (x / 100.0), x / 100.0));
+        }
+        final PCollection<Collection<Double>> dataSet = MemPipeline.typedCollectionOf(Cost.INPUT_TYPE, rows);
+        final DescentOptions options = DescentOptions.defaults().batchSize(20).seed(7).checkpointInterval(10).maximumSteps(5000)
+                .schedule(LearningRateSchedule.inverseScaling(0.001));
+
+        final List<Double> thetas = Cost.miniBatchGradientDescent(Arrays.asList(0.0, 0.0), dataSet, 0.5, 0.0, options);
+        assertTrue(Cost.of(dataSet, thetas, 0.0) <= 0.01);
+        assertEquals(thetas, Cost.miniBatchGradientDescent(Arrays.asList(0.0, 0.0), dataSet, 0.5, 0.0, options));
+
+        // Fewer batches than steps per pass, so each one is sampled down.
+        final List<Double> sampled = Cost.miniBatchGradientDescent(Arrays.asList(0.0, 0.0), dataSet, 0.5, 0.0, options.maximumBatches(3));
+        assertTrue(Cost.of(dataSet, sampled, 0.0) <= 0.01);
+    }
+
+    @Test
+    public void schedules() {
+        assertEquals(0.5, LearningRateSchedule.constant().rate(0.5, 100), 0.0);
+        assertEquals(0.25, LearningRateSchedule.inverseScaling(0.5).rate(0.5, 2), 1e-12);
+        assertEquals(0.125, LearningRateSchedule.exponential(0.5).rate(0.5, 2), 1e-12);
+        assertEquals(0.25, LearningRateSchedule.stepDecay(0.5, 10).rate(0.5, 19), 1e-12);
+    }
+
+    private List<DenseVector> vectors(final PCollection<Collection<Double>> dataSet) {
+        final List<DenseVector> vectors = new ArrayList<DenseVector>();
+        for (final Collection<Double> row : dataSet.materialize()) {
+            vectors.add(DenseVector.of(row));
+        }
+        return vectors;
+    }
+
+    /**
+     * y = 1 + 2x.
+     */
+    private PCollection<Collection<Double>> dataSet() {
+        final List<Collection<Double>> rows = new ArrayList<Collection<Double>>();
+        for (int x = 0; x < 5; ++x) {
+            rows.add(Arrays.asList(1.0 + 2.0 * x, (double) x));
+        }
+        return MemPipeline.typedCollectionOf(Cost.INPUT_TYPE, rows);
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.dofn.learning;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.apache.crunch.MapFn;
+import org.apache.crunch.types.PType;
+import org.junit.Test;
+
+public class DenseVectorTest {
+
+    @Test
+    public void roundTrip() {
+        final DenseVector vector = DenseVector.of(1.5, -2.0, 0.0, Double.MAX_VALUE);
+        assertEquals(vector, roundTrip(DenseVector.WRITABLE_TYPE, vector));
+        assertEquals(vector, roundTrip(DenseVector.AVRO_TYPE, vector));
+        assertEquals(DenseVector.of(), roundTrip(DenseVector.WRITABLE_TYPE, DenseVector.of()));
+    }
+
+    @Test
+    public void boxed() {
+        assertEquals(DenseVector.of(1.0, 2.0), DenseVector.of(Arrays.asList(1.0, 2.0)));
+        assertEquals(Arrays.asList(1.0, 2.0), DenseVector.of(1.0, 2.0).toList());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private DenseVector roundTrip(final PType<DenseVector> type, final DenseVector vector) {
+        final MapFn out = type.getOutputMapFn();
+        final MapFn in = type.getInputMapFn();
+        out.initialize();
+        in.initialize();
+        return (DenseVector) in.map(out.map(vector));
+    }
+}
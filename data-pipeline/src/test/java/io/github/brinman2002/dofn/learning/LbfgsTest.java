@@ -0,0 +1,147 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.crunch.PCollection;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.junit.Test;
+
+public class LbfgsTest {
+
+    @Test
+    public void pipeline() {
+        final List<Collection<Double>> rows = new ArrayList<Collection<Double>>();
+        for (int x = 0; x < 5; ++x) {
+            rows.add(Arrays.asList(1.0 + 2.0 * x, (double) x));
+        }
+        final PCollection<Collection<Double>> dataSet = MemPipeline.typedCollectionOf(Cost.INPUT_TYPE, rows);
+
+        final List<Double> thetas = Cost.lbfgs(Arrays.asList(0.0, 0.0), dataSet, 0.0, LbfgsOptions.defaults());
+        assertEquals(1.0, thetas.get(0), 1e-4);
+        assertEquals(2.0, thetas.get(1), 1e-4);
+    }
+
+    /**
+     * The features differ in scale by a factor of a thousand, which forces
+     * gradient descent to take tiny steps.
+     */
+    @Test
+    public void badlyScaled() {
+        final List<DenseVector> rows = new ArrayList<DenseVector>();
+        for (int i = 0; i < 200; ++i) {
+            final double a = (i % 10) / 10.0;
+            final double b = (i % 7) * 150.0;
+            rows.add(DenseVector.of(1.0 + 2.0 * a - 0.003 * b, a, b));
+        }
+        final LocalCost local = new LocalCost(rows, 2);
+        try {
+            final int[] passes = new int[1];
+            final double[] thetas = Lbfgs.minimize(new double[3], new CountingObjective(local, passes), LbfgsOptions.defaults());
+            assertEquals(1.0, thetas[0], 1e-4);
+            assertEquals(2.0, thetas[1], 1e-4);
+            assertEquals(-0.003, thetas[2], 1e-6);
+            assertTrue("Passes: " + passes[0], passes[0] < 100);
+
+            assertEquals(DenseVector.of(thetas), local.lbfgs(DenseVector.of(0.0, 0.0, 0.0), 0.0, LbfgsOptions.defaults()));
+        } finally {
+            local.shutdown();
+        }
+    }
+
+    @Test
+    public void maximumIterations() {
+        final List<DenseVector> rows = Arrays.asList(DenseVector.of(1.0, 0.0), DenseVector.of(3.0, 1.0), DenseVector.of(5.0, 2.0));
+        final LocalCost local = new LocalCost(rows, 1);
+        try {
+            final DenseVector one = local.lbfgs(DenseVector.of(0.0, 0.0), 0.0, LbfgsOptions.defaults().maximumIterations(1));
+            final DenseVector converged = local.lbfgs(DenseVector.of(0.0, 0.0), 0.0, LbfgsOptions.defaults());
+            assertTrue(local.of(one, 0.0) > local.of(converged, 0.0));
+            assertTrue(local.of(one, 0.0) < local.of(DenseVector.of(0.0, 0.0), 0.0));
+        } finally {
+            local.shutdown();
+        }
+    }
+
+    @Test
+    public void regularized() {
+        final List<DenseVector> rows = Arrays.asList(DenseVector.of(1.0, 0.0), DenseVector.of(3.0, 1.0), DenseVector.of(5.0, 2.0));
+        final LocalCost local = new LocalCost(rows, 1);
+        try {
+            // At the minimum of the regularized cost, the regularized gradient
+            // vanishes.
+            final DenseVector thetas = local.lbfgs(DenseVector.of(0.0, 0.0), 1.0, LbfgsOptions.defaults());
+            final double[] gradient = local.gradient(thetas, 1.0).getValues();
+            assertEquals(0.0, gradient[0], 1e-5);
+            assertEquals(0.0, gradient[1], 1e-5);
+            assertTrue(thetas.get(1) < 2.0);
+        } finally {
+            local.shutdown();
+        }
+    }
+
+    private static class CountingObjective extends Cost.Objective {
+        private final Cost.Objective objective;
+        private final int[] passes;
+
+        CountingObjective(final LocalCost local, final int[] passes) {
+            this.objective = local.objective(0.0);
+            this.passes = passes;
+        }
+
+        @Override
+        long length() {
+            return objective.length();
+        }
+
+        @Override
+        Cost.Step step(final double[] thetas) {
+            ++passes[0];
+            return objective.step(thetas);
+        }
+
+        @Override
+        Cost.Step step(final double[] thetas, final long m) {
+            ++passes[0];
+            return objective.step(thetas, m);
+        }
+
+        @Override
+        double cost(final double[] thetas, final long m) {
+            ++passes[0];
+            return objective.cost(thetas, m);
+        }
+
+        @Override
+        Cost.Objective sample(final long seed, final double fraction) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        List<Cost.Objective> batches(final long seed, final int count) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
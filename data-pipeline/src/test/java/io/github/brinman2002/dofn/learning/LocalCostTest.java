@@ -0,0 +1,103 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.crunch.PCollection;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.junit.Test;
+
+public class LocalCostTest {
+
+    @Test
+    public void matchesPipeline() {
+        final PCollection<DenseVector> dataSet = dataSet(101);
+        final LocalCost local = LocalCost.of(dataSet, 3);
+        try {
+            final DenseVector thetas = DenseVector.of(0.5, 1.5, -1.0);
+            assertEquals(101, local.length());
+
+            final Cost.Step expected = Cost.step(dataSet, thetas, 0.1);
+            final Cost.Step step = local.step(thetas, 0.1);
+            assertEquals(expected.getM(), step.getM());
+            assertEquals(expected.getCost(), step.getCost(), 1e-9);
+            assertArrayEquals(expected.getGradientVector().getValues(), step.getGradientVector().getValues(), 1e-9);
+            assertArrayEquals(expected.getGradientVector().getValues(), local.gradient(thetas, 0.1).getValues(), 1e-9);
+            assertEquals(Cost.of(dataSet, thetas, 0.1), local.of(thetas, 0.1), 1e-9);
+            assertEquals(Cost.of(dataSet, thetas, null), local.of(thetas, null), 1e-9);
+
+            final DenseVector descended = local.gradientDescent(DenseVector.of(0.0, 0.0, 0.0), 0.1, 0.0);
+            assertArrayEquals(Cost.gradientDescent(DenseVector.of(0.0, 0.0, 0.0), dataSet, 0.1, 0.0).getValues(), descended.getValues(), 1e-6);
+        } finally {
+            local.shutdown();
+        }
+    }
+
+    @Test
+    public void miniBatchGradientDescent() {
+        final LocalCost local = LocalCost.of(dataSet(400), 4);
+        try {
+            final DescentOptions options = DescentOptions.defaults().batchSize(40).seed(7).checkpointInterval(10).maximumSteps(5000)
+                    .schedule(LearningRateSchedule.inverseScaling(0.001));
+            final DenseVector thetas = local.miniBatchGradientDescent(DenseVector.of(0.0, 0.0, 0.0), 0.5, 0.0, options);
+            assertTrue(local.of(thetas, 0.0) <= 0.01);
+            assertEquals(thetas, local.miniBatchGradientDescent(DenseVector.of(0.0, 0.0, 0.0), 0.5, 0.0, options));
+        } finally {
+            local.shutdown();
+        }
+    }
+
+    @Test
+    public void moreThreadsThanRows() {
+        final LocalCost local = LocalCost.of(dataSet(2), 8);
+        try {
+            assertEquals(2, local.step(DenseVector.of(0.0, 0.0, 0.0), null).getM());
+        } finally {
+            local.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongWidth() {
+        final LocalCost local = LocalCost.of(dataSet(10), 2);
+        try {
+            local.step(DenseVector.of(0.0, 0.0), null);
+        } finally {
+            local.shutdown();
+        }
+    }
+
+    /**
+     * y = 1 + 2a - b.
+     */
+    private PCollection<DenseVector> dataSet(final int size) {
+        final List<DenseVector> rows = new ArrayList<DenseVector>();
+        for (int i = 0; i < size; ++i) {
+            final double a = (i % 10) / 10.0;
+            final double b = (i % 7) / 7.0;
+            rows.add(DenseVector.of(1.0 + 2.0 * a - b, a, b));
+        }
+        return MemPipeline.typedCollectionOf(DenseVector.WRITABLE_TYPE, rows);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.crunch.PCollection;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.junit.Test;
+
+public class LogisticCostTest {
+
+    @Test
+    public void logLoss() {
+        for (final double z : new double[] { -5.0, -0.5, 0.0, 0.5, 5.0 }) {
+            final double h = Sigmoid.calculate(z);
+            assertEquals(-Math.log(1 - h), LogisticCost.logLoss(z, 0.0), 1e-12);
+            assertEquals(-Math.log(h), LogisticCost.logLoss(z, 1.0), 1e-12);
+        }
+        // Where h rounds to one, the loss is still finite.
+        assertEquals(1000.0, LogisticCost.logLoss(1000.0, 0.0), 1e-12);
+        assertEquals(0.0, LogisticCost.logLoss(1000.0, 1.0), 1e-12);
+        assertEquals(1000.0, LogisticCost.logLoss(-1000.0, 1.0), 1e-12);
+    }
+
+    @Test
+    public void gradientMatchesCost() {
+        final PCollection<DenseVector> dataSet = dataSet();
+        final double[] thetas = { 0.3, -0.7 };
+        final Cost.Step step = LogisticCost.step(dataSet, DenseVector.of(thetas), 0.5);
+        assertEquals(LogisticCost.of(dataSet, DenseVector.of(thetas), 0.5), step.getCost(), 1e-12);
+        for (int j = 0; j < thetas.length; ++j) {
+            final double[] up = thetas.clone();
+            final double[] down = thetas.clone();
+            up[j] += 1e-6;
+            down[j] -= 1e-6;
+            final double numeric = (LogisticCost.of(dataSet, DenseVector.of(up), 0.5) - LogisticCost.of(dataSet, DenseVector.of(down), 0.5))
+                    / 2e-6;
+            assertEquals(numeric, step.getGradientVector().get(j), 1e-6);
+        }
+    }
+
+    @Test
+    public void fit() {
+        final PCollection<DenseVector> dataSet = dataSet();
+        final DenseVector thetas = LogisticCost.lbfgs(DenseVector.of(0.0, 0.0), dataSet, 0.0, LbfgsOptions.defaults());
+        assertEquals(-1.0, thetas.get(0), 0.1);
+        assertEquals(2.0, thetas.get(1), 0.1);
+
+        final DescentOptions options = DescentOptions.defaults().maximumSteps(500).checkpointInterval(100).targetCost(0.0);
+        final DenseVector descended = LogisticCost.miniBatchGradientDescent(DenseVector.of(0.0, 0.0), dataSet, 2.0, 0.0, options);
+        assertTrue(LogisticCost.of(dataSet, descended, 0.0) < LogisticCost.of(dataSet, DenseVector.of(0.0, 0.0), 0.0));
+
+        final Map<DenseVector, Double> scores = LogisticCost.score(
+                MemPipeline.typedCollectionOf(DenseVector.WRITABLE_TYPE, DenseVector.of(0.0, 0.0), DenseVector.of(0.0, 1.0)), thetas)
+                .materializeToMap();
+        assertEquals(Sigmoid.calculate(thetas.get(0)), scores.get(DenseVector.of(0.0, 0.0)), 1e-12);
+        assertEquals(Sigmoid.calculate(thetas.get(0) + thetas.get(1)), scores.get(DenseVector.of(0.0, 1.0)), 1e-12);
+
+        final Map<DenseVector, Double> approximate = LogisticCost.score(
+                MemPipeline.typedCollectionOf(DenseVector.WRITABLE_TYPE, DenseVector.of(0.0, 1.0)), thetas, true).materializeToMap();
+        assertEquals(scores.get(DenseVector.of(0.0, 1.0)), approximate.get(DenseVector.of(0.0, 1.0)), Sigmoid.APPROXIMATION_ERROR);
+    }
+
+    /**
+     * Outcomes of one in proportion to the sigmoid of -1 + 2a.
+     */
+    private PCollection<DenseVector> dataSet() {
+        final List<DenseVector> rows = new ArrayList<DenseVector>();
+        for (int i = 0; i < 10; ++i) {
+            final double a = i / 9.0;
+            final long ones = Math.round(100 * Sigmoid.calculate(-1.0 + 2.0 * a));
+            for (int j = 0; j < 100; ++j) {
+                rows.add(DenseVector.of(j < ones ? 1.0 : 0.0, a));
+            }
+        }
+        return MemPipeline.typedCollectionOf(DenseVector.WRITABLE_TYPE, rows);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.crunch.PCollection;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.junit.Test;
+
+public class NormalEquationsTest {
+
+    @Test
+    public void solve() {
+        final double[] thetas = NormalEquations.solve(dense(rows()), 0.0).getValues();
+        assertArrayEquals(new double[] { 1.0, 2.0, 0.0, -1.0 }, thetas, 1e-9);
+        assertArrayEquals(thetas, NormalEquations.solve(sparse(rows()), 0.0).getValues(), 1e-9);
+    }
+
+    @Test
+    public void regularized() {
+        final List<double[]> rows = rows();
+        final DenseVector thetas = NormalEquations.solve(dense(rows), 2.0);
+        assertArrayEquals(thetas.getValues(), NormalEquations.solve(sparse(rows), 2.0).getValues(), 1e-9);
+
+        // The solution is the minimum of the regularized cost, where its
+        // gradient vanishes.
+        final DenseVector gradient = Cost.gradient(dense(rows), thetas, 2.0);
+        for (final double term : gradient.getValues()) {
+            assertEquals(0.0, term, 1e-9);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void singular() {
+        // Feature 2 is twice feature 1, so without regularization the
+        // thetas could trade one for the other.
+        final List<DenseVector> rows = new ArrayList<DenseVector>();
+        for (int i = 0; i < 10; ++i) {
+            rows.add(DenseVector.of(i, i, 2.0 * i));
+        }
+        NormalEquations.solve(MemPipeline.typedCollectionOf(DenseVector.WRITABLE_TYPE, rows), 0.0);
+    }
+
+    @Test
+    public void cholesky() {
+        final double[][] a = { { 4.0, 2.0 }, { 2.0, 3.0 } };
+        assertArrayEquals(new double[] { 0.5, 1.0 }, NormalEquations.cholesky(a, new double[] { 4.0, 4.0 }), 1e-12);
+    }
+
+    /**
+     * y = 1 + 2a - c, where feature b is mostly zero.
+     */
+    private List<double[]> rows() {
+        final List<double[]> rows = new ArrayList<double[]>();
+        for (int i = 0; i < 50; ++i) {
+            final double a = (i % 10) / 10.0;
+            final double b = i % 5 == 0 ? (i % 3) : 0.0;
+            final double c = (i % 7) / 7.0;
+            rows.add(new double[] { 1.0 + 2.0 * a - c, a, b, c });
+        }
+        return rows;
+    }
+
+    private PCollection<DenseVector> dense(final List<double[]> rows) {
+        final List<DenseVector> vectors = new ArrayList<DenseVector>();
+        for (final double[] row : rows) {
+            vectors.add(DenseVector.of(row));
+        }
+        return MemPipeline.typedCollectionOf(DenseVector.WRITABLE_TYPE, vectors);
+    }
+
+    private PCollection<SparseVector> sparse(final List<double[]> rows) {
+        final List<SparseVector> vectors = new ArrayList<SparseVector>();
+        for (final double[] row : rows) {
+            vectors.add(SparseVector.of(row));
+        }
+        return MemPipeline.typedCollectionOf(SparseVector.WRITABLE_TYPE, vectors);
+    }
+}
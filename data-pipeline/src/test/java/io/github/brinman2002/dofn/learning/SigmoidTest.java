@@ -0,0 +1,56 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SigmoidTest {
+
+    @Test
+    public void batch() {
+        final double[] values = { -3.0, 0.0, 0.25, 40.0 };
+        final double[] expected = new double[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            expected[i] = Sigmoid.calculate(values[i]);
+        }
+        Sigmoid.calculate(values);
+        for (int i = 0; i < values.length; ++i) {
+            assertEquals(expected[i], values[i], 0.0);
+        }
+    }
+
+    @Test
+    public void approximationError() {
+        double worst = 0.0;
+        for (double x = -40.0; x <= 40.0; x += 1.0 / 4096) {
+            worst = Math.max(worst, Math.abs(Sigmoid.approximate(x) - Sigmoid.calculate(x)));
+        }
+        assertTrue("Worst error: " + worst, worst <= Sigmoid.APPROXIMATION_ERROR);
+
+        final double[] values = { -1.3, 0.7, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY };
+        Sigmoid.approximate(values);
+        assertEquals(Sigmoid.calculate(-1.3), values[0], Sigmoid.APPROXIMATION_ERROR);
+        assertEquals(Sigmoid.calculate(0.7), values[1], Sigmoid.APPROXIMATION_ERROR);
+        assertEquals(0.0, values[2], 0.0);
+        assertEquals(1.0, values[3], 0.0);
+        assertTrue(Double.isNaN(Sigmoid.approximate(Double.NaN)));
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.github.brinman2002.dofn.learning;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.apache.crunch.MapFn;
+import org.apache.crunch.types.PType;
+import org.junit.Test;
+
+public class SparseVectorTest {
+
+    @Test
+    public void roundTrip() {
+        final SparseVector vector = SparseVector.of(0.0, 1.5, 0.0, 0.0, -2.0, Double.MAX_VALUE, 0.0);
+        assertEquals(7, vector.size());
+        assertEquals(3, vector.getNonZeros());
+        assertEquals(vector, roundTrip(SparseVector.WRITABLE_TYPE, vector));
+        assertEquals(vector, roundTrip(SparseVector.AVRO_TYPE, vector));
+        assertEquals(SparseVector.of(0.0, 0.0), roundTrip(SparseVector.WRITABLE_TYPE, SparseVector.of(0.0, 0.0)));
+    }
+
+    @Test
+    public void matchesDense() {
+        final double[] values = { 3.0, 0.0, 2.0, 0.0, 0.0, -1.0 };
+        final double[] weights = { 0.5, 7.0, 1.0, 7.0, 7.0, 2.0 };
+        final SparseVector sparse = SparseVector.of(values);
+        final DenseVector dense = DenseVector.of(values);
+
+        assertEquals(dense, sparse.toDense());
+        assertEquals(dense.get(2), sparse.get(2), 0.0);
+        assertEquals(dense.get(3), sparse.get(3), 0.0);
+        assertEquals(dense.dot(weights, 0), sparse.dot(weights, 0), 0.0);
+        assertEquals(dense.dot(weights, 1), sparse.dot(weights, 1), 0.0);
+        assertEquals(2, sparse.next(1));
+        assertEquals(5, sparse.next(3));
+        assertEquals(6, sparse.next(6));
+        assertEquals(3, dense.next(3));
+
+        final double[] denseSums = new double[8];
+        final double[] sparseSums = new double[8];
+        dense.addTo(denseSums, 2, 0.5, 1);
+        sparse.addTo(sparseSums, 2, 0.5, 1);
+        assertArrayEquals(denseSums, sparseSums, 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfOrder() {
+        new SparseVector(4, new int[] { 2, 1 }, new double[] { 1.0, 1.0 });
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private SparseVector roundTrip(final PType<SparseVector> type, final SparseVector vector) {
+        final MapFn out = type.getOutputMapFn();
+        final MapFn in = type.getInputMapFn();
+        out.initialize();
+        in.initialize();
+        return (SparseVector) in.map(out.map(vector));
+    }
+}
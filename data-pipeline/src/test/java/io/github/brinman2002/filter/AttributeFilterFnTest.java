@@ -0,0 +1,152 @@
+/**
+ * Copyright 2013 Brandon Inman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.filter;
+
+import static io.github.brinman2002.Helper.attribute;
+import static io.github.brinman2002.Helper.outcome;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.AttributeNamespace;
+import io.github.brinman2002.data.model.Outcome;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.avro.util.Utf8;
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.apache.crunch.types.avro.Avros;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AttributeFilterFnTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void filter() {
+        assertEquals(new HashSet<Attribute>(Arrays.asList(attribute("1"), attribute("3"))),
+                filtered(AttributeFilterFn.by(Arrays.asList(attribute("1"), attribute("3"), attribute("9")))));
+        assertEquals(new HashSet<Attribute>(Arrays.asList(attribute("1"), attribute("3"))),
+                filtered(AttributeFilterFn.by(Arrays.asList(attribute("1"), attribute("3"), attribute("9"))).withBloomFilter(0.01)));
+    }
+
+    @Test
+    public void sideFile() throws IOException {
+        final File file = new File(folder.getRoot(), "attributes.avro");
+        AttributeFilterFn.writeSideFile(Arrays.asList(attribute("2"), attribute("4")), file.getPath(), new Configuration());
+        assertEquals(new HashSet<Attribute>(Arrays.asList(attribute("2"), attribute("4"))),
+                filtered(AttributeFilterFn.fromSideFile(file.getPath())));
+        // A directory of part files, as a pipeline would write.
+        assertEquals(new HashSet<Attribute>(Arrays.asList(attribute("2"), attribute("4"))),
+                filtered(AttributeFilterFn.fromSideFile(folder.getRoot().getPath())));
+    }
+
+    @Test
+    public void serializable() throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(AttributeFilterFn.by(Arrays.asList(attribute("1"), attribute("3"))));
+        out.close();
+        final AttributeFilterFn fn = (AttributeFilterFn) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(new HashSet<Attribute>(Arrays.asList(attribute("1"), attribute("3"))), filtered(fn));
+    }
+
+    @Test
+    public void set() {
+        final List<Attribute> attributes = new ArrayList<Attribute>();
+        for (int i = 0; i < 10000; i += 2) {
+            attributes.add(attribute(Integer.toString(i)));
+        }
+        // Duplicates are dropped.
+        attributes.add(attribute("0"));
+        for (final double falsePositiveRate : new double[] { 0, 0.01 }) {
+            final AttributeSet set = new AttributeSet(attributes, falsePositiveRate);
+            assertEquals(5000, set.size());
+            assertEquals(falsePositiveRate > 0, set.hasBloomFilter());
+            for (int i = 0; i < 10000; ++i) {
+                assertEquals(i % 2 == 0, set.contains(attribute(Integer.toString(i))));
+            }
+            // The namespace is part of the attribute.
+            assertFalse(set.contains(Attribute.newBuilder().setNamespace(AttributeNamespace.KEYWORD_AND_AUTHOR).setValue("VALUE0").build()));
+            // Values decoded by Avro are Utf8 rather than String.
+            final Attribute decoded = attribute("2");
+            decoded.setValue(new Utf8(decoded.getValue().toString()));
+            assertTrue(set.contains(decoded));
+            // A reused Utf8 may have a buffer longer than its value.
+            decoded.setValue(new Utf8("VALUE40000").setByteLength("VALUE4".length()));
+            assertTrue(set.contains(decoded));
+        }
+        assertFalse(new AttributeSet(new ArrayList<Attribute>(), 0.01).contains(attribute("1")));
+    }
+
+    @Test
+    public void fingerprint() {
+        final Attribute string = Attribute.newBuilder().setNamespace(AttributeNamespace.KEYWORD_AND_AUTHOR).setValue("caf\u00e9 \u20ac").build();
+        final Attribute decoded = Attribute.newBuilder(string).setValue(new Utf8("caf\u00e9 \u20ac")).build();
+        assertEquals(AttributeSet.fingerprint(string), AttributeSet.fingerprint(decoded));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyAttributes() {
+        new AttributeSet(new AbstractCollection<Attribute>() {
+            @Override
+            public Iterator<Attribute> iterator() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int size() {
+                return AttributeSet.MAXIMUM_SIZE + 1;
+            }
+        }, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void falsePositiveRate() {
+        AttributeFilterFn.by(Arrays.asList(attribute("1"))).withBloomFilter(1.0);
+    }
+
+    private static Collection<Attribute> filtered(final AttributeFilterFn fn) {
+        final PTable<Attribute, Pair<Outcome, Double>> probabilities = MemPipeline.typedTableOf(
+                Avros.tableOf(Avros.containers(Attribute.class), Avros.pairs(Avros.containers(Outcome.class), Avros.doubles())),
+                attribute("1"), Pair.of(outcome("a"), 0.5), attribute("2"), Pair.of(outcome("a"), 0.5), attribute("3"),
+                Pair.of(outcome("b"), 0.5), attribute("4"), Pair.of(outcome("b"), 0.5));
+        final Collection<Attribute> kept = new HashSet<Attribute>();
+        for (final Pair<Attribute, Pair<Outcome, Double>> probability : probabilities.filter(fn).materialize()) {
+            kept.add(probability.first());
+        }
+        return kept;
+    }
+}
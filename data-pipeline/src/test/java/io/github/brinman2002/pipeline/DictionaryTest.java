@@ -0,0 +1,104 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.pipeline;
+
+import static io.github.brinman2002.Helper.attribute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.github.brinman2002.data.model.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.apache.crunch.types.avro.Avros;
+import org.junit.Test;
+
+/**
+ * Test of {@link Dictionary}.
+ * 
+ * @author brandon
+ * 
+ */
+public class DictionaryTest {
+
+    @Test
+    public void roundTrip() {
+        final PTable<Long, Attribute> table = table();
+        roundTrip(table, Dictionary.of(table.values()));
+    }
+
+    @Test
+    public void roundTripBroadcast() {
+        final PTable<Long, Attribute> table = table();
+        final Dictionary<Attribute> dictionary = Dictionary.of(table.values()).broadcast();
+        assertTrue(dictionary.isBroadcast());
+        roundTrip(table, dictionary);
+    }
+
+    @Test
+    public void partitions() {
+        final List<Pair<Long, Attribute>> rows = new ArrayList<Pair<Long, Attribute>>();
+        for (long i = 0; i < 100; ++i) {
+            rows.add(Pair.of(i, attribute(Long.toString(i % 50))));
+        }
+        final PTable<Long, Attribute> table = MemPipeline.typedTableOf(Avros.tableOf(Avros.longs(), Avros.containers(Attribute.class)), rows);
+
+        // Every partition numbers its own values; the ids are still dense,
+        // with more partitions than values too.
+        for (final int partitions : new int[] { 1, 4, 64 }) {
+            final Map<Attribute, Integer> ids = Dictionary.of(table.values(), partitions).getIds().materializeToMap();
+            assertEquals(50, ids.size());
+            final Set<Integer> dense = new HashSet<Integer>(ids.values());
+            assertEquals(50, dense.size());
+            for (int i = 0; i < 50; ++i) {
+                assertTrue(dense.contains(i));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noPartitions() {
+        Dictionary.of(table().values(), 0);
+    }
+
+    private static PTable<Long, Attribute> table() {
+        return MemPipeline.typedTableOf(Avros.tableOf(Avros.longs(), Avros.containers(Attribute.class)), 1L, attribute("1"), 2L,
+                attribute("2"), 3L, attribute("1"), 4L, attribute("3"));
+    }
+
+    private static void roundTrip(final PTable<Long, Attribute> table, final Dictionary<Attribute> dictionary) {
+        final Map<Attribute, Integer> ids = dictionary.getIds().materializeToMap();
+        assertEquals(3, ids.size());
+        assertEquals(3, new HashSet<Integer>(ids.values()).size());
+
+        final Map<Long, Integer> encoded = dictionary.encodeValues(table).materializeToMap();
+        assertEquals(ids.get(attribute("1")), encoded.get(1L));
+        assertEquals(ids.get(attribute("1")), encoded.get(3L));
+        assertEquals(ids.get(attribute("3")), encoded.get(4L));
+
+        final PTable<Integer, Long> byId = MemPipeline.typedTableOf(Avros.tableOf(Avros.ints(), Avros.longs()), ids.get(attribute("2")), 5L);
+        final List<Pair<Attribute, Long>> decoded = new ArrayList<Pair<Attribute, Long>>();
+        decoded.add(Pair.of(attribute("2"), 5L));
+        assertEquals(decoded, dictionary.decodeKeys(byId).asCollection().getValue());
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.pipeline;
+
+import static io.github.brinman2002.Helper.attribute;
+import static io.github.brinman2002.Helper.outcome;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.apache.crunch.types.avro.Avros;
+import org.junit.Test;
+
+/**
+ * Test of {@link HotKeys}.
+ * 
+ * @author brandon
+ * 
+ */
+public class HotKeysTest {
+
+    private static final TrainingOptions OPTIONS = TrainingOptions.defaults().hotKeyShards(3).hotKeySampleRate(1.0).hotKeyFraction(0.5);
+
+    @Test
+    public void splitAndReplicate() {
+        final List<Pair<Long, Attribute>> attributeRows = new ArrayList<Pair<Long, Attribute>>();
+        for (int i = 0; i < 30; ++i) {
+            attributeRows.add(Pair.of(1L, attribute(String.valueOf(i % 10))));
+        }
+        attributeRows.add(Pair.of(2L, attribute("1")));
+        attributeRows.add(Pair.of(3L, attribute("2")));
+        final PTable<Long, Attribute> attributes = MemPipeline.typedTableOf(Avros.tableOf(Avros.longs(), Avros.containers(Attribute.class)),
+                attributeRows);
+        final PTable<Long, Outcome> outcomes = MemPipeline.typedTableOf(Avros.tableOf(Avros.longs(), Avros.containers(Outcome.class)), 1L,
+                outcome("a"), 2L, outcome("b"));
+
+        final HotKeys hotKeys = HotKeys.sample(attributes, OPTIONS);
+        assertEquals(new HashSet<Long>(Arrays.asList(1L)), hotKeys.getKeys());
+
+        // Every occurrence of an attribute lands on the same shard.
+        final Map<Attribute, Pair<Long, Integer>> shardOfAttribute = new HashMap<Attribute, Pair<Long, Integer>>();
+        final Collection<Pair<Pair<Long, Integer>, Attribute>> split = hotKeys.split(attributes).asCollection().getValue();
+        assertEquals(attributeRows.size(), split.size());
+        for (final Pair<Pair<Long, Integer>, Attribute> pair : split) {
+            if (pair.first().first() == 1L) {
+                final Pair<Long, Integer> previous = shardOfAttribute.put(pair.second(), pair.first());
+                assertTrue(previous == null || previous.equals(pair.first()));
+                assertTrue(pair.first().second() >= 0 && pair.first().second() < 3);
+            } else {
+                assertEquals(Integer.valueOf(0), pair.first().second());
+            }
+        }
+
+        final Collection<Pair<Pair<Long, Integer>, Outcome>> replicated = hotKeys.replicate(outcomes).asCollection().getValue();
+        assertEquals(4, replicated.size());
+        assertTrue(replicated.contains(Pair.of(Pair.of(1L, 0), outcome("a"))));
+        assertTrue(replicated.contains(Pair.of(Pair.of(1L, 1), outcome("a"))));
+        assertTrue(replicated.contains(Pair.of(Pair.of(1L, 2), outcome("a"))));
+        assertTrue(replicated.contains(Pair.of(Pair.of(2L, 0), outcome("b"))));
+    }
+}
@@ -18,15 +18,22 @@ package io.github.brinman2002.pipeline;
 import static io.github.brinman2002.Helper.attribute;
 import static io.github.brinman2002.Helper.outcome;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import io.github.brinman2002.classifier.NaiveBayesModel;
+import io.github.brinman2002.classifier.PredictionWriter;
 import io.github.brinman2002.data.model.Attribute;
 import io.github.brinman2002.data.model.Outcome;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.crunch.PTable;
@@ -52,6 +59,7 @@ public class NaiveBayesianClassifierTest {
     public void train() {
         final PTable<Long, Attribute> attributes = MemPipeline.typedTableOf(TABLE_OF_ATTRIBUTES, attributes());
         final PTable<Long, Outcome> outcomes = MemPipeline.typedTableOf(TABLE_OF_OUTCOMES, outcomes());
+        MemPipeline.clearCounters();
 
         final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trained = NaiveBayesianClassifier.train(attributes, outcomes);
         System.out.println(trained.first());
@@ -65,6 +73,117 @@ public class NaiveBayesianClassifierTest {
         assertTrue(outcomeProbabilities.contains(Pair.of(outcome("b"), Double.valueOf(0.25))));
         assertTrue(outcomeProbabilities.contains(Pair.of(outcome("c"), Double.valueOf(0.125))));
         assertTrue(outcomeProbabilities.contains(Pair.of(outcome("d"), Double.valueOf(0.125))));
+
+        trained.first().asCollection().getValue();
+        final StageSummary summary = StageSummary.of(MemPipeline.getCounters());
+        assertEquals(4, summary.getDistinctOutcomes());
+        assertEquals(4, summary.getStage("ProbabilityCalculatingDoFn").getInputRecords());
+        assertEquals(4, summary.getStage("ProbabilityCalculatingDoFn").getOutputRecords());
+        // Every pair is kept with the default minimum count.
+        final StageSummary.Stage regroup = summary.getStage("RegroupOutcomeAttributeCountDoFn");
+        assertEquals(9, regroup.getInputRecords());
+        assertEquals(9, regroup.getOutputRecords());
+        assertEquals(9, summary.getStage("AttributeOutcomeProbabilityCalculatingDoFn").getOutputRecords());
+    }
+
+    @Test
+    public void trainFused() {
+        final PTable<Long, Attribute> attributes = MemPipeline.typedTableOf(TABLE_OF_ATTRIBUTES, attributes());
+        final PTable<Long, Outcome> outcomes = MemPipeline.typedTableOf(TABLE_OF_OUTCOMES, outcomes());
+
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> expected = NaiveBayesianClassifier.train(attributes, outcomes);
+        MemPipeline.clearCounters();
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> fused = NaiveBayesianClassifier.trainFused(attributes, outcomes);
+        fused.first().asCollection().getValue();
+        final StageSummary summary = StageSummary.of(MemPipeline.getCounters());
+        assertEquals(4, summary.getDistinctOutcomes());
+        assertEquals(4, summary.getStage("NormalizingProbabilityDoFn").getOutputRecords());
+        // One pair for each event an attribute was seen in, before the 9
+        // distinct pairs are counted.
+        assertEquals(12, summary.getStage("BlockOutcomeAttributeDoFn").getOutputRecords());
+
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> reduceSideJoin = NaiveBayesianClassifier.trainFused(
+                attributes, outcomes, TrainingOptions.defaults().broadcastOutcomes(false));
+
+        assertEquals(new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(expected.first().asCollection().getValue()),
+                new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(fused.first().asCollection().getValue()));
+        assertEquals(new HashSet<Pair<Outcome, Double>>(expected.second().asCollection().getValue()), new HashSet<Pair<Outcome, Double>>(fused
+                .second().asCollection().getValue()));
+        assertEquals(new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(expected.first().asCollection().getValue()),
+                new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(reduceSideJoin.first().asCollection().getValue()));
+    }
+
+    @Test
+    public void trainEncoded() {
+        final PTable<Long, Attribute> attributes = MemPipeline.typedTableOf(TABLE_OF_ATTRIBUTES, attributes());
+        final PTable<Long, Outcome> outcomes = MemPipeline.typedTableOf(TABLE_OF_OUTCOMES, outcomes());
+        final TrainingOptions options = TrainingOptions.defaults().minimumCount(2);
+
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> expected = NaiveBayesianClassifier.trainFused(attributes,
+                outcomes, options);
+        for (final boolean encodeAttributes : new boolean[] { false, true }) {
+            final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> encoded = NaiveBayesianClassifier.trainEncoded(
+                    attributes, outcomes, options.encodeAttributes(encodeAttributes));
+
+            assertEquals(new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(expected.first().asCollection().getValue()),
+                    new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(encoded.first().asCollection().getValue()));
+            assertEquals(new HashSet<Pair<Outcome, Double>>(expected.second().asCollection().getValue()), new HashSet<Pair<Outcome, Double>>(
+                    encoded.second().asCollection().getValue()));
+        }
+    }
+
+    @Test
+    public void trainPruned() {
+        final PTable<Long, Attribute> attributes = MemPipeline.typedTableOf(TABLE_OF_ATTRIBUTES, attributes());
+        final PTable<Long, Outcome> outcomes = MemPipeline.typedTableOf(TABLE_OF_OUTCOMES, outcomes());
+
+        MemPipeline.clearCounters();
+        final Collection<Pair<Attribute, Pair<Outcome, Double>>> minimumCount = NaiveBayesianClassifier
+                .trainFused(attributes, outcomes, TrainingOptions.defaults().minimumCount(2)).first().asCollection().getValue();
+        assertEquals(2, minimumCount.size());
+        assertTrue(minimumCount.contains(Pair.of(attribute("1"), Pair.of(outcome("a"), 0.75))));
+        assertTrue(minimumCount.contains(Pair.of(attribute("2"), Pair.of(outcome("a"), 0.5))));
+
+        final PruningSummary summary = PruningSummary.of(MemPipeline.getCounters());
+        assertEquals(9, summary.getPairsCounted());
+        assertEquals(7, summary.getPairsBelowMinimumCount());
+        assertEquals(2, summary.getPairsKept());
+
+        MemPipeline.clearCounters();
+        final Collection<Pair<Attribute, Pair<Outcome, Double>>> limited = NaiveBayesianClassifier
+                .train(attributes, outcomes, TrainingOptions.defaults().maximumOutcomesPerAttribute(1)).first().asCollection().getValue();
+        assertEquals(8, limited.size());
+        assertTrue(limited.contains(Pair.of(attribute("3"), Pair.of(outcome("b"), 0.5))));
+        assertFalse(limited.contains(Pair.of(attribute("3"), Pair.of(outcome("a"), 0.25))));
+        assertEquals(1, PruningSummary.of(MemPipeline.getCounters()).getPairsOverOutcomeLimit());
+        final StageSummary.Stage top = StageSummary.of(MemPipeline.getCounters()).getStage("TopOutcomesDoFn");
+        assertEquals(8, top.getInputRecords());
+        assertEquals(8, top.getOutputRecords());
+    }
+
+    @Test
+    public void trainSkewed() {
+        final PTable<Long, Attribute> attributes = MemPipeline.typedTableOf(TABLE_OF_ATTRIBUTES, skewedAttributes());
+        final PTable<Long, Outcome> outcomes = MemPipeline.typedTableOf(TABLE_OF_OUTCOMES, skewedOutcomes());
+        final TrainingOptions options = TrainingOptions.defaults().hotKeyShards(4).hotKeySampleRate(1.0).hotKeyFraction(0.1);
+
+        assertEquals(new HashSet<Long>(Arrays.asList(day(1), day(2))), HotKeys.sample(attributes, options).getKeys());
+
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> expected = NaiveBayesianClassifier.train(attributes, outcomes);
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> split = NaiveBayesianClassifier.train(attributes, outcomes,
+                options);
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> fused = NaiveBayesianClassifier.trainFused(attributes,
+                outcomes, options);
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> encoded = NaiveBayesianClassifier.trainEncoded(attributes,
+                outcomes, options);
+
+        final HashSet<Pair<Attribute, Pair<Outcome, Double>>> expectedProbabilities = new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(expected
+                .first().asCollection().getValue());
+        assertEquals(expectedProbabilities, new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(split.first().asCollection().getValue()));
+        assertEquals(expectedProbabilities, new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(fused.first().asCollection().getValue()));
+        assertEquals(expectedProbabilities, new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(encoded.first().asCollection().getValue()));
+        assertEquals(new HashSet<Pair<Outcome, Double>>(expected.second().asCollection().getValue()), new HashSet<Pair<Outcome, Double>>(split
+                .second().asCollection().getValue()));
     }
 
     @Test
@@ -75,11 +194,100 @@ public class NaiveBayesianClassifierTest {
         final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trained = NaiveBayesianClassifier.train(attributes, outcomes);
 
         final List<Attribute> observed = Arrays.asList(attribute("1"), attribute("6"), attribute("8"));
+        int kept = 0;
+        for (final Pair<Attribute, Pair<Outcome, Double>> probability : trained.first().asCollection().getValue()) {
+            if (observed.contains(probability.first())) {
+                ++kept;
+            }
+        }
+        MemPipeline.clearCounters();
         final Map<Outcome, Double> predict1 = NaiveBayesianClassifier.predict(trained, observed);
+        final StageSummary summary = StageSummary.of(MemPipeline.getCounters());
+        assertEquals(kept, summary.getStage("AttributeFilterFn").getOutputRecords());
+        assertEquals(9 - kept, summary.getAttributesFilteredOut());
         // TODO asserts
         System.out.println(StringUtils.join(NaiveBayesianClassifier.toCsv(predict1, true), '\n'));
     }
 
+    @Test
+    public void topKAndCsv() {
+        final Map<Outcome, Double> predicted = new TreeMap<Outcome, Double>();
+        predicted.put(outcome("a"), 0.25);
+        predicted.put(outcome("b"), 0.5);
+        predicted.put(outcome("c"), 0.25);
+        predicted.put(outcome("d"), 0.125);
+
+        // Outcomes of equal probability are all kept, in outcome order.
+        final List<String> csv = NaiveBayesianClassifier.toCsv(predicted, true);
+        assertEquals(Arrays.asList(PredictionWriter.CSV_HEADER, "test_outcome,VALUE_b,null,0.5", "test_outcome,VALUE_a,null,0.25",
+                "test_outcome,VALUE_c,null,0.25", "test_outcome,VALUE_d,null,0.125"), csv);
+
+        final List<Pair<Outcome, Double>> top = new ArrayList<Pair<Outcome, Double>>();
+        top.add(Pair.of(outcome("b"), 0.5));
+        top.add(Pair.of(outcome("a"), 0.25));
+        assertEquals(top, NaiveBayesianClassifier.topK(predicted, 2));
+        assertEquals(4, NaiveBayesianClassifier.topK(predicted, 10).size());
+    }
+
+    @Test
+    public void topKNone() {
+        final Map<Outcome, Double> predicted = new TreeMap<Outcome, Double>();
+        assertTrue(NaiveBayesianClassifier.topK(predicted, 3).isEmpty());
+
+        predicted.put(outcome("a"), 0.25);
+        assertTrue(NaiveBayesianClassifier.topK(predicted, 0).isEmpty());
+        assertTrue(NaiveBayesianClassifier.topK(predicted, -1).isEmpty());
+    }
+
+    @Test
+    public void predictAll() throws IOException {
+        final PTable<Long, Attribute> attributes = MemPipeline.typedTableOf(TABLE_OF_ATTRIBUTES, attributes());
+        final PTable<Long, Outcome> outcomes = MemPipeline.typedTableOf(TABLE_OF_OUTCOMES, outcomes());
+
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> trained = NaiveBayesianClassifier.train(attributes, outcomes);
+        final NaiveBayesModel model = NaiveBayesModel.of(trained);
+
+        final List<Attribute> observed1 = Arrays.asList(attribute("1"), attribute("6"), attribute("8"));
+        final List<Attribute> observed2 = Arrays.asList(attribute("3"), attribute("9"));
+        final PTable<Long, Attribute> observations = MemPipeline.typedTableOf(TABLE_OF_ATTRIBUTES, 1L, observed1.get(0), 1L, observed1.get(1), 1L,
+                observed1.get(2), 2L, observed2.get(0), 2L, observed2.get(1), 3L, attribute("9"));
+
+        MemPipeline.clearCounters();
+        final Map<Long, Map<Outcome, Double>> predictions = new HashMap<Long, Map<Outcome, Double>>();
+        for (final Pair<Long, Pair<Outcome, Double>> prediction : NaiveBayesianClassifier.predictAll(observations, trained).materialize()) {
+            if (!predictions.containsKey(prediction.first())) {
+                predictions.put(prediction.first(), new HashMap<Outcome, Double>());
+            }
+            predictions.get(prediction.first()).put(prediction.second().first(), prediction.second().second());
+        }
+
+        // Observations with no known attributes have no prediction.
+        assertEquals(2, predictions.size());
+        assertPrediction(model.predict(observed1), predictions.get(1L));
+        assertPrediction(model.predict(observed2), predictions.get(2L));
+        final StageSummary summary = StageSummary.of(MemPipeline.getCounters());
+        assertEquals(9, summary.getStage("RegroupAttributeOutcomeProbabilityDoFn").getOutputRecords());
+        final StageSummary.Stage scoring = summary.getStage("ObservationScoringDoFn");
+        assertEquals(2, scoring.getInputRecords());
+        assertEquals(predictions.get(1L).size() + predictions.get(2L).size(), scoring.getOutputRecords());
+
+        int count = 0;
+        for (final Pair<Long, Pair<Outcome, Double>> prediction : NaiveBayesianClassifier.predictAll(observations, trained, 1).materialize()) {
+            ++count;
+            final NaiveBayesModel.Scorer scorer = model.newScorer();
+            scorer.score(prediction.first() == 1L ? observed1 : observed2);
+            assertEquals(model.getOutcome(scorer.best()), prediction.second().first());
+        }
+        assertEquals(2, count);
+    }
+
+    private void assertPrediction(final Map<Outcome, Double> expected, final Map<Outcome, Double> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (final Map.Entry<Outcome, Double> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), actual.get(entry.getKey()), 1e-9);
+        }
+    }
+
     private Collection<Pair<Long, Outcome>> outcomes() {
         final List<Pair<Long, Outcome>> outcomes = new ArrayList<Pair<Long, Outcome>>();
         // Only one outcome per block is currently permitted.
@@ -121,6 +329,37 @@ public class NaiveBayesianClassifierTest {
         return attributes;
     }
 
+    /**
+     * One outcome per day, but two on the first day, which is one of the two
+     * hot days.
+     */
+    private Collection<Pair<Long, Outcome>> skewedOutcomes() {
+        final List<Pair<Long, Outcome>> outcomes = new ArrayList<Pair<Long, Outcome>>();
+        outcomes.add(Pair.of(day(1), outcome("d")));
+        for (int i = 1; i <= 40; ++i) {
+            outcomes.add(Pair.of(day(i), outcome(String.valueOf((char) ('a' + i % 3)))));
+        }
+        return outcomes;
+    }
+
+    /**
+     * Two hot days with 200 attributes each, every attribute repeated four
+     * times, and 38 days with three.
+     */
+    private Collection<Pair<Long, Attribute>> skewedAttributes() {
+        final List<Pair<Long, Attribute>> attributes = new ArrayList<Pair<Long, Attribute>>();
+        for (int i = 0; i < 200; ++i) {
+            attributes.add(Pair.of(day(1), attribute(String.valueOf(i % 50))));
+            attributes.add(Pair.of(day(2), attribute(String.valueOf(i % 50 + 25))));
+        }
+        for (int i = 3; i <= 40; ++i) {
+            for (int j = 0; j < 3; ++j) {
+                attributes.add(Pair.of(day(i), attribute(String.valueOf((i * 7 + j) % 90))));
+            }
+        }
+        return attributes;
+    }
+
     private long day(final int i) {
         return MILLIS_IN_DAY * i;
     }
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2013 Brandon Inman
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.brinman2002.pipeline;
+
+import static io.github.brinman2002.Helper.attribute;
+import static io.github.brinman2002.Helper.outcome;
+import static org.junit.Assert.assertEquals;
+import io.github.brinman2002.data.model.Attribute;
+import io.github.brinman2002.data.model.Outcome;
+
+import java.io.IOException;
+import java.util.HashSet;
+
+import org.apache.crunch.PTable;
+import org.apache.crunch.Pair;
+import org.apache.crunch.impl.mem.MemPipeline;
+import org.apache.crunch.types.PTableType;
+import org.apache.crunch.types.avro.Avros;
+import org.apache.hadoop.fs.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test of {@link TrainingSnapshot}.
+ * 
+ * @author brandon
+ * 
+ */
+public class TrainingSnapshotTest {
+
+    private static final PTableType<Long, Attribute> TABLE_OF_ATTRIBUTES = Avros.tableOf(Avros.longs(), Avros.containers(Attribute.class));
+    private static final PTableType<Long, Outcome> TABLE_OF_OUTCOMES = Avros.tableOf(Avros.longs(), Avros.containers(Outcome.class));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void incremental() throws IOException {
+        final PTable<Long, Attribute> historyAttributes = MemPipeline.typedTableOf(TABLE_OF_ATTRIBUTES, 1L, attribute("1"), 1L, attribute("2"), 2L,
+                attribute("2"), 2L, attribute("3"));
+        final PTable<Long, Outcome> historyOutcomes = MemPipeline.typedTableOf(TABLE_OF_OUTCOMES, 1L, outcome("a"), 2L, outcome("b"));
+        final PTable<Long, Attribute> newAttributes = MemPipeline.typedTableOf(TABLE_OF_ATTRIBUTES, 3L, attribute("1"), 4L, attribute("3"));
+        final PTable<Long, Outcome> newOutcomes = MemPipeline.typedTableOf(TABLE_OF_OUTCOMES, 3L, outcome("a"), 4L, outcome("c"));
+
+        final Path directory = new Path(folder.getRoot().getAbsolutePath(), "snapshot");
+        TrainingSnapshot.count(historyAttributes, historyOutcomes).write(directory);
+        final TrainingSnapshot snapshot = TrainingSnapshot.read(MemPipeline.getInstance(), directory).update(newAttributes, newOutcomes);
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> incremental = snapshot.train(TrainingOptions.defaults());
+
+        final Pair<PTable<Attribute, Pair<Outcome, Double>>, PTable<Outcome, Double>> expected = NaiveBayesianClassifier.trainFused(
+                historyAttributes.union(newAttributes), historyOutcomes.union(newOutcomes));
+
+        assertEquals(new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(expected.first().asCollection().getValue()),
+                new HashSet<Pair<Attribute, Pair<Outcome, Double>>>(incremental.first().asCollection().getValue()));
+        assertEquals(new HashSet<Pair<Outcome, Double>>(expected.second().asCollection().getValue()), new HashSet<Pair<Outcome, Double>>(
+                incremental.second().asCollection().getValue()));
+        assertEquals(Long.valueOf(2), snapshot.getOutcomeCounts().materializeToMap().get(outcome("a")));
+    }
+
+    @Test(expected = IOException.class)
+    public void readMissing() throws IOException {
+        TrainingSnapshot.read(MemPipeline.getInstance(), new Path(folder.getRoot().getAbsolutePath()));
+    }
+}